@@ -0,0 +1,243 @@
+package com.googlecode.jstdmavenplugin.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (<code>-rf json</code>), benchmark by benchmark.
+ * <p/>
+ * Usage: <code>java -cp target/benchmarks.jar com.googlecode.jstdmavenplugin.benchmarks.BaselineComparison
+ * baseline.json current.json [thresholdPercent]</code>
+ * <p/>
+ * Exits with status 1 when a benchmark got worse by more than the threshold (default 10%).
+ */
+public class BaselineComparison
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: BaselineComparison baseline.json current.json [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> current = read(new File(args[1]));
+
+        boolean regressed = false;
+        System.out.println(String.format(Locale.ENGLISH, "%-90s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, Score> entry : current.entrySet())
+        {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null)
+            {
+                System.out.println(String.format(Locale.ENGLISH, "%-90s %14s %14.3f %9s  %s", entry.getKey(), "-",
+                        now.value, "new", now.unit));
+                continue;
+            }
+            // positive change is always an improvement
+            double change = (now.higherIsBetter ? now.value - before.value : before.value - now.value) / before.value * 100;
+            boolean worse = change < -threshold;
+            regressed |= worse;
+            System.out.println(String.format(Locale.ENGLISH, "%-90s %14.3f %14.3f %+8.1f%%  %s%s", entry.getKey(),
+                    before.value, now.value, change, now.unit, worse ? "  REGRESSION" : ""));
+        }
+        for (String name : baseline.keySet())
+        {
+            if (!current.containsKey(name))
+            {
+                System.out.println(String.format(Locale.ENGLISH, "%-90s %14.3f %14s %9s", name, baseline.get(name).value,
+                        "-", "removed"));
+            }
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Score> read(File file) throws IOException
+    {
+        Object json = new JsonReader(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).read();
+        Map<String, Score> scores = new TreeMap<String, Score>();
+        for (Object result : (List<Object>) json)
+        {
+            Map<String, Object> benchmark = (Map<String, Object>) result;
+            StringBuilder name = new StringBuilder((String) benchmark.get("benchmark"));
+            Map<String, Object> params = (Map<String, Object>) benchmark.get("params");
+            if (params != null)
+            {
+                for (Map.Entry<String, Object> param : new TreeMap<String, Object>(params).entrySet())
+                {
+                    name.append(' ').append(param.getKey()).append('=').append(param.getValue());
+                }
+            }
+            Map<String, Object> metric = (Map<String, Object>) benchmark.get("primaryMetric");
+            scores.put(name.toString(), new Score(toDouble(metric.get("score")), (String) metric.get("scoreUnit"),
+                    "thrpt".equals(benchmark.get("mode"))));
+        }
+        return scores;
+    }
+
+    private static double toDouble(Object value)
+    {
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(String.valueOf(value));
+    }
+
+    static class Score
+    {
+        final double value;
+        final String unit;
+        final boolean higherIsBetter;
+
+        Score(double value, String unit, boolean higherIsBetter)
+        {
+            this.value = value;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+
+    /**
+     * Just enough JSON for JMH result files, to keep the benchmark jar free of a JSON library.
+     */
+    static class JsonReader
+    {
+        private final String text;
+        private int position;
+
+        JsonReader(String text)
+        {
+            this.text = text;
+        }
+
+        Object read()
+        {
+            skipWhitespace();
+            char c = text.charAt(position);
+            if (c == '{')
+            {
+                Map<String, Object> object = new LinkedHashMap<String, Object>();
+                position++;
+                while (!consume('}'))
+                {
+                    consume(',');
+                    skipWhitespace();
+                    String key = (String) read();
+                    skipWhitespace();
+                    expect(':');
+                    object.put(key, read());
+                    skipWhitespace();
+                }
+                return object;
+            }
+            if (c == '[')
+            {
+                List<Object> array = new ArrayList<Object>();
+                position++;
+                while (!consume(']'))
+                {
+                    consume(',');
+                    array.add(read());
+                    skipWhitespace();
+                }
+                return array;
+            }
+            if (c == '"')
+            {
+                return readString();
+            }
+            int start = position;
+            while (position < text.length() && ",}] \t\r\n".indexOf(text.charAt(position)) < 0)
+            {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if ("null".equals(literal))
+            {
+                return null;
+            }
+            if ("true".equals(literal) || "false".equals(literal))
+            {
+                return Boolean.valueOf(literal);
+            }
+            return Double.valueOf(literal);
+        }
+
+        private String readString()
+        {
+            StringBuilder value = new StringBuilder();
+            position++;
+            for (char c = text.charAt(position++); c != '"'; c = text.charAt(position++))
+            {
+                if (c == '\\')
+                {
+                    char escaped = text.charAt(position++);
+                    switch (escaped)
+                    {
+                        case 'n':
+                            value.append('\n');
+                            break;
+                        case 't':
+                            value.append('\t');
+                            break;
+                        case 'r':
+                            value.append('\r');
+                            break;
+                        case 'b':
+                            value.append('\b');
+                            break;
+                        case 'f':
+                            value.append('\f');
+                            break;
+                        case 'u':
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            position += 4;
+                            break;
+                        default:
+                            value.append(escaped);
+                    }
+                }
+                else
+                {
+                    value.append(c);
+                }
+            }
+            return value.toString();
+        }
+
+        private boolean consume(char expected)
+        {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == expected)
+            {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected)
+        {
+            if (!consume(expected))
+            {
+                throw new IllegalArgumentException("Expected '" + expected + "' at offset " + position);
+            }
+        }
+
+        private void skipWhitespace()
+        {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+            {
+                position++;
+            }
+        }
+    }
+}
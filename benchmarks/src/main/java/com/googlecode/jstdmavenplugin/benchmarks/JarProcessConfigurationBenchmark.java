@@ -0,0 +1,55 @@
+package com.googlecode.jstdmavenplugin.benchmarks;
+
+import com.googlecode.jstdmavenplugin.JarProcessConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JarProcessConfiguration#getFullCommand()} for projects with many dependencies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JarProcessConfigurationBenchmark
+{
+    @Param({"10", "1000", "10000"})
+    public int classpathEntries;
+
+    private JarProcessConfiguration configuration;
+
+    @Setup(Level.Trial)
+    public void buildConfiguration()
+    {
+        configuration = new JarProcessConfiguration("/home/user/.m2/repository/com/google/jstestdriver/jstestdriver/1.3.5/jstestdriver-1.3.5.jar");
+        configuration.addExecutableOptions("-Xmx512m", "-Djava.awt.headless=true");
+        for (int i = 0; i < classpathEntries; i++)
+        {
+            configuration.addClasspath("/home/user/.m2/repository/org/example/dependency-" + i + "/1.0/dependency-" + i + "-1.0.jar");
+        }
+        configuration.addArgument("--config", "/home/user/project/src/test/resources/jsTestDriver.conf");
+        configuration.addArgument("--port", "9876");
+        configuration.addArgument("--tests", "all");
+    }
+
+    @Benchmark
+    public List<String> getFullCommand()
+    {
+        return configuration.getFullCommand();
+    }
+}
@@ -0,0 +1,70 @@
+package com.googlecode.jstdmavenplugin.benchmarks;
+
+import com.googlecode.jstdmavenplugin.ResultsParser;
+import com.googlecode.jstdmavenplugin.TestResultCollector;
+import com.googlecode.jstdmavenplugin.TestRunnerResults;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The line listeners every run pushes its output through, on outputs of up to 1 GB. Lines
+ * are generated on the fly, so the heap holds one line at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ResultsParserBenchmark
+{
+    @Param({"10", "100", "1024"})
+    public int megabytes;
+
+    @Benchmark
+    public TestRunnerResults resultsParser() throws MojoExecutionException
+    {
+        ResultsParser parser = new ResultsParser();
+        SyntheticOutput output = new SyntheticOutput(SyntheticOutput.megabytes(megabytes));
+        for (String line = output.nextLine(); line != null; line = output.nextLine())
+        {
+            parser.onLine(line);
+        }
+        return parser.getResults();
+    }
+
+    @Benchmark
+    public TestRunnerResults failFastParser() throws MojoExecutionException
+    {
+        ResultsParser parser = new ResultsParser(true);
+        SyntheticOutput output = new SyntheticOutput(SyntheticOutput.megabytes(megabytes));
+        for (String line = output.nextLine(); line != null; line = output.nextLine())
+        {
+            parser.onLine(line);
+        }
+        return parser.getResults();
+    }
+
+    @Benchmark
+    public int testResultCollector()
+    {
+        TestResultCollector collector = new TestResultCollector();
+        SyntheticOutput output = new SyntheticOutput(SyntheticOutput.megabytes(megabytes));
+        for (String line = output.nextLine(); line != null; line = output.nextLine())
+        {
+            collector.onLine(line);
+        }
+        return collector.getResults().size();
+    }
+}
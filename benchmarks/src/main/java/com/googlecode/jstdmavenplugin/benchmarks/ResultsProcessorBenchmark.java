@@ -0,0 +1,56 @@
+package com.googlecode.jstdmavenplugin.benchmarks;
+
+import com.googlecode.jstdmavenplugin.ResultsProcessor;
+import com.googlecode.jstdmavenplugin.TestRunnerResults;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResultsProcessor#processResults(String)} on output that is already in memory, the way
+ * the buffering executors used to hand it over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ResultsProcessorBenchmark
+{
+    @Param({"10", "100"})
+    public int megabytes;
+
+    private String output;
+    private final ResultsProcessor processor = new ResultsProcessor();
+
+    @Setup(Level.Trial)
+    public void buildOutput()
+    {
+        output = new SyntheticOutput(SyntheticOutput.megabytes(megabytes)).asString();
+    }
+
+    @Benchmark
+    public void processResults() throws MojoExecutionException
+    {
+        processor.processResults(output);
+    }
+
+    @Benchmark
+    public TestRunnerResults extractResults() throws MojoExecutionException
+    {
+        return processor.extractResults(output);
+    }
+}
@@ -0,0 +1,220 @@
+package com.googlecode.jstdmavenplugin.benchmarks;
+
+import com.googlecode.jstdmavenplugin.StaticFileServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One browser page load of the <code>load:</code> files of a config, fetched one after
+ * another over kept alive connections, from {@link StaticFileServer} and from a server
+ * copying each file through streams on every request, as the JsTD servlets do.
+ * <p/>
+ * <code>revalidate</code> is the warm run of a browser that cached the files: every request
+ * carries the ETag and is answered with a <code>304</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StaticFileServerBenchmark
+{
+    @Param({"300"})
+    public int files;
+
+    @Param({"20"})
+    public int kilobytes;
+
+    private File directory;
+    private StaticFileServer staticServer;
+    private HttpServer streamingServer;
+    private List<String> paths;
+    private List<String> etags;
+    private String staticUrl;
+    private String streamingUrl;
+    private final byte[] buffer = new byte[65536];
+
+    @Setup(Level.Trial)
+    public void startServers() throws IOException
+    {
+        directory = Files.createTempDirectory("static").toFile();
+        paths = new ArrayList<String>();
+        List<File> sources = new ArrayList<File>();
+        StringBuilder script = new StringBuilder();
+        for (int line = 0; script.length() < kilobytes * 1024; line++)
+        {
+            script.append("function f").append(line).append("(a, b) { return a * ").append(line).append(" + b; }\n");
+        }
+        for (int i = 0; i < files; i++)
+        {
+            File file = new File(directory, "src/main/js/module" + i + ".js");
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), ("// module " + i + "\n" + script).getBytes(StandardCharsets.UTF_8));
+            sources.add(file);
+            paths.add("src/main/js/module" + i + ".js");
+        }
+
+        staticServer = new StaticFileServer(new File(directory, "cache"));
+        staticUrl = "http://localhost:" + staticServer.start(0) + "/0/";
+        staticServer.register("0", directory, sources);
+
+        // like the static server, or every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        streamingServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        streamingServer.createContext("/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                File file = new File(directory, exchange.getRequestURI().getPath().substring(1));
+                exchange.getResponseHeaders().set("Content-Type", "application/javascript; charset=utf-8");
+                exchange.sendResponseHeaders(200, file.length());
+                InputStream in = new FileInputStream(file);
+                OutputStream out = exchange.getResponseBody();
+                try
+                {
+                    byte[] copy = new byte[8192];
+                    for (int read = in.read(copy); read > 0; read = in.read(copy))
+                    {
+                        out.write(copy, 0, read);
+                    }
+                }
+                finally
+                {
+                    in.close();
+                    out.close();
+                }
+            }
+        });
+        streamingServer.setExecutor(Executors.newCachedThreadPool());
+        streamingServer.start();
+        streamingUrl = "http://localhost:" + streamingServer.getAddress().getPort() + "/";
+
+        etags = new ArrayList<String>();
+        for (String path : paths)
+        {
+            HttpURLConnection connection = open(staticUrl + path);
+            drain(connection);
+            etags.add(connection.getHeaderField("ETag"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServers() throws IOException
+    {
+        staticServer.stop();
+        streamingServer.stop(0);
+        org.apache.commons.io.FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public long streamCopy() throws IOException
+    {
+        long bytes = 0;
+        for (String path : paths)
+        {
+            bytes += drain(open(streamingUrl + path));
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long staticServer() throws IOException
+    {
+        long bytes = 0;
+        for (String path : paths)
+        {
+            bytes += drain(open(staticUrl + path));
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long staticServerGzip() throws IOException
+    {
+        long bytes = 0;
+        for (String path : paths)
+        {
+            HttpURLConnection connection = open(staticUrl + path);
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            bytes += drain(connection);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long staticServerRevalidate() throws IOException
+    {
+        long notModified = 0;
+        for (int i = 0; i < paths.size(); i++)
+        {
+            HttpURLConnection connection = open(staticUrl + paths.get(i));
+            connection.setRequestProperty("If-None-Match", etags.get(i));
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+            {
+                notModified++;
+            }
+            drain(connection);
+        }
+        return notModified;
+    }
+
+    private static HttpURLConnection open(String url) throws IOException
+    {
+        return (HttpURLConnection) new URL(url).openConnection();
+    }
+
+    /**
+     * Reads the whole body, so the connection goes back to the keep-alive cache.
+     */
+    private long drain(HttpURLConnection connection) throws IOException
+    {
+        long bytes = 0;
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK)
+        {
+            return 0;
+        }
+        InputStream in = connection.getInputStream();
+        try
+        {
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer))
+            {
+                bytes += read;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,113 @@
+package com.googlecode.jstdmavenplugin.benchmarks;
+
+import com.googlecode.jstdmavenplugin.OutputListener;
+import com.googlecode.jstdmavenplugin.ProcessConfiguration;
+import com.googlecode.jstdmavenplugin.StreamingProcessExecutor;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pumping the output of a child process through {@link StreamingProcessExecutor}. The child
+ * is a JVM printing {@link SyntheticOutput}; the console echo goes to a null stream.
+ * <p/>
+ * The time includes starting the child JVM, which the <code>0</code> MB case measures alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamingProcessExecutorBenchmark
+{
+    @Param({"0", "10", "100"})
+    public int megabytes;
+
+    private PrintStream console;
+    private ProcessConfiguration child;
+
+    @Setup(Level.Trial)
+    public void silenceConsole()
+    {
+        console = System.out;
+        System.setOut(new PrintStream(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length)
+            {
+            }
+        }));
+        final List<String> command = Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp", System.getProperty("java.class.path"),
+                SyntheticOutput.class.getName(), String.valueOf(megabytes));
+        child = new ProcessConfiguration()
+        {
+            public String getExecutable()
+            {
+                return command.get(0);
+            }
+
+            public List<String> getArguments()
+            {
+                return command.subList(1, command.size());
+            }
+
+            public List<String> getExecutableOptions()
+            {
+                return Collections.emptyList();
+            }
+
+            public List<String> getFullCommand()
+            {
+                return new ArrayList<String>(command);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreConsole()
+    {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public long pumpLines() throws MojoExecutionException
+    {
+        final long[] lines = new long[1];
+        new StreamingProcessExecutor().execute(child, new OutputListener()
+        {
+            public void onLine(String line)
+            {
+                lines[0]++;
+            }
+        });
+        return lines[0];
+    }
+}
@@ -0,0 +1,84 @@
+package com.googlecode.jstdmavenplugin.benchmarks;
+
+import java.io.PrintStream;
+
+/**
+ * Console output shaped like a verbose JsTestDriver run with <code>captureConsole</code>:
+ * progress lines, logged lines, and the totals at the very end.
+ * <p/>
+ * Lines are produced on demand, so outputs far larger than the heap can be replayed.
+ */
+public class SyntheticOutput
+{
+    private static final String[] BODY = {
+            "[PASSED] GreeterTest.testGreet",
+            "  [LOG] greeting Bob with a fairly long line of captured console output",
+            "[PASSED] GreeterTest.testFarewell",
+            "  [LOG] {\"user\":\"bob\",\"items\":[1,2,3,4,5,6,7,8,9,10],\"flag\":true}",
+            "[PASSED] CartTest.testAddItem",
+            "[PASSED] CartTest.testRemoveItem",
+            "  [LOG] cart now holds 3 items",
+    };
+
+    private static final String[] TAIL = {
+            "Total 1000 tests (Passed: 1000; Fails: 0; Errors: 0) (1234.00 ms)",
+            "  Firefox 36.0 Linux: Run 1000 tests (Passed: 1000; Fails: 0; Errors 0) (1234.00 ms)",
+    };
+
+    private final long bytes;
+    private long written;
+    private int line;
+    private int tailLine;
+
+    public SyntheticOutput(long bytes)
+    {
+        this.bytes = bytes;
+    }
+
+    public static long megabytes(int megabytes)
+    {
+        return megabytes * 1024L * 1024L;
+    }
+
+    /**
+     * @return the next line, or null once the output is exhausted
+     */
+    public String nextLine()
+    {
+        if (written < bytes)
+        {
+            String next = BODY[line++ % BODY.length];
+            written += next.length() + 1;
+            return next;
+        }
+        return tailLine < TAIL.length ? TAIL[tailLine++] : null;
+    }
+
+    public String asString()
+    {
+        StringBuilder buffer = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 64, bytes + 256));
+        for (String next = nextLine(); next != null; next = nextLine())
+        {
+            buffer.append(next).append('\n');
+        }
+        return buffer.toString();
+    }
+
+    public void writeTo(PrintStream out)
+    {
+        for (String next = nextLine(); next != null; next = nextLine())
+        {
+            out.println(next);
+        }
+        out.flush();
+    }
+
+    /**
+     * Child process for the executor benchmark: prints the given number of megabytes.
+     */
+    public static void main(String[] args)
+    {
+        new SyntheticOutput(megabytes(Integer.parseInt(args[0]))).writeTo(
+                new PrintStream(new java.io.BufferedOutputStream(System.out, 1 << 16), false));
+    }
+}
@@ -0,0 +1,364 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the JavaScript tests of every module of the reactor in one session: one in-process
+ * runner and one server, so browsers are captured once for the build rather than once per
+ * module.
+ * <p/>
+ * A module takes part when it declares this plugin; its <code>config</code>,
+ * <code>basePath</code> and <code>skipTests</code> are read from the plugin's configuration
+ * in its POM. Results are reported per module and left for the <code>test</code> goal of each
+ * module, which reports them instead of running the tests again. With
+ * <code>deferFailures</code>, as in <code>mvn jstd:aggregate verify</code>, a module then only
+ * fails on its own failures, in its own build.
+ *
+ * @goal aggregate
+ * @aggregator
+ */
+public class AggregateMojo extends AbstractMojo {
+
+	static final String PLUGIN_KEY = "com.googlecode.jstd-maven-plugin:jstd-maven-plugin";
+	private static final String DEFAULT_CONFIG = "src/test/resources/jsTestDriver.conf";
+
+	/**
+	 * @parameter default-value="${reactorProjects}"
+	 * @readonly
+	 */
+	private List<MavenProject> reactorProjects;
+
+	/**
+	 * @parameter expression="${jstd.jar}" default-value=""
+	 */
+	private String jar;
+
+	/**
+	 * Browsers to launch and capture when the server starts.
+	 *
+	 * @parameter expression="${jstd.browser}" default-value=""
+	 */
+	private String browser;
+
+	/**
+	 * Port of the server started by this goal, unless <code>server</code> is set, or
+	 * <code>auto</code> for the lowest free one of <code>portRange</code> that no other build
+	 * on the machine holds.
+	 *
+	 * @parameter expression="${jstd.port}" default-value="9876"
+	 */
+	private String port = "9876";
+
+	/**
+	 * Ports <code>port</code> <code>auto</code> allocates from, as <code>lowest-highest</code>.
+	 *
+	 * @parameter expression="${jstd.portRange}" default-value="9876-9975"
+	 */
+	private String portRange = "9876-9975";
+
+	/**
+	 * Directory the port allocated for <code>port</code> <code>auto</code> is locked in.
+	 * Builds locking in the same directory never get the same port.
+	 *
+	 * @parameter expression="${jstd.portLockDirectory}" default-value="${java.io.tmpdir}/jstd-ports"
+	 */
+	private File portLockDirectory;
+
+	/**
+	 * Runs the tests on this already running server instead of starting one.
+	 *
+	 * @parameter expression="${jstd.server}" default-value=""
+	 */
+	private String server;
+
+	/**
+	 * @parameter expression="${jstd.captureConsole}" default-value=true
+	 */
+	private boolean captureConsole = true;
+
+	/**
+	 * Write Surefire XML reports into the <code>surefire-reports</code> directory of each
+	 * module.
+	 *
+	 * @parameter expression="${jstd.surefireReports}" default-value="false"
+	 */
+	private boolean surefireReports;
+
+	/**
+	 * Do not fail this goal on failing tests; the <code>test</code> goal of each failing
+	 * module fails instead.
+	 *
+	 * @parameter expression="${jstd.deferFailures}" default-value="false"
+	 */
+	private boolean deferFailures;
+
+	/**
+	 * @component role="org.apache.maven.artifact.factory.ArtifactFactory"
+	 * @required
+	 * @readonly
+	 */
+	protected ArtifactFactory artifactFactory;
+
+	/**
+	 * @component role="org.apache.maven.artifact.resolver.ArtifactResolver"
+	 * @required
+	 * @readonly
+	 */
+	protected ArtifactResolver artifactResolver;
+
+	/**
+	 * @parameter expression="${localRepository}"
+	 * @readonly
+	 * @required
+	 */
+	protected ArtifactRepository localRepository;
+
+	private final ProcessExecutor executor;
+	private final ResultsProcessor resultsProcessor = new ResultsProcessor();
+
+	public AggregateMojo() {
+		this(new InProcessExecutor());
+	}
+
+	public AggregateMojo(ProcessExecutor executor) {
+		this.executor = executor;
+	}
+
+	public void execute() throws MojoExecutionException {
+		MojoLogger.bindLog(getLog());
+
+		List<Module> modules = new ArrayList<Module>();
+		for (MavenProject project : reactorProjects) {
+			Module module = Module.describe(project);
+			if (module == null) {
+				continue;
+			}
+			if (!module.config.isFile()) {
+				getLog().warn(module.name + ": unable to locate config file " + module.config);
+				continue;
+			}
+			modules.add(module);
+		}
+		if (modules.isEmpty()) {
+			getLog().info("No module of the reactor runs JavaScript tests.");
+			return;
+		}
+
+		String jarPath = resolveJar();
+		PortAllocator.Allocation allocation = StringUtils.isEmpty(server) && "auto".equals(port) ? allocatePort() : null;
+		List<TestRunnerResults> results = new ArrayList<TestRunnerResults>();
+		List<String> failing = new ArrayList<String>();
+		try {
+			String serverUrl = StringUtils.isNotEmpty(server) ? server
+					: startServer(jarPath, allocation != null ? allocation.getFirstPort() : parsePort());
+			try {
+				runModules(jarPath, serverUrl, modules, results, failing);
+			} finally {
+				if (StringUtils.isEmpty(server)) {
+					JstdLauncher.quitServer(serverUrl, null);
+				}
+			}
+		} finally {
+			if (allocation != null) {
+				allocation.release();
+			}
+		}
+
+		TestRunnerResults total = TestRunnerResults.merge(results);
+		getLog().info(String.format("%d modules: Total %d tests (Passed: %d; Fails: %d; Errors: %d)",
+				modules.size(), total.getTotalTestsRun(), total.getTotalTestsPassed(),
+				total.getTotalTestsFailed(), total.getTotalTestsErrored()));
+		if (!failing.isEmpty()) {
+			String message = "JavaScript tests failed in " + StringUtils.join(failing, ", ");
+			if (!deferFailures) {
+				throw new MojoExecutionException(message);
+			}
+			getLog().warn(message + "; left for their test goal to report");
+		}
+	}
+
+	/**
+	 * Runs the modules in turn, collecting their results and the names of those failing. A
+	 * module whose results cannot be parsed is left out of both: its <code>test</code> goal
+	 * finds no results to report and runs its tests itself.
+	 */
+	private void runModules(String jarPath, String serverUrl, List<Module> modules, List<TestRunnerResults> results,
+			List<String> failing) throws MojoExecutionException {
+		for (Module module : modules) {
+			TestRunnerResults result = run(jarPath, serverUrl, module);
+			if (result == null) {
+				getLog().warn(module.name + ": unable to parse the results, the module runs its tests itself");
+				continue;
+			}
+			getLog().info(String.format("%s: Total %d tests (Passed: %d; Fails: %d; Errors: %d)", module.name,
+					result.getTotalTestsRun(), result.getTotalTestsPassed(), result.getTotalTestsFailed(),
+					result.getTotalTestsErrored()));
+			ReactorResults.getInstance().put(module.basedir, result);
+			results.add(result);
+			if (result.hasFailures()) {
+				failing.add(module.name);
+			}
+		}
+	}
+
+	/**
+	 * @return the results of the module, or null if they could not be parsed
+	 */
+	private TestRunnerResults run(String jarPath, String serverUrl, Module module) throws MojoExecutionException {
+		JarProcessConfiguration configuration = new JarProcessConfiguration(jarPath);
+		configuration.addArgument("--server", serverUrl);
+		configuration.addArgument("--basePath", module.basePath.getPath());
+		configuration.addArgument("--config", module.config.getPath());
+		if (captureConsole) {
+			configuration.addArgument("--captureConsole");
+		}
+		configuration.addArgument("--tests", "all");
+		configuration.addArgument("--verbose");
+
+		SurefireReportWriter reportWriter = surefireReports ? new SurefireReportWriter(module.reportsDirectory) : null;
+		ResultsParser parser = resultsProcessor.createParser();
+		executor.execute(configuration, reportWriter == null ? parser
+				: new CompositeOutputListener(reportWriter.session(), parser));
+		if (reportWriter != null) {
+			try {
+				reportWriter.finish();
+			} catch (IOException e) {
+				getLog().warn("Unable to write test reports to " + module.reportsDirectory + ": " + e.getMessage());
+			}
+		}
+		return parser.getResults();
+	}
+
+	private PortAllocator.Allocation allocatePort() throws MojoExecutionException {
+		File lockDirectory = portLockDirectory != null ? portLockDirectory
+				: new File(System.getProperty("java.io.tmpdir"), "jstd-ports");
+		try {
+			PortAllocator.Allocation allocation = PortAllocator.forRange(lockDirectory, portRange).allocate(1);
+			getLog().info("Allocated port " + allocation.getFirstPort() + ", locked in " + lockDirectory);
+			return allocation;
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to allocate a port for JsTestDriver: " + e.getMessage(), e);
+		}
+	}
+
+	private int parsePort() throws MojoExecutionException {
+		try {
+			return Integer.parseInt(StringUtils.trim(port));
+		} catch (NumberFormatException e) {
+			throw new MojoExecutionException("port must be a number or auto, not \"" + port + "\"");
+		}
+	}
+
+	private String startServer(String jarPath, int port) throws MojoExecutionException {
+		List<String> arguments = new ArrayList<String>();
+		arguments.add("--port");
+		arguments.add(String.valueOf(port));
+		if (StringUtils.isNotEmpty(browser)) {
+			arguments.add("--browser");
+			arguments.add(browser);
+		}
+		try {
+			if (new JstdLauncher(jarPath).serve(arguments, System.out) != 0) {
+				throw new MojoExecutionException("JsTestDriver server did not start on port " + port);
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to load JsTestDriver from " + jarPath, e);
+		}
+		return "http://localhost:" + port;
+	}
+
+	private String resolveJar() throws MojoExecutionException {
+		if (StringUtils.isNotEmpty(jar)) {
+			return jar;
+		}
+		ResolutionCache cache = ResolutionCache.getInstance();
+		try {
+			return cache.getArtifactPath(new ArtifactLocator(artifactFactory, artifactResolver, localRepository),
+					cache.getJstdCoordinate(), localRepository == null ? "" : localRepository.getBasedir());
+		} catch (IOException ex) {
+			throw new MojoExecutionException("Error loading JSTD Coordinate from properties file.", ex);
+		} catch (ArtifactNotFoundException ex) {
+			throw new MojoExecutionException("Error resolving JSTD artifact in local repository.", ex);
+		}
+	}
+
+	/**
+	 * A module running JavaScript tests, as configured in its POM.
+	 */
+	static class Module {
+		final String name;
+		final File basedir;
+		final File config;
+		final File basePath;
+		final File reportsDirectory;
+
+		private Module(String name, File basedir, File config, File basePath, File reportsDirectory) {
+			this.name = name;
+			this.basedir = basedir;
+			this.config = config;
+			this.basePath = basePath;
+			this.reportsDirectory = reportsDirectory;
+		}
+
+		/**
+		 * @return the module, or null if it does not declare this plugin or skips its tests
+		 */
+		static Module describe(MavenProject project) {
+			Plugin plugin = project.getPlugin(PLUGIN_KEY);
+			if (plugin == null || "true".equals(setting(plugin, "skipTests", project))) {
+				return null;
+			}
+			File basedir = project.getBasedir().getAbsoluteFile();
+			String basePath = setting(plugin, "basePath", project);
+			File base = StringUtils.isEmpty(basePath) ? basedir : resolve(basedir, basePath);
+			String config = StringUtils.defaultIfEmpty(setting(plugin, "config", project), DEFAULT_CONFIG);
+			String buildDirectory = project.getBuild() == null ? null : project.getBuild().getDirectory();
+			File reports = new File(StringUtils.isEmpty(buildDirectory) ? new File(basedir, "target")
+					: resolve(basedir, buildDirectory), "surefire-reports");
+			return new Module(StringUtils.defaultIfEmpty(project.getArtifactId(), basedir.getName()), basedir,
+					resolve(basedir, config), base, reports);
+		}
+
+		/**
+		 * Reads a parameter from the configuration of the plugin, or else of its first execution
+		 * setting it. Only the base directory expressions are interpolated.
+		 */
+		private static String setting(Plugin plugin, String name, MavenProject project) {
+			List<Object> configurations = new ArrayList<Object>();
+			configurations.add(plugin.getConfiguration());
+			for (PluginExecution execution : plugin.getExecutions()) {
+				configurations.add(execution.getConfiguration());
+			}
+			for (Object configuration : configurations) {
+				Xpp3Dom child = configuration instanceof Xpp3Dom ? ((Xpp3Dom) configuration).getChild(name) : null;
+				if (child != null && StringUtils.isNotBlank(child.getValue())) {
+					String basedir = project.getBasedir().getAbsolutePath();
+					return child.getValue().trim().replace("${project.basedir}", basedir).replace("${basedir}", basedir);
+				}
+			}
+			return null;
+		}
+
+		private static File resolve(File basedir, String path) {
+			File file = new File(path);
+			return file.isAbsolute() ? file : new File(basedir, path);
+		}
+	}
+}
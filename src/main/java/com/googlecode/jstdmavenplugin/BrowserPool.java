@@ -0,0 +1,233 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A local headless browser kept captured by a JsTestDriver server, run by the server daemon.
+ * <p/>
+ * The browser gets a profile directory of its own and is pointed at the capture page. It is
+ * checked periodically: a browser that exited is launched again, and when the server has not
+ * captured it for a while it is restarted. A browser that keeps dying is given up on after a
+ * few attempts.
+ * <p/>
+ * JsTD runs every test on all browsers captured by the server, so a server keeps one browser:
+ * a second would run the whole suite again rather than take a share of it. Test runs use the
+ * browser by running against the leased server; {@link #capturedBrowsers(String)} tells them
+ * whether it is captured.
+ */
+public class BrowserPool {
+
+	static final long CAPTURE_TIMEOUT = 30000;
+	private static final int MAX_RESTARTS = 5;
+	private static final int CONNECT_TIMEOUT = 2000;
+
+	private final List<String> command;
+	private final String serverUrl;
+	private final File profile;
+	private final PrintStream log;
+	private Process browser;
+	private int restarts;
+	private long uncapturedSince;
+
+	/**
+	 * @param command the browser executable followed by extra arguments
+	 * @param profile the directory the browser keeps its profile in
+	 */
+	public BrowserPool(List<String> command, String serverUrl, File profile, PrintStream log) {
+		this.command = command;
+		this.serverUrl = serverUrl;
+		this.profile = profile;
+		this.log = log;
+	}
+
+	public synchronized void start() {
+		launch();
+		uncapturedSince = System.currentTimeMillis();
+	}
+
+	/**
+	 * Launches the browser again if it exited, and restarts it when the server has been
+	 * missing it for longer than {@link #CAPTURE_TIMEOUT}.
+	 *
+	 * @return whether the browser is running
+	 */
+	public synchronized boolean check() {
+		if (browser != null && !isRunning(browser)) {
+			log.println("Pooled browser exited with " + browser.exitValue());
+			browser = null;
+			if (++restarts > MAX_RESTARTS) {
+				log.println("Pooled browser failed " + MAX_RESTARTS + " times, not launching it again");
+			}
+		}
+		if (browser == null && restarts <= MAX_RESTARTS) {
+			launch();
+		}
+		if (browser == null) {
+			return false;
+		}
+
+		long now = System.currentTimeMillis();
+		if (capturedBrowsers(serverUrl) > 0) {
+			uncapturedSince = now;
+			restarts = 0;
+		} else if (now - uncapturedSince > CAPTURE_TIMEOUT) {
+			log.println("JsTestDriver server did not capture the pooled browser for "
+					+ CAPTURE_TIMEOUT / 1000 + " s, restarting it");
+			stop();
+			start();
+		}
+		return browser != null;
+	}
+
+	public synchronized void stop() {
+		if (browser != null) {
+			ProcessTree.kill(browser);
+			browser = null;
+		}
+	}
+
+	private void launch() {
+		List<String> line = buildCommand(command, profile, serverUrl + "/capture");
+		try {
+			FileUtils.makeDirectoryIfNotExists(profile.getPath());
+			ProcessBuilder builder = new ProcessBuilder(line);
+			builder.redirectErrorStream(true);
+			browser = builder.start();
+			browser.getOutputStream().close();
+			drain("jstd-browser", browser.getInputStream());
+			log.println("Launched pooled browser: " + line);
+		} catch (IOException e) {
+			log.println("Unable to launch pooled browser " + line + ": " + e.getMessage());
+			browser = null;
+			restarts++;
+		}
+	}
+
+	/**
+	 * Adds the flags that make Chrome, Chromium and Firefox run headless with a profile of their
+	 * own; any other browser is only given the URL.
+	 */
+	static List<String> buildCommand(List<String> command, File profile, String url) {
+		List<String> line = new ArrayList<String>(command);
+		String name = new File(command.get(0)).getName().toLowerCase();
+		if (name.contains("chrom")) {
+			line.add(1, "--headless");
+			line.add(2, "--disable-gpu");
+			line.add(3, "--no-first-run");
+			line.add(4, "--no-default-browser-check");
+			line.add(5, "--remote-debugging-port=0");
+			line.add(6, "--user-data-dir=" + profile.getAbsolutePath());
+		} else if (name.contains("firefox")) {
+			line.add(1, "-headless");
+			line.add(2, "-no-remote");
+			line.add(3, "-profile");
+			line.add(4, profile.getAbsolutePath());
+		}
+		line.add(url);
+		return line;
+	}
+
+	/**
+	 * @return the number of browsers captured by the server, or -1 if it did not answer
+	 */
+	public static int capturedBrowsers(String serverUrl) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(serverUrl.replaceAll("/+$", "")
+					+ "/cmd?listBrowsers").openConnection();
+			connection.setConnectTimeout(CONNECT_TIMEOUT);
+			connection.setReadTimeout(CONNECT_TIMEOUT);
+			try {
+				if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+					return -1;
+				}
+				return countBrowsers(read(connection.getInputStream()));
+			} finally {
+				connection.disconnect();
+			}
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the number of objects in the JSON array JsTD lists its browsers in
+	 */
+	static int countBrowsers(String json) {
+		int count = 0;
+		int depth = 0;
+		boolean quoted = false;
+		for (int i = 0; i < json.length(); i++) {
+			char c = json.charAt(i);
+			if (quoted) {
+				if (c == '\\') {
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == '[' || c == '{') {
+				if (c == '{' && depth == 1) {
+					count++;
+				}
+				depth++;
+			} else if (c == ']' || c == '}') {
+				depth--;
+			}
+		}
+		return count;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		Reader reader = new InputStreamReader(in, "UTF-8");
+		try {
+			StringBuilder text = new StringBuilder();
+			char[] buffer = new char[4096];
+			for (int read = reader.read(buffer); read > 0; read = reader.read(buffer)) {
+				text.append(buffer, 0, read);
+			}
+			return text.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static boolean isRunning(Process process) {
+		try {
+			process.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Browsers are chatty on the console; their output is discarded so they never block on it.
+	 */
+	private static void drain(String name, final InputStream stream) {
+		Thread thread = new Thread(name) {
+			@Override
+			public void run() {
+				byte[] buffer = new byte[4096];
+				try {
+					while (stream.read(buffer) >= 0) {
+						// discard
+					}
+				} catch (IOException ignored) {
+					// the browser is gone
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
@@ -0,0 +1,27 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hands every line to several listeners, in order.
+ */
+public class CompositeOutputListener implements OutputListener
+{
+    private final List<OutputListener> listeners;
+
+    public CompositeOutputListener(OutputListener... listeners)
+    {
+        this.listeners = Arrays.asList(listeners);
+    }
+
+    public void onLine(String line) throws MojoExecutionException
+    {
+        for (OutputListener listener : listeners)
+        {
+            listener.onLine(line);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * The file the {@link ConsoleWriter}s of an execution spill the lines they do not print to.
+ * <p/>
+ * One spill is shared by both streams of every run of the execution, and writes a line at a
+ * time, so lines of different streams never interleave within a line. The file is only created,
+ * or truncated, once the first line spills.
+ */
+public class ConsoleSpill
+{
+    private final File file;
+    private PrintWriter writer;
+    private boolean failed;
+
+    public ConsoleSpill(File file)
+    {
+        this.file = file;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public synchronized void println(String line)
+    {
+        if (failed)
+        {
+            return;
+        }
+        try
+        {
+            if (writer == null)
+            {
+                FileUtils.makeDirectoryIfNotExists(file.getAbsoluteFile().getParent());
+                writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            }
+            writer.println(line);
+        }
+        catch (IOException e)
+        {
+            // the spill file only takes what the console would have shown
+            failed = true;
+        }
+    }
+
+    /**
+     * Writes out the lines spilled so far, for a reader of the file while the execution goes on.
+     */
+    public synchronized void flush()
+    {
+        if (writer != null)
+        {
+            writer.flush();
+        }
+    }
+
+    public synchronized void close()
+    {
+        if (writer != null)
+        {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Echoes lines to a console from a thread of its own, so a slow console never holds up the
+ * thread producing the lines.
+ * <p/>
+ * Lines wait in a bounded queue and are printed in batches with one flush each. Lines that do
+ * not fit, because the queue is full or the console already got <code>limit</code> bytes, are
+ * written to the {@link ConsoleSpill} instead, or only counted when there is none.
+ */
+public class ConsoleWriter
+{
+    private static final int CAPACITY = 8192;
+    private static final int BATCH = 1024;
+    private static final String END = new String("end of output");
+
+    private final PrintStream console;
+    private final long limit;
+    private final ConsoleSpill spill;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<String>(CAPACITY);
+    private final Thread thread;
+    private long printed;
+    private boolean overflowing;
+    private long overflowLines;
+
+    /**
+     * @param limit bytes to print at most, 0 for no limit
+     * @param spill where lines beyond the limit go, null to drop them
+     */
+    public ConsoleWriter(String name, PrintStream console, long limit, ConsoleSpill spill)
+    {
+        this.console = console;
+        this.limit = limit;
+        this.spill = spill;
+        this.thread = new Thread(name)
+        {
+            @Override
+            public void run()
+            {
+                drain();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Never blocks, whatever the console does.
+     */
+    public synchronized void println(String line)
+    {
+        if (!overflowing)
+        {
+            printed += line.length() + 1;
+            overflowing = limit > 0 && printed > limit;
+            if (!overflowing && queue.offer(line))
+            {
+                return;
+            }
+        }
+        overflow(line);
+    }
+
+    /**
+     * Prints what is still queued and reports the lines that were not printed.
+     */
+    public void close() throws InterruptedException
+    {
+        queue.put(END);
+        thread.join();
+        synchronized (this)
+        {
+            if (spill != null)
+            {
+                spill.flush();
+            }
+            if (overflowLines > 0)
+            {
+                console.println("Lines of JsTestDriver output not shown: " + overflowLines
+                        + (spill == null ? "" : ", see " + spill.getFile()));
+                console.flush();
+            }
+        }
+    }
+
+    private void overflow(String line)
+    {
+        overflowLines++;
+        if (spill != null)
+        {
+            spill.println(line);
+        }
+    }
+
+    private void drain()
+    {
+        List<String> batch = new ArrayList<String>(BATCH);
+        StringBuilder text = new StringBuilder();
+        try
+        {
+            while (true)
+            {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH - 1);
+                boolean end = false;
+                for (String line : batch)
+                {
+                    if (line == END)
+                    {
+                        end = true;
+                        break;
+                    }
+                    text.append(line).append('\n');
+                }
+                console.print(text);
+                console.flush();
+                batch.clear();
+                text.setLength(0);
+                if (end)
+                {
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.googlecode.jstdmavenplugin;
+
+/**
+ * The JsTD coverage plugin released with the JsTD version the plugin runs.
+ */
+public class CoverageCoordinate implements MavenCoordinate {
+
+	private final String groupId;
+	private final String version;
+
+	public CoverageCoordinate(MavenCoordinate jstd) {
+		this.groupId = jstd.getGroupId();
+		this.version = jstd.getVersion();
+	}
+
+	public String getGroupId() {
+		return groupId;
+	}
+
+	public String getArtifactId() {
+		return "coverage";
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public String getFileType() {
+		return "jar";
+	}
+}
@@ -0,0 +1,57 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps cache entries as files in a local or shared directory. Entries are written to a
+ * temporary file first and renamed into place, so concurrent builds never read half an entry.
+ */
+public class DirectoryResultStore implements ResultStore
+{
+    private final File directory;
+
+    public DirectoryResultStore(File directory)
+    {
+        this.directory = directory;
+    }
+
+    public byte[] get(String key) throws IOException
+    {
+        File file = new File(directory, key);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        return org.apache.commons.io.FileUtils.readFileToByteArray(file);
+    }
+
+    public void put(String key, byte[] entry) throws IOException
+    {
+        FileUtils.makeDirectoryIfNotExists(directory.getPath());
+        File temp = File.createTempFile(key, ".tmp", directory);
+        try
+        {
+            org.apache.commons.io.FileUtils.writeByteArrayToFile(temp, entry);
+            File target = new File(directory, key);
+            if (!temp.renameTo(target))
+            {
+                target.delete();
+                if (!temp.renameTo(target))
+                {
+                    throw new IOException("Unable to move " + temp + " to " + target);
+                }
+            }
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return directory.getPath();
+    }
+}
@@ -0,0 +1,16 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Thrown to abort a run at its first failing test when running with <code>failFast</code>.
+ */
+public class FailFastException extends MojoExecutionException
+{
+    private static final long serialVersionUID = 1L;
+
+    public FailFastException(String message)
+    {
+        super(message);
+    }
+}
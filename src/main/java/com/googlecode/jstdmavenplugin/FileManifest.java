@@ -0,0 +1,355 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The files the <code>load:</code>, <code>test:</code> and <code>exclude:</code> patterns of a
+ * config expand to.
+ * <p/>
+ * All patterns are expanded in a single walk, which lists every directory once however many
+ * patterns cover it, and skips the directories no pattern can match in. The manifest remembers
+ * the modification time of each directory it listed: a file is only added, removed or renamed
+ * by changing its directory, so while config and directories keep their times the stored
+ * manifest is still correct and no directory needs listing.
+ */
+public class FileManifest {
+
+	private static final int VERSION = 3;
+
+	/**
+	 * File systems with whole second timestamps cannot tell a directory changed right after
+	 * the walk from one changed right before it, so such recent directories are relisted.
+	 */
+	private static final long TIMESTAMP_RESOLUTION = 2000;
+
+	private static final String[] SECTIONS = {JstdConfiguration.LOAD, JstdConfiguration.TEST, JstdConfiguration.SERVE,
+			JstdConfiguration.EXCLUDE};
+
+	private final String configPath;
+	private final long configModified;
+	private final String basePath;
+	private final long created;
+	private final Map<String, Long> directories = new LinkedHashMap<String, Long>();
+	private final Map<String, List<Pattern>> sections = new LinkedHashMap<String, List<Pattern>>();
+
+	private FileManifest(String configPath, long configModified, String basePath, long created) {
+		this.configPath = configPath;
+		this.configModified = configModified;
+		this.basePath = basePath;
+		this.created = created;
+		for (String section : SECTIONS) {
+			sections.put(section, new ArrayList<Pattern>());
+		}
+	}
+
+	public static FileManifest build(JstdConfiguration configuration) {
+		FileManifest manifest = new FileManifest(configuration.getFile().getAbsolutePath(),
+				configuration.getFile().lastModified(), configuration.getBasePath().getAbsolutePath(),
+				System.currentTimeMillis());
+		List<Pattern> local = new ArrayList<Pattern>();
+		for (String section : SECTIONS) {
+			for (String glob : configuration.getList(section)) {
+				Pattern pattern = new Pattern(glob);
+				manifest.sections.get(section).add(pattern);
+				if (!JstdConfiguration.isUrl(glob)) {
+					pattern.glob = new GlobPattern(configuration.getBasePath(), glob);
+					local.add(pattern);
+				}
+			}
+		}
+		for (File root : topmostRoots(local)) {
+			manifest.walk(root, local);
+		}
+		return manifest;
+	}
+
+	/**
+	 * @return the manifest stored in {@code file} if it is still correct for
+	 * {@code configuration}, otherwise null
+	 */
+	public static FileManifest load(File file, JstdConfiguration configuration) {
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		FileManifest manifest;
+		try {
+			manifest = read(file);
+		} catch (IOException e) {
+			return null;
+		}
+		return manifest != null && manifest.isCurrent(configuration) ? manifest : null;
+	}
+
+	/**
+	 * @return the files of a section in pattern order, without duplicates and, except for the
+	 * <code>exclude</code> section itself, without the excluded files
+	 */
+	public List<File> getFiles(String section) {
+		Set<File> excluded = JstdConfiguration.EXCLUDE.equals(section)
+				? new LinkedHashSet<File>() : new LinkedHashSet<File>(collect(JstdConfiguration.EXCLUDE, null));
+		return collect(section, excluded);
+	}
+
+	/**
+	 * @return the number of directories listed to build the manifest
+	 */
+	public int getDirectoryCount() {
+		return directories.size();
+	}
+
+	public void write(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Failed to create " + directory);
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(VERSION);
+			out.writeUTF(configPath);
+			out.writeLong(configModified);
+			out.writeUTF(basePath);
+			out.writeLong(created);
+			out.writeInt(directories.size());
+			for (Map.Entry<String, Long> entry : directories.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue());
+			}
+			for (String section : SECTIONS) {
+				List<Pattern> patterns = sections.get(section);
+				out.writeInt(patterns.size());
+				for (Pattern pattern : patterns) {
+					out.writeUTF(pattern.entry);
+					out.writeInt(pattern.files.size());
+					for (String path : pattern.files) {
+						out.writeUTF(path);
+					}
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a copy of the config whose <code>load:</code> and <code>test:</code> sections list
+	 * the expanded files instead of patterns, relative to the base path where possible. The
+	 * excluded files are left out and the <code>exclude:</code> section is dropped, so JsTD
+	 * has no pattern left to expand. Everything else is copied as is.
+	 */
+	public void writeConfig(File target) throws IOException {
+		writeConfig(target, null);
+	}
+
+	/**
+	 * Writes the copy with the <code>load:</code> files under the base path listed as URLs
+	 * starting with {@code loadUrl}, where a {@link StaticFileServer} serves them.
+	 *
+	 * @param loadUrl null to list them as files
+	 */
+	public void writeConfig(File target, String loadUrl) throws IOException {
+		File directory = target.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Failed to create " + directory);
+		}
+		Set<File> excluded = new LinkedHashSet<File>(collect(JstdConfiguration.EXCLUDE, null));
+		Set<String> written = new LinkedHashSet<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(configPath), "UTF-8"));
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(target), "UTF-8"));
+		try {
+			String section = null;
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				String content = JstdConfiguration.stripComment(line).trim();
+				if (content.startsWith("-")) {
+					if (!sections.containsKey(section)) {
+						writer.println(line);
+					}
+					continue;
+				}
+				int colon = content.indexOf(':');
+				if (colon < 0) {
+					if (content.length() == 0 || !sections.containsKey(section)) {
+						writer.println(line);
+					}
+					continue;
+				}
+				String key = content.substring(0, colon).trim().toLowerCase();
+				section = content.substring(colon + 1).trim().length() == 0 ? key : null;
+				if (!sections.containsKey(section)) {
+					writer.println(line);
+				} else if (!JstdConfiguration.EXCLUDE.equals(section) && written.add(section)) {
+					writer.println(line);
+					writeEntries(writer, section, excluded, JstdConfiguration.LOAD.equals(section) ? loadUrl : null);
+				}
+			}
+		} finally {
+			writer.close();
+			reader.close();
+		}
+	}
+
+	private void writeEntries(PrintWriter writer, String section, Set<File> excluded, String url) {
+		Set<String> seen = new LinkedHashSet<String>();
+		String normalizedBase = GlobPattern.normalize(new File(basePath)).getPath();
+		String prefix = normalizedBase.endsWith(File.separator) ? normalizedBase : normalizedBase + File.separator;
+		for (Pattern pattern : sections.get(section)) {
+			if (JstdConfiguration.isUrl(pattern.entry)) {
+				writer.println("  - " + quote(pattern.entry));
+				continue;
+			}
+			for (String path : pattern.files) {
+				File file = new File(path);
+				if (excluded.contains(file) || !seen.add(path)) {
+					continue;
+				}
+				String absolutePath = file.getAbsolutePath();
+				if (!absolutePath.startsWith(prefix)) {
+					writer.println("  - " + quote(absolutePath.replace(File.separatorChar, '/')));
+				} else {
+					String entry = absolutePath.substring(prefix.length()).replace(File.separatorChar, '/');
+					writer.println("  - " + quote(url == null ? entry : url + entry));
+				}
+			}
+		}
+	}
+
+	private List<File> collect(String section, Set<File> excluded) {
+		Set<File> files = new LinkedHashSet<File>();
+		for (Pattern pattern : sections.get(section)) {
+			for (String path : pattern.files) {
+				File file = new File(path);
+				if (excluded == null || !excluded.contains(file)) {
+					files.add(file);
+				}
+			}
+		}
+		return new ArrayList<File>(files);
+	}
+
+	private boolean isCurrent(JstdConfiguration configuration) {
+		File config = configuration.getFile();
+		if (!configPath.equals(config.getAbsolutePath()) || configModified != config.lastModified()
+				|| !basePath.equals(configuration.getBasePath().getAbsolutePath())) {
+			return false;
+		}
+		for (Map.Entry<String, Long> entry : directories.entrySet()) {
+			long modified = entry.getValue();
+			if (modified > created - TIMESTAMP_RESOLUTION || new File(entry.getKey()).lastModified() != modified) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Lists {@code directory} and descends into the subdirectories that lead to the root of a
+	 * pattern or may hold matches of one. Children are visited in name order, depth first,
+	 * so each pattern sees its matches in the order {@link GlobPattern#expand()} lists them.
+	 */
+	private void walk(File directory, List<Pattern> patterns) {
+		// a missing root is recorded too, with time 0, so creating it invalidates the manifest
+		directories.put(directory.getPath(), directory.lastModified());
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		Arrays.sort(children);
+		for (File child : children) {
+			boolean isDirectory = child.isDirectory();
+			boolean descend = false;
+			for (Pattern pattern : patterns) {
+				String relativePath = pattern.glob.relativize(child);
+				if (relativePath == null) {
+					descend |= isDirectory && isAncestor(child, pattern.glob.getRoot());
+				} else if (isDirectory) {
+					descend |= pattern.glob.mayMatchBelow(relativePath);
+				} else if (pattern.glob.matches(relativePath)) {
+					pattern.files.add(child.getPath());
+				}
+			}
+			if (descend) {
+				walk(child, patterns);
+			}
+		}
+	}
+
+	private static List<File> topmostRoots(List<Pattern> patterns) {
+		List<File> roots = new ArrayList<File>();
+		for (Pattern pattern : patterns) {
+			File root = pattern.glob.getRoot();
+			boolean covered = false;
+			for (Pattern other : patterns) {
+				covered |= isAncestor(other.glob.getRoot(), root);
+			}
+			if (!covered && !roots.contains(root)) {
+				roots.add(root);
+			}
+		}
+		return roots;
+	}
+
+	private static boolean isAncestor(File ancestor, File file) {
+		String ancestorPath = GlobPattern.normalize(ancestor).getPath();
+		String prefix = ancestorPath.endsWith(File.separator) ? ancestorPath : ancestorPath + File.separator;
+		return GlobPattern.normalize(file).getPath().startsWith(prefix);
+	}
+
+	private static FileManifest read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != VERSION) {
+				return null;
+			}
+			FileManifest manifest = new FileManifest(in.readUTF(), in.readLong(), in.readUTF(), in.readLong());
+			int directoryCount = in.readInt();
+			for (int i = 0; i < directoryCount; i++) {
+				manifest.directories.put(in.readUTF(), in.readLong());
+			}
+			for (String section : SECTIONS) {
+				int patternCount = in.readInt();
+				for (int i = 0; i < patternCount; i++) {
+					Pattern pattern = new Pattern(in.readUTF());
+					int fileCount = in.readInt();
+					for (int j = 0; j < fileCount; j++) {
+						pattern.files.add(in.readUTF());
+					}
+					manifest.sections.get(section).add(pattern);
+				}
+			}
+			return manifest;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static String quote(String entry) {
+		return entry.matches("[\\w./:@+-]+") ? entry : "\"" + entry.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private static class Pattern {
+		private final String entry;
+		private final List<String> files = new ArrayList<String>();
+		private GlobPattern glob;
+
+		private Pattern(String entry) {
+			this.entry = entry;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
+import org.apache.commons.io.monitor.FileAlterationMonitor;
+import org.apache.commons.io.monitor.FileAlterationObserver;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Watches directory trees for changed files and reports them in settled bursts.
+ * <p/>
+ * The trees are polled, as Java 6 has no file system notifications. Editors typically write a
+ * file several times per save and builds touch many files at once, so changes are only handed
+ * out once no further change has been seen for the quiet period.
+ */
+public class FileWatcher {
+
+	private final FileAlterationMonitor monitor;
+	private final FileAlterationListenerAdaptor listener;
+	private final long quietPeriod;
+	private final Set<File> changes = new LinkedHashSet<File>();
+	private long lastChange;
+
+	/**
+	 * @param pollInterval milliseconds between two scans of the trees
+	 * @param quietPeriod milliseconds without changes that end a burst
+	 */
+	public FileWatcher(long pollInterval, long quietPeriod) {
+		this.quietPeriod = quietPeriod;
+		this.monitor = new FileAlterationMonitor(pollInterval);
+		this.listener = new FileAlterationListenerAdaptor() {
+			@Override
+			public void onFileCreate(File file) {
+				changed(file);
+			}
+
+			@Override
+			public void onFileChange(File file) {
+				changed(file);
+			}
+
+			@Override
+			public void onFileDelete(File file) {
+				changed(file);
+			}
+		};
+	}
+
+	/**
+	 * Watches the files below {@code root} passed by {@code filter}. Directories the filter
+	 * rejects are not descended into. Must be called before {@link #start()}.
+	 */
+	public void watch(File root, FileFilter filter) {
+		FileAlterationObserver observer = new FileAlterationObserver(root, filter);
+		observer.addListener(listener);
+		monitor.addObserver(observer);
+	}
+
+	public void start() throws Exception {
+		monitor.start();
+	}
+
+	public void stop() throws Exception {
+		monitor.stop(0);
+	}
+
+	/**
+	 * Blocks until files changed and then stayed unchanged for the quiet period.
+	 *
+	 * @param timeout milliseconds to wait at most, 0 to wait forever
+	 * @return the changed files, empty if the timeout passed first
+	 */
+	public synchronized Set<File> awaitChanges(long timeout) throws InterruptedException {
+		long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+		while (true) {
+			long now = System.currentTimeMillis();
+			if (!changes.isEmpty() && now - lastChange >= quietPeriod) {
+				Set<File> burst = new LinkedHashSet<File>(changes);
+				changes.clear();
+				return burst;
+			}
+			if (now >= deadline) {
+				return new LinkedHashSet<File>();
+			}
+			long wait = changes.isEmpty() ? deadline - now : lastChange + quietPeriod - now;
+			wait(Math.max(1, Math.min(wait, deadline - now)));
+		}
+	}
+
+	private synchronized void changed(File file) {
+		changes.add(file);
+		lastChange = System.currentTimeMillis();
+		notifyAll();
+	}
+}
@@ -0,0 +1,187 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A JsTestDriver style file pattern such as <code>src/test/js/**&#47;*.js</code>, resolved
+ * against a base path.
+ * <p/>
+ * <code>*</code> and <code>?</code> match within a single path segment, <code>**</code>
+ * matches across segments. The root is normalized, so a pattern climbing out of the base path
+ * with <code>..</code> is rooted where it leads.
+ */
+public class GlobPattern {
+
+	private final File root;
+	private final Pattern pattern;
+	private final boolean literal;
+	private final String name;
+	private final int depth;
+	private final boolean recursive;
+
+	public GlobPattern(File basePath, String glob) {
+		String normalized = glob.replace('\\', '/');
+		File start = new File(normalized).isAbsolute() ? new File("/") : basePath;
+		List<String> segments = new ArrayList<String>(Arrays.asList(normalized.split("/")));
+		StringBuilder fixed = new StringBuilder();
+		while (segments.size() > 1 && !isWildcard(segments.get(0))) {
+			fixed.append(segments.remove(0)).append('/');
+		}
+		this.literal = segments.size() == 1 && !isWildcard(segments.get(0));
+		this.name = segments.get(segments.size() - 1);
+		this.depth = segments.size();
+		this.recursive = segments.contains("**");
+		this.root = normalize(fixed.length() == 0 ? start : new File(start, fixed.toString()));
+		this.pattern = Pattern.compile(toRegex(segments));
+	}
+
+	public File getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return true if the pattern names a single file rather than matching several
+	 */
+	public boolean isLiteral() {
+		return literal;
+	}
+
+	/**
+	 * @param relativePath a path below {@link #getRoot()}, using '/' as separator
+	 */
+	public boolean matches(String relativePath) {
+		return pattern.matcher(relativePath).matches();
+	}
+
+	/**
+	 * @return the path of {@code file} below {@link #getRoot()} using '/' as separator, or
+	 * null if the file is not below the root
+	 */
+	public String relativize(File file) {
+		String rootPath = root.getPath();
+		String prefix = rootPath.endsWith(File.separator) ? rootPath : rootPath + File.separator;
+		String path = normalize(file).getPath();
+		if (!path.startsWith(prefix)) {
+			return null;
+		}
+		return path.substring(prefix.length()).replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * @param relativeDirectory a directory below {@link #getRoot()}, using '/' as separator
+	 * @return false if no file in or below the directory can match
+	 */
+	public boolean mayMatchBelow(String relativeDirectory) {
+		return recursive || relativeDirectory.split("/").length < depth - 1;
+	}
+
+	/**
+	 * @return a filter passing the matching files below {@link #getRoot()} and the
+	 * directories that may hold some, for walking or watching the tree
+	 */
+	public FileFilter toFileFilter() {
+		return new FileFilter() {
+			public boolean accept(File file) {
+				String relativePath = relativize(file);
+				if (relativePath == null) {
+					return false;
+				}
+				return file.isDirectory() ? mayMatchBelow(relativePath) : matches(relativePath);
+			}
+		};
+	}
+
+	/**
+	 * Lists the matching files, sorted by path.
+	 */
+	public List<File> expand() {
+		List<File> files = new ArrayList<File>();
+		if (literal) {
+			File file = new File(root, name);
+			if (file.isFile()) {
+				files.add(file);
+			}
+			return files;
+		}
+		collect(root, "", files);
+		return files;
+	}
+
+	private void collect(File directory, String prefix, List<File> files) {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		Arrays.sort(children);
+		for (File child : children) {
+			String relativePath = prefix + child.getName();
+			if (child.isDirectory()) {
+				collect(child, relativePath + "/", files);
+			} else if (matches(relativePath)) {
+				files.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @return the absolute path of {@code file} with its <code>.</code> and <code>..</code>
+	 * segments collapsed; symbolic links are left alone, so paths stay as the config spells them
+	 */
+	static File normalize(File file) {
+		String path = file.getAbsolutePath();
+		if (path.indexOf(File.separator + ".") < 0) {
+			return file.getAbsoluteFile();
+		}
+		String[] segments = path.split(Pattern.quote(File.separator), -1);
+		List<String> kept = new ArrayList<String>();
+		for (int i = 1; i < segments.length; i++) {
+			String segment = segments[i];
+			if ("..".equals(segment)) {
+				if (!kept.isEmpty()) {
+					kept.remove(kept.size() - 1);
+				}
+			} else if (segment.length() > 0 && !".".equals(segment)) {
+				kept.add(segment);
+			}
+		}
+		StringBuilder normalized = new StringBuilder(segments[0]);
+		for (String segment : kept) {
+			normalized.append(File.separator).append(segment);
+		}
+		return new File(kept.isEmpty() ? segments[0] + File.separator : normalized.toString());
+	}
+
+	private static boolean isWildcard(String segment) {
+		return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+	}
+
+	private static String toRegex(List<String> segments) {
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < segments.size(); i++) {
+			String segment = segments.get(i);
+			boolean last = i == segments.size() - 1;
+			if ("**".equals(segment)) {
+				regex.append(last ? ".*" : "(?:.*/)?");
+				continue;
+			}
+			for (char c : segment.toCharArray()) {
+				if (c == '*') {
+					regex.append("[^/]*");
+				} else if (c == '?') {
+					regex.append("[^/]");
+				} else {
+					regex.append(Pattern.quote(String.valueOf(c)));
+				}
+			}
+			if (!last) {
+				regex.append('/');
+			}
+		}
+		return regex.toString();
+	}
+}
@@ -0,0 +1,98 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Keeps cache entries on an HTTP server: <code>GET &lt;url&gt;/&lt;key&gt;</code> reads one,
+ * answered with 404 when there is none, and <code>PUT &lt;url&gt;/&lt;key&gt;</code> stores
+ * one. Plain WebDAV shares and the usual build cache servers answer both.
+ */
+public class HttpResultStore implements ResultStore
+{
+    private static final int TIMEOUT = 10000;
+
+    private final String url;
+
+    public HttpResultStore(String url)
+    {
+        this.url = url.replaceAll("/+$", "");
+    }
+
+    public byte[] get(String key) throws IOException
+    {
+        HttpURLConnection connection = open(key);
+        try
+        {
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND)
+            {
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK)
+            {
+                throw new IOException("GET " + connection.getURL() + " answered " + status);
+            }
+            InputStream in = connection.getInputStream();
+            try
+            {
+                return org.apache.commons.io.IOUtils.toByteArray(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    public void put(String key, byte[] entry) throws IOException
+    {
+        HttpURLConnection connection = open(key);
+        try
+        {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(entry.length);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            OutputStream out = connection.getOutputStream();
+            try
+            {
+                out.write(entry);
+            }
+            finally
+            {
+                out.close();
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 != 2)
+            {
+                throw new IOException("PUT " + connection.getURL() + " answered " + status);
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(String key) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url + "/" + key).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        return connection;
+    }
+
+    @Override
+    public String toString()
+    {
+        return url;
+    }
+}
@@ -0,0 +1,87 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Runs JsTestDriver inside the Maven JVM instead of forking {@code java -jar}.
+ * <p/>
+ * JVM options do not apply in this mode, and the classpath is the JsTD jar alone,
+ * exactly as it is for the forked {@code -jar} invocation.
+ * <p/>
+ * An in-process run cannot be killed, so when the listener aborts, the rest of the output
+ * is only echoed and the abort is reported once JsTD returns. A fail fast abort also stops
+ * the server the run started, which ends the run early.
+ */
+public class InProcessExecutor implements ProcessExecutor
+{
+    public void execute(ProcessConfiguration config, final OutputListener listener) throws MojoExecutionException
+    {
+        JarProcessConfiguration jarConfig = (JarProcessConfiguration) config;
+        List<String> arguments = jarConfig.getRunnerArguments();
+        String[] args = arguments.toArray(new String[arguments.size()]);
+        final String port = JstdLauncher.flagValue(args, "--port");
+        final String handlerPrefix = JstdLauncher.flagValue(args, "--serverHandlerPrefix");
+        final PrintStream console = System.out;
+        final MojoExecutionException[] abort = new MojoExecutionException[1];
+        PrintStream capture = new PrintStream(new LineOutputStream()
+        {
+            @Override
+            protected void onLine(String line)
+            {
+                console.println(line);
+                if (abort[0] == null)
+                {
+                    try
+                    {
+                        listener.onLine(line);
+                    }
+                    catch (MojoExecutionException e)
+                    {
+                        abort[0] = e;
+                        if (e instanceof FailFastException && port != null)
+                        {
+                            quitServerLater("http://localhost:" + port, handlerPrefix);
+                        }
+                    }
+                }
+            }
+        }, true);
+        try
+        {
+            new JstdLauncher(jarConfig.getJarPath()).run(arguments, capture);
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            capture.close();
+        }
+        if (abort[0] != null)
+        {
+            throw abort[0];
+        }
+    }
+
+    /**
+     * Called from a JsTD thread that may be serving the very server being stopped, so the
+     * request is made from a thread of its own.
+     */
+    private void quitServerLater(final String serverUrl, final String handlerPrefix)
+    {
+        Thread quitter = new Thread("jstd-fail-fast")
+        {
+            @Override
+            public void run()
+            {
+                JstdLauncher.quitServer(serverUrl, handlerPrefix);
+            }
+        };
+        quitter.setDaemon(true);
+        quitter.start();
+    }
+}
@@ -29,6 +29,31 @@ public class JarProcessConfiguration implements ProcessConfiguration
         arguments.addAll(Arrays.asList(values));
     }
 
+    /**
+     * Replaces the value following {@code flag}, or adds the flag if it is missing.
+     */
+    public void setArgument(String flag, String value)
+    {
+        int index = arguments.indexOf(flag);
+        if (index < 0 || index + 1 >= arguments.size())
+        {
+            addArgument(flag, value);
+        }
+        else
+        {
+            arguments.set(index + 1, value);
+        }
+    }
+
+    /**
+     * @return the value following {@code flag}, or null if the flag is missing
+     */
+    public String getArgument(String flag)
+    {
+        int index = arguments.indexOf(flag);
+        return index < 0 || index + 1 >= arguments.size() ? null : arguments.get(index + 1);
+    }
+
     public void addClasspath(String... values)
     {
         classpath.addAll(Arrays.asList(values));
@@ -71,4 +96,14 @@ public class JarProcessConfiguration implements ProcessConfiguration
     {
         return JAVA_ARG;
     }
+
+    public String getJarPath()
+    {
+        return jarPath;
+    }
+
+    public List<String> getRunnerArguments()
+    {
+        return arguments;
+    }
 }
@@ -12,7 +12,19 @@ import org.apache.maven.project.MavenProject;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Copyright 2009-2011, Burke Webster <burke.webster@gmail.com>
@@ -60,6 +72,75 @@ public class JsTestDriverMojo extends AbstractMojo {
 	 */
 	private boolean defaultBasePath;
 
+	/**
+	 * Run JsTD in a forked JVM. When false the runner is loaded into the Maven JVM
+	 * through an isolated class loader, which avoids JVM startup and class loading on
+	 * every execution. <code>jvmOpts</code> are ignored in that mode. The runner prints to
+	 * the JVM's <code>System.out</code> and <code>System.err</code>, so in-process runs take
+	 * turns: <code>configParallelism</code>, <code>shardServers</code>, the <code>aggregate</code>
+	 * goal and the modules of a parallel build run their tests one at a time.
+	 *
+	 * @parameter expression="${jstd.fork}" default-value="true"
+	 */
+	private boolean fork = true;
+
+	/**
+	 * Run against the server leased by the <code>start-server</code> goal, and the browsers
+	 * it has captured, whenever one is alive and no <code>server</code> is configured. Off by
+	 * default, as every build reading the same <code>leaseFile</code> would then run against
+	 * that one server and its browsers.
+	 *
+	 * @parameter expression="${jstd.reuseServer}" default-value="false"
+	 */
+	private boolean reuseServer;
+
+	/**
+	 * @parameter expression="${jstd.leaseFile}" default-value="${user.home}/.jstd/server.lease"
+	 */
+	private File leaseFile;
+
+	/**
+	 * Seconds to wait for the pooled browser of a leased server to be captured before running,
+	 * as after the server just started or relaunched it.
+	 *
+	 * @parameter expression="${jstd.browserCaptureTimeout}" default-value="30"
+	 */
+	private int browserCaptureTimeout = 30;
+
+	/**
+	 * Servers to shard the test cases of the config across, comma separated. Each entry
+	 * is one shard: a port number starts a server (and <code>browser</code>) on that port
+	 * for the shard, a URL runs the shard against an already running server. Shards run
+	 * concurrently and their results are merged. Sharding is off when empty.
+	 *
+	 * @parameter expression="${jstd.shardServers}" default-value=""
+	 */
+	private String shardServers;
+
+	/**
+	 * Test durations, tab separated: test case, test name, milliseconds, browser and status.
+	 * Written by every run that reports durations; the previous contents balance shards and
+	 * are compared against to warn about tests that got markedly slower. Passing tests are
+	 * only timed when <code>testOutput</code> is set.
+	 *
+	 * @parameter expression="${jstd.timingsFile}" default-value="${project.build.directory}/jstd/timings.tsv"
+	 */
+	private File timingsFile;
+
+	/**
+	 * Number of tests listed in the slowest tests report; 0 turns the report off.
+	 *
+	 * @parameter expression="${jstd.slowTestCount}" default-value="10"
+	 */
+	private int slowTestCount = 10;
+
+	/**
+	 * Where the slowest tests report is written.
+	 *
+	 * @parameter expression="${jstd.slowTestReport}" default-value="${project.build.directory}/jstd/slowest-tests.txt"
+	 */
+	private File slowTestReport;
+
 
 	/**
 	 * JsTD Options:
@@ -87,10 +168,23 @@ public class JsTestDriverMojo extends AbstractMojo {
 	private boolean captureConsole;
 
 	/**
+	 * The config, or a comma separated list of configs and patterns such as
+	 * <code>src/test/js/**&#47;*.conf</code>. Several configs run in one execution, against one
+	 * warm server or <code>configParallelism</code> at a time, and their results add up.
+	 *
 	 * @parameter expression="${jstd.config}" default-value="src/test/resources/jsTestDriver.conf"
 	 */
 	private String config;
 
+	/**
+	 * Number of configs run at the same time when <code>config</code> names several. With
+	 * <code>port</code> set, each concurrent run gets a server of its own on <code>port</code>,
+	 * <code>port</code> + 1 and so on, started once for all the configs it runs.
+	 *
+	 * @parameter expression="${jstd.configParallelism}" default-value="1"
+	 */
+	private int configParallelism = 1;
+
 	/**
 	 * @parameter expression="${jstd.dryRunFor}" default-value=""
 	 */
@@ -102,10 +196,31 @@ public class JsTestDriverMojo extends AbstractMojo {
 	private String plugins;
 
 	/**
+	 * Port to start the JsTestDriver server on, or <code>auto</code> for the lowest free one
+	 * of <code>portRange</code> that no other build on the machine holds. An allocated port
+	 * is also the one of <code>--server</code>, and is published as the project properties
+	 * <code>jstd.allocatedPort</code>, <code>jstd.allocatedPorts</code> (one per config run in
+	 * parallel) and <code>jstd.allocatedServer</code>.
+	 *
 	 * @parameter expression="${jstd.port}" default-value=""
 	 */
 	private String port;
 
+	/**
+	 * Ports <code>port</code> <code>auto</code> allocates from, as <code>lowest-highest</code>.
+	 *
+	 * @parameter expression="${jstd.portRange}" default-value="9876-9975"
+	 */
+	private String portRange = "9876-9975";
+
+	/**
+	 * Directory the ports allocated for <code>port</code> <code>auto</code> are locked in.
+	 * Builds locking in the same directory never get the same port.
+	 *
+	 * @parameter expression="${jstd.portLockDirectory}" default-value="${java.io.tmpdir}/jstd-ports"
+	 */
+	private File portLockDirectory;
+
 	/**
 	 * @parameter expression="${jstd.preloadFiles}" default-value=false
 	 */
@@ -178,9 +293,294 @@ public class JsTestDriverMojo extends AbstractMojo {
 	 */
 	protected ArtifactRepository localRepository;
 
+	/**
+	 * Only run the test cases affected by the files changed since the last passing run, and
+	 * skip the run entirely when nothing changed. Changes to test files narrow the run down to
+	 * their test cases; a changed <code>load:</code> file runs them all. Applies when
+	 * <code>tests</code> is "all".
+	 *
+	 * @parameter expression="${jstd.incremental}" default-value="false"
+	 */
+	private boolean incremental;
+
+	/**
+	 * Where the incremental run keeps file hashes, test cases and results of the last
+	 * passing run.
+	 *
+	 * @parameter expression="${jstd.indexFile}" default-value="${project.build.directory}/jstd/index.bin"
+	 */
+	private File indexFile;
+
+	/**
+	 * Hand JsTD a copy of the config listing the files its patterns match instead of the
+	 * patterns, so JsTD does not walk the directories again. The copy is written next to
+	 * <code>manifestFile</code>.
+	 *
+	 * @parameter expression="${jstd.expandConfig}" default-value="false"
+	 */
+	private boolean expandConfig;
+
+	/**
+	 * Where the files matched by the config patterns are kept, with the modification times
+	 * of the directories they were found in, so unchanged trees are not walked again.
+	 *
+	 * @parameter expression="${jstd.manifestFile}" default-value="${project.build.directory}/jstd/manifest.bin"
+	 */
+	private File manifestFile;
+
+	/**
+	 * Serve the <code>load:</code> files of the config to the browsers from a file server
+	 * started by the plugin, instead of the JsTD server. It serves straight from the files,
+	 * compressed and with strong ETags over kept alive connections, so browsers revalidate
+	 * rather than download unchanged files. Implies <code>expandConfig</code>, whose copy of
+	 * the config lists the files as URLs of that server. Files outside the base path and the
+	 * <code>test:</code> files are still served by JsTD, and so are the files measured for
+	 * <code>coverage</code>, which JsTD needs to instrument.
+	 *
+	 * @parameter expression="${jstd.staticServer}" default-value="false"
+	 */
+	private boolean staticServer;
+
+	/**
+	 * Port of the <code>staticServer</code>; 0 for any free port.
+	 *
+	 * @parameter expression="${jstd.staticServerPort}" default-value="0"
+	 */
+	private int staticServerPort;
+
+	/**
+	 * Host name the browsers reach the <code>staticServer</code> at, and whose address it
+	 * listens on: the default keeps it on the loopback interface, browsers on other machines
+	 * need a name of this one.
+	 *
+	 * @parameter expression="${jstd.staticServerHost}" default-value="localhost"
+	 */
+	private String staticServerHost = "localhost";
+
+	/**
+	 * Bytes of JsTestDriver output to echo to the console per stream of a forked run, 0 for
+	 * no limit. Output beyond it is handled as <code>consoleOverflow</code> says.
+	 *
+	 * @parameter expression="${jstd.consoleLimit}" default-value="0"
+	 */
+	private long consoleLimit;
+
+	/**
+	 * What happens to output beyond <code>consoleLimit</code>, or to output a slow console
+	 * cannot keep up with: "spill" writes it to <code>consoleSpillFile</code>, which holds the
+	 * output of the latest execution, "drop" only counts it. The results are parsed from all output either way.
+	 *
+	 * @parameter expression="${jstd.consoleOverflow}" default-value="spill"
+	 */
+	private String consoleOverflow = "spill";
+
+	/**
+	 * @parameter expression="${jstd.consoleSpillFile}" default-value="${project.build.directory}/jstd/console.log"
+	 */
+	private File consoleSpillFile;
+
+	/**
+	 * Seconds a forked JsTestDriver run may take before it is killed, 0 for no limit.
+	 *
+	 * @parameter expression="${jstd.timeout}" default-value="0"
+	 */
+	private long timeout;
+
+	/**
+	 * Seconds a forked JsTestDriver run may go without printing anything before it is
+	 * killed, 0 for no limit. A hung browser typically shows as silence.
+	 *
+	 * @parameter expression="${jstd.inactivityTimeout}" default-value="0"
+	 */
+	private long inactivityTimeout;
+
+	/**
+	 * Run once more with <code>--reset</code> after a run was killed for taking too long, to
+	 * recover from a browser that hung.
+	 *
+	 * @parameter expression="${jstd.retryOnTimeout}" default-value="false"
+	 */
+	private boolean retryOnTimeout;
+
+	/**
+	 * Where the thread dump of a JsTestDriver run killed for taking too long is written.
+	 *
+	 * @parameter expression="${jstd.threadDumpFile}" default-value="${project.build.directory}/jstd/thread-dump.txt"
+	 */
+	private File threadDumpFile;
+
+	/**
+	 * Run the tests that failed again, up to this many times, before failing the build. Only
+	 * the failed tests run again, named by <code>--tests</code>, on the configured server or
+	 * that of the first shard. Nothing runs again when a failure names no test. Needs a single
+	 * <code>config</code>.
+	 *
+	 * @parameter expression="${jstd.rerunFailingTests}" default-value="0"
+	 */
+	private int rerunFailingTests;
+
+	/**
+	 * Counts the tests that failed and then passed on a rerun. Point it into the source tree
+	 * to keep it across clean builds.
+	 *
+	 * @parameter expression="${jstd.quarantineFile}" default-value="${project.build.directory}/jstd/quarantine.tsv"
+	 */
+	private File quarantineFile;
+
+	/**
+	 * Number of times a test has to flip before its failures no longer fail the build.
+	 *
+	 * @parameter expression="${jstd.quarantineThreshold}" default-value="3"
+	 */
+	private int quarantineThreshold = 3;
+
+	/**
+	 * Write a Surefire <code>TEST-&lt;testCase&gt;.xml</code> report per test case and a
+	 * <code>jstd-summary.json</code> to <code>reportsDirectory</code>, as the tests report.
+	 * Implies <code>verbose</code>, whose per-test lines the reports are made of.
+	 *
+	 * @parameter expression="${jstd.surefireReports}" default-value="false"
+	 */
+	private boolean surefireReports;
+
+	/**
+	 * Where <code>surefireReports</code> go. The default is where Surefire writes its own, so
+	 * <code>surefire-report</code> lists the JavaScript tests next to the Java ones.
+	 *
+	 * @parameter expression="${jstd.reportsDirectory}" default-value="${project.build.directory}/surefire-reports"
+	 */
+	private File reportsDirectory;
+
+	/**
+	 * Replay the results of a passing run with the same config, files, JsTD version and
+	 * parameters instead of running the tests: a directory, or the <code>http(s)</code> URL of
+	 * a server storing entries with <code>PUT</code> and serving them with <code>GET</code>.
+	 * Applies to runs of a single config without shards.
+	 *
+	 * @parameter expression="${jstd.resultCache}" default-value=""
+	 */
+	private String resultCache;
+
+	/**
+	 * Store the results of passing runs in the <code>resultCache</code>. Turn off for builds
+	 * that should only read from a shared cache.
+	 *
+	 * @parameter expression="${jstd.resultCacheWrite}" default-value="true"
+	 */
+	private boolean resultCacheWrite = true;
+
+	/**
+	 * Where the time taken by each phase of the execution, from artifact resolution to the
+	 * parsing of the results, is written as JSON. Empty to skip.
+	 *
+	 * @parameter expression="${jstd.metricsFile}" default-value="${project.build.directory}/jstd/metrics.json"
+	 */
+	private File metricsFile;
+
+	/**
+	 * Where to write the phases of the execution as a Chrome trace, to open in
+	 * <code>chrome://tracing</code> or Perfetto. Empty to skip.
+	 *
+	 * @parameter expression="${jstd.traceFile}" default-value=""
+	 */
+	private File traceFile;
+
+	/**
+	 * Abort the run at the first failing test instead of waiting for all tests to finish.
+	 * Implies <code>verbose</code>, whose per-test lines are how failures are spotted.
+	 *
+	 * @parameter expression="${jstd.failFast}" default-value="false"
+	 */
+	private boolean failFast;
+
+	/**
+	 * Measure which lines of the loaded files the tests run, with the JsTD coverage plugin, and
+	 * merge what every browser, shard and config reports into <code>coverageReport</code>.
+	 * Defaults <code>testOutput</code>, where the plugin writes its data, when it is not set.
+	 *
+	 * @parameter expression="${jstd.coverage}" default-value="false"
+	 */
+	private boolean coverage;
+
+	/**
+	 * The coverage plugin jar. When empty, <code>com.google.jstestdriver:coverage</code> of the
+	 * JsTD version the plugin runs is resolved.
+	 *
+	 * @parameter expression="${jstd.coverageJar}" default-value=""
+	 */
+	private String coverageJar;
+
+	/**
+	 * Where the merged <code>coverage</code> is written, in LCOV format.
+	 *
+	 * @parameter expression="${jstd.coverageReport}" default-value="${project.build.directory}/jstd/coverage/lcov.info"
+	 */
+	private File coverageReport;
+
+	/**
+	 * Fail the build when the tests run fewer than this percentage of the lines. 0 to only
+	 * report the coverage.
+	 *
+	 * @parameter expression="${jstd.coverageLineThreshold}" default-value="0"
+	 */
+	private double coverageLineThreshold;
+
+	/**
+	 * Fail the build when the tests take fewer than this percentage of the branches. 0 to only
+	 * report the coverage.
+	 *
+	 * @parameter expression="${jstd.coverageBranchThreshold}" default-value="0"
+	 */
+	private double coverageBranchThreshold;
+
+	/**
+	 * Run tests of pure logic on the JavaScript engine of the JVM instead of in browsers, which
+	 * need neither a server nor a captured browser. <code>marked</code> runs the test files
+	 * with a <code>jstd:browserless</code> comment in their first lines this way, or all test
+	 * files when the config has that comment; <code>all</code> runs every test file this way;
+	 * <code>off</code>, the default, runs everything in browsers without reading the test files.
+	 * The other tests still run in browsers, and so does everything on a JVM without a
+	 * JavaScript engine, such as Java 15 and later. The engine has no DOM, and the files load in
+	 * the order of the config as they would in a browser.
+	 *
+	 * @parameter expression="${jstd.browserless}" default-value="off"
+	 */
+	private String browserless = "off";
+
+	/**
+	 * Order of the test cases: <code>config</code> runs them as the config loads them;
+	 * <code>failuresFirst</code> runs the test cases that failed last time and those whose
+	 * files changed since then first, in a run of their own, so their failures show before the
+	 * rest has run. The rest follows, likeliest failures per second of run time first. JsTD
+	 * runs the test cases of one run in load order, whatever the order of <code>--tests</code>,
+	 * which is why the first ones get a run of their own.
+	 *
+	 * @parameter expression="${jstd.testOrder}" default-value="config"
+	 */
+	private String testOrder = "config";
+
+	/**
+	 * Outcomes and durations of earlier runs, for <code>testOrder</code>. The hashes of the
+	 * files they ran with are kept next to it.
+	 *
+	 * @parameter expression="${jstd.historyFile}" default-value="${project.build.directory}/jstd/history.tsv"
+	 */
+	private File historyFile;
+
 	// internals
 	private ProcessExecutor processExecutor;
+	private ProcessExecutor inProcessExecutor = new InProcessExecutor();
+	private ResolutionCache resolutionCache = ResolutionCache.getInstance();
 	private ResultsProcessor resultsProcessor;
+	private boolean pathsResolved;
+	private ConfigRun configuredRun;
+	private SurefireReportWriter reportWriter;
+	private PhaseTimer timer = new PhaseTimer();
+	private ResultCache.Recording recording;
+	private StaticFileServer staticFileServer;
+	private int staticFilePrefix;
+	private boolean portsAllocated;
+	private ConsoleSpill consoleSpill;
 
 	public JsTestDriverMojo() {
 		this(new StreamingProcessExecutor(), new ResultsProcessor());
@@ -201,6 +601,98 @@ public class JsTestDriverMojo extends AbstractMojo {
 			return;
 		}
 
+		timer = new PhaseTimer();
+		PhaseTimer.Span execution = timer.start("execution");
+		PortAllocator.Allocation ports = null;
+		try {
+			ports = allocatePorts();
+			runExecution();
+		} finally {
+			execution.end();
+			if (ports != null) {
+				ports.release();
+			}
+			stopStaticServer();
+			if (consoleSpill != null) {
+				consoleSpill.close();
+				consoleSpill = null;
+			}
+			writeMetrics();
+		}
+	}
+
+	/**
+	 * Allocates the ports of <code>port</code> <code>auto</code>, one per config run in parallel,
+	 * and publishes them as project properties.
+	 *
+	 * @return the allocation to release once the execution is over, or null if nothing was allocated
+	 */
+	private PortAllocator.Allocation allocatePorts() throws MojoExecutionException {
+		portsAllocated = false;
+		if (!"auto".equals(port)) {
+			return null;
+		}
+		File lockDirectory = portLockDirectory != null ? portLockDirectory
+				: new File(System.getProperty("java.io.tmpdir"), "jstd-ports");
+		PortAllocator.Allocation allocation;
+		try {
+			allocation = PortAllocator.forRange(lockDirectory, portRange).allocate(Math.max(1, configParallelism));
+		} catch (IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to allocate a port for JsTestDriver: " + e.getMessage(), e);
+		}
+		port = String.valueOf(allocation.getFirstPort());
+		portsAllocated = true;
+		getLog().info((allocation.getPorts().size() == 1 ? "Allocated port " : "Allocated ports ")
+				+ StringUtils.join(allocation.getPorts(), ", ") + ", locked in " + lockDirectory);
+		Properties properties = mavenProject == null ? null : mavenProject.getProperties();
+		if (properties != null) {
+			properties.setProperty("jstd.allocatedPort", port);
+			properties.setProperty("jstd.allocatedPorts", StringUtils.join(allocation.getPorts(), ","));
+			properties.setProperty("jstd.allocatedServer", "http://localhost:" + port);
+		}
+		return allocation;
+	}
+
+	private void runExecution() throws MojoExecutionException {
+		TestRunnerResults aggregated = mavenProject == null || mavenProject.getBasedir() == null ? null
+				: ReactorResults.getInstance().take(mavenProject.getBasedir());
+		if (aggregated != null) {
+			getLog().info(String.format("Tests run by the aggregate goal: Total %d tests (Passed: %d; Fails: %d; Errors: %d)",
+					aggregated.getTotalTestsRun(), aggregated.getTotalTestsPassed(), aggregated.getTotalTestsFailed(),
+					aggregated.getTotalTestsErrored()));
+			resultsProcessor.processResults(aggregated);
+			return;
+		}
+
+		List<File> configs = resolveConfigs();
+		if (configs.size() > 1) {
+			runConfigs(configs);
+			return;
+		}
+
+		if (StringUtils.isNotEmpty(shardServers)) {
+			runShards();
+			return;
+		}
+
+		TestIndex index = null;
+		if (incremental) {
+			index = selectAffectedTests();
+			if (index != null && index.getResults() != null) {
+				// the last passing run may have run only some of the tests, so its totals are not replayed
+				getLog().info("No JavaScript changed since the last passing run, skipping the tests.");
+				return;
+			}
+		}
+
+		ResultCache cache = openResultCache();
+		String cacheKey = cache == null ? null : resultCacheKey();
+
+		ServerLease lease = acquireLeasedServer();
+
+		String coverageData = prepareCoverage();
 		ProcessConfiguration processConfiguration = buildProcessConfiguration();
 
 		File configFile = new File(config);
@@ -210,61 +702,1291 @@ public class JsTestDriverMojo extends AbstractMojo {
 		}
 
 		logProcessArguments(processConfiguration);
+		startReports();
 
-		resultsProcessor.processResults(processExecutor.execute(processConfiguration));
+		try {
+			TestResultCollector collector = new TestResultCollector();
+			long started = System.currentTimeMillis();
+			TestRunnerResults results = cacheKey == null ? null : replayResults(cache, cacheKey, collector);
+			if (results == null) {
+				recording = cacheKey == null || !resultCacheWrite ? null : cache.record();
+				results = runOrderedTests(processConfiguration, collector);
+				if (recording != null && !results.hasFailures()) {
+					storeResults(cache, cacheKey, results);
+				}
+				recording = null;
+			}
+			reportTimings(collector, started);
+			results = rerunFailures(results, collector, configuredTarget());
+			finishReports();
+			LcovMerger.Summary coverageSummary = mergeCoverage(coverageData, started);
+			resultsProcessor.processResults(results);
+			checkCoverage(coverageSummary);
+			if (index != null) {
+				writeIndex(index, results);
+			}
+		} finally {
+			if (lease != null) {
+				lease.touch();
+			}
+		}
 	}
 
-	private ProcessConfiguration buildProcessConfiguration()
-			throws MojoExecutionException {
-		ProcessConfiguration configuration;
-		if (StringUtils.isNotEmpty(jar)) {
-			configuration = buildLocalJarProcessConfig();
-		} else {
-			configuration = buildMavenJarProcessConfig();
+	private void runShards() throws MojoExecutionException {
+		resolveConfigPaths();
+		if (!new File(config).exists()) {
+			getLog().warn("NO TESTS RUN - Unable to locate config file:" + config + "\n");
+			return;
 		}
 
-		buildArguments((JarProcessConfiguration) configuration);
+		String[] servers = StringUtils.split(shardServers, ", ");
+		List<List<String>> shards = new TestSharder().shard(findTestCases(), servers.length, loadTimings());
+		String coverageData = prepareCoverage();
+		List<ProcessConfiguration> configurations = new ArrayList<ProcessConfiguration>();
+		Target rerunTarget = null;
+		for (int i = 0; i < servers.length; i++) {
+			if (shards.get(i).isEmpty()) {
+				continue;
+			}
+			Target target = StringUtils.isNumeric(servers[i])
+					? new Target(servers[i], "http://localhost:" + servers[i], browser, testOutput)
+					: new Target(null, servers[i], null, testOutput);
+			if (rerunTarget == null) {
+				rerunTarget = target;
+			}
+			if (coverageData != null) {
+				// every shard reports coverage of the same config, so each gets a directory
+				target = target.writingTo(new File(coverageData, String.valueOf(i)).getPath());
+			}
+			ProcessConfiguration configuration = buildProcessConfiguration(StringUtils.join(shards.get(i), ","), target);
+			logProcessArguments(configuration);
+			configurations.add(configuration);
+		}
+		if (configurations.isEmpty()) {
+			getLog().warn("NO TESTS RUN - No test cases found in " + config);
+			return;
+		}
+		if (!fork) {
+			getLog().warn("Shards run one after another when JsTestDriver runs in process (fork=false).");
+		}
 
-		return configuration;
+		startReports();
+		TestResultCollector collector = new TestResultCollector();
+		long started = System.currentTimeMillis();
+		TestRunnerResults results = TestRunnerResults.merge(executeConcurrently(configurations, collector));
+		reportTimings(collector, started);
+		results = rerunFailures(results, collector, rerunTarget);
+		finishReports();
+		getLog().info(String.format("%d shards: Total %d tests (Passed: %d; Fails: %d; Errors: %d)",
+				configurations.size(), results.getTotalTestsRun(), results.getTotalTestsPassed(),
+				results.getTotalTestsFailed(), results.getTotalTestsErrored()));
+		LcovMerger.Summary coverageSummary = mergeCoverage(coverageData, started);
+		resultsProcessor.processResults(results);
+		checkCoverage(coverageSummary);
 	}
 
-	private ProcessConfiguration buildMavenJarProcessConfig() throws MojoExecutionException {
+	/**
+	 * Runs several configs in one execution. The configs share the servers, which are started
+	 * once when <code>port</code> is set, so browsers are captured once per server rather than
+	 * once per config. Each config runs with a {@link ConfigRun} and a {@link Target} of its
+	 * own, leaving the parameters as they were set.
+	 */
+	private void runConfigs(List<File> configs) throws MojoExecutionException {
+		if (StringUtils.isNotEmpty(shardServers)) {
+			throw new MojoExecutionException("shardServers needs a single config, not " + configs.size());
+		}
+		if (rerunFailingTests > 0) {
+			throw new MojoExecutionException("rerunFailingTests needs a single config, not " + configs.size());
+		}
+		if (incremental) {
+			getLog().warn("incremental is off when running several configs.");
+		}
+		int parallelism = Math.max(1, Math.min(configParallelism, configs.size()));
+		if (parallelism > 1 && !fork) {
+			getLog().warn("Configs run one after another when JsTestDriver runs in process (fork=false).");
+		}
+
+		ServerLease lease = acquireLeasedServer();
+		List<String> servers = new ArrayList<String>();
+		List<String> startedServers = new ArrayList<String>();
 		try {
-			ArtifactLocator locator = new ArtifactLocator(artifactFactory, artifactResolver, localRepository);
-			String jstdJarPath = locator.getAbsolutePathToArtifact(new JstdCoordinate());
-			JarProcessConfiguration jarConfig = new JarProcessConfiguration(jstdJarPath);
-			addClasspathArguments(jarConfig);
-			if (StringUtils.isNotEmpty(jvmOpts)) {
-				jarConfig.addExecutableOptions(jvmOpts);
+			if (StringUtils.isNotEmpty(server)) {
+				servers.add(server);
+			} else if (StringUtils.isNotEmpty(port)) {
+				startedServers = startServers(Integer.parseInt(port), parallelism);
+				servers.addAll(startedServers);
 			}
-			return jarConfig;
-		} catch (IOException ex) {
-			throw new MojoExecutionException("Error loading JSTD Coordinate from properties file.", ex);
-		} catch (ArtifactNotFoundException ex) {
-			throw new MojoExecutionException("Error resolving JSTD artifact in local repository.", ex);
-		}
-	}
 
-	private ProcessConfiguration buildLocalJarProcessConfig() throws MojoExecutionException {
-		JarProcessConfiguration processConfiguration = new JarProcessConfiguration(jar);
-		if (StringUtils.isNotEmpty(jvmOpts)) {
-			processConfiguration.addExecutableOptions(jvmOpts);
+			File manifestDirectory = manifestFile == null ? null : manifestFile.getAbsoluteFile().getParentFile();
+			String coverageData = prepareCoverage();
+			List<ProcessConfiguration> configurations = new ArrayList<ProcessConfiguration>();
+			for (int i = 0; i < configs.size(); i++) {
+				// each config keeps a manifest, and its expanded copy, of its own
+				ConfigRun run = new ConfigRun(configs.get(i).getPath(),
+						manifestDirectory == null ? null : new File(manifestDirectory, "configs/" + i + "/manifest.bin"));
+				Target target = servers.isEmpty() ? configuredTarget()
+						: new Target(null, servers.get(i % servers.size()), null, testOutput);
+				if (coverageData != null) {
+					// configs in different directories may share a name, and so a coverage file
+					target = target.writingTo(new File(coverageData, String.valueOf(i)).getPath());
+				}
+				ProcessConfiguration processConfiguration = buildProcessConfiguration(tests, target, run);
+				logProcessArguments(processConfiguration);
+				configurations.add(processConfiguration);
+			}
+
+			startReports();
+			TestResultCollector collector = new TestResultCollector();
+			long started = System.currentTimeMillis();
+			List<TestRunnerResults> results = executeConcurrently(configurations, collector, parallelism);
+			reportTimings(collector, started);
+			finishReports();
+			for (int i = 0; i < configs.size(); i++) {
+				TestRunnerResults result = results.get(i);
+				getLog().info(String.format("%s: Total %d tests (Passed: %d; Fails: %d; Errors: %d)", configs.get(i),
+						result.getTotalTestsRun(), result.getTotalTestsPassed(), result.getTotalTestsFailed(),
+						result.getTotalTestsErrored()));
+			}
+			TestRunnerResults total = TestRunnerResults.merge(results);
+			getLog().info(String.format("%d configs: Total %d tests (Passed: %d; Fails: %d; Errors: %d)",
+					configs.size(), total.getTotalTestsRun(), total.getTotalTestsPassed(),
+					total.getTotalTestsFailed(), total.getTotalTestsErrored()));
+			LcovMerger.Summary coverageSummary = mergeCoverage(coverageData, started);
+			resultsProcessor.processResults(total);
+			checkCoverage(coverageSummary);
+		} finally {
+			for (String startedServer : startedServers) {
+				JstdLauncher.quitServer(startedServer, serverHandlerPrefix);
+			}
+			if (lease != null) {
+				lease.touch();
+			}
 		}
-		return processConfiguration;
 	}
 
-	private void addClasspathArguments(JarProcessConfiguration jarConfig) {
-		List<String> classpathArgs = new ArrayList<String>();
-		for (Artifact artifact : dependencies) {
-			classpathArgs.add(artifact.getFile().getAbsolutePath());
-		}
+	/**
+	 * Starts servers in this JVM on consecutive ports, capturing <code>browser</code> on each.
+	 *
+	 * @return the URLs of the servers
+	 */
+	private List<String> startServers(int firstPort, int count) throws MojoExecutionException {
+		String jarPath = StringUtils.isNotEmpty(jar) ? jar
+				: ((JarProcessConfiguration) buildMavenJarProcessConfig()).getJarPath();
+		List<String> urls = new ArrayList<String>();
+		try {
+			JstdLauncher launcher = new JstdLauncher(jarPath);
+			for (int i = 0; i < count; i++) {
+				List<String> arguments = new ArrayList<String>();
+				arguments.add("--port");
+				arguments.add(String.valueOf(firstPort + i));
+				if (StringUtils.isNotEmpty(browser)) {
+					arguments.add("--browser");
+					arguments.add(browser);
+				}
+				if (StringUtils.isNotEmpty(serverHandlerPrefix)) {
+					arguments.add("--serverHandlerPrefix");
+					arguments.add(serverHandlerPrefix);
+				}
+				if (launcher.serve(arguments, System.out) != 0) {
+					throw new MojoExecutionException("JsTestDriver server did not start on port " + (firstPort + i));
+				}
+				urls.add("http://localhost:" + (firstPort + i));
+			}
+			return urls;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to load JsTestDriver from " + jarPath, e);
+		} catch (MojoExecutionException e) {
+			for (String url : urls) {
+				JstdLauncher.quitServer(url, serverHandlerPrefix);
+			}
+			throw e;
+		}
+	}
 
-		jarConfig.addClasspath(StringUtils.join(classpathArgs, ";"));
+	private List<TestRunnerResults> executeConcurrently(List<ProcessConfiguration> configurations,
+			final TestResultCollector collector) throws MojoExecutionException {
+		return executeConcurrently(configurations, collector, configurations.size());
+	}
+
+	private List<TestRunnerResults> executeConcurrently(List<ProcessConfiguration> configurations,
+			final TestResultCollector collector, int parallelism) throws MojoExecutionException {
+		final ProcessExecutor executor = selectExecutor();
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		try {
+			List<Future<TestRunnerResults>> shards = new ArrayList<Future<TestRunnerResults>>();
+			for (final ProcessConfiguration configuration : configurations) {
+				shards.add(pool.submit(new Callable<TestRunnerResults>() {
+					public TestRunnerResults call() throws MojoExecutionException {
+						return runTests(executor, configuration, collector);
+					}
+				}));
+			}
+			List<TestRunnerResults> results = new ArrayList<TestRunnerResults>();
+			for (Future<TestRunnerResults> shard : shards) {
+				results.add(shard.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for test shards", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof MojoExecutionException) {
+				throw (MojoExecutionException) e.getCause();
+			}
+			throw new MojoExecutionException("Test shard failed to run", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes the timing file and the slowest test report, and warns about test cases that got
+	 * markedly slower since the previous timing file.
+	 */
+	private void reportTimings(TestResultCollector collector, long started) {
+		PhaseTimer.Span span = timer.start("report");
+		try {
+			writeTimings(collector, started);
+		} finally {
+			span.end();
+		}
+	}
+
+	private void writeTimings(TestResultCollector collector, long started) {
+		if (StringUtils.isNotEmpty(testOutput) && !".".equals(testOutput)) {
+			try {
+				// file times may be truncated to the second
+				collector.addXmlReports(new File(testOutput), started / 1000 * 1000);
+				if (coverage) {
+					// shards and configs measuring coverage write to directories of their own
+					File[] directories = new File(testOutput).listFiles();
+					for (File directory : directories == null ? new File[0] : directories) {
+						if (directory.isDirectory()) {
+							collector.addXmlReports(directory, started / 1000 * 1000);
+						}
+					}
+				}
+			} catch (Exception e) {
+				getLog().warn("Unable to read test reports in " + testOutput + ": " + e.getMessage());
+			}
+		}
+		TimingReport report = new TimingReport(collector.getResults());
+		if (report.isEmpty()) {
+			getLog().debug("No test durations reported; set testOutput to time passing tests too.");
+			return;
+		}
+		try {
+			if (timingsFile != null) {
+				for (String regression : report.findRegressions(loadTimings())) {
+					getLog().warn("Slower test case: " + regression);
+				}
+				report.writeTimings(timingsFile);
+			}
+			if (slowTestCount > 0) {
+				getLog().info("Slowest tests:");
+				for (String line : report.formatSlowest(slowTestCount)) {
+					getLog().info(line);
+				}
+				if (slowTestReport != null) {
+					report.writeSlowest(slowTestReport, slowTestCount);
+				}
+			}
+		} catch (IOException e) {
+			getLog().warn("Unable to write test timings: " + e.getMessage());
+		}
+	}
+
+	private ResultCache openResultCache() {
+		if (StringUtils.isBlank(resultCache)) {
+			return null;
+		}
+		String location = resultCache.trim();
+		if (location.startsWith("http://") || location.startsWith("https://")) {
+			return new ResultCache(new HttpResultStore(location));
+		}
+		File directory = new File(location);
+		if (!directory.isAbsolute()) {
+			directory = new File(resolveConfigPaths(), location);
+		}
+		return new ResultCache(new DirectoryResultStore(directory));
+	}
+
+	/**
+	 * @return the key of this run in the result cache, or null if it cannot be cached
+	 */
+	private String resultCacheKey() throws MojoExecutionException {
+		resolveConfigPaths();
+		if (!new File(config).isFile()) {
+			return null;
+		}
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		parameters.put("browser", browser);
+		parameters.put("requiredBrowsers", requiredBrowsers);
+		parameters.put("tests", tests);
+		parameters.put("plugins", plugins);
+		parameters.put("coverage", String.valueOf(coverage));
+		parameters.put("browserless", browserless);
+		parameters.put("dryRunFor", dryRunFor);
+		parameters.put("preloadFiles", String.valueOf(preloadFiles));
+		parameters.put("captureConsole", String.valueOf(captureConsole));
+		parameters.put("failFast", String.valueOf(failFast));
+		parameters.put("verbose", String.valueOf(verbose || failFast || surefireReports));
+		PhaseTimer.Span span = timer.start("cache");
+		try {
+			String version;
+			if (StringUtils.isNotEmpty(jar)) {
+				File jarFile = new File(jar);
+				version = jarFile.getName() + ":" + jarFile.length();
+			} else {
+				version = resolutionCache.getJstdCoordinate().getVersion();
+			}
+			List<File> pluginJars = new ArrayList<File>();
+			if (StringUtils.isNotEmpty(plugins)) {
+				for (String plugin : StringUtils.split(plugins, ",")) {
+					pluginJars.add(new File(plugin.trim()));
+				}
+			}
+			if (coverage) {
+				pluginJars.add(new File(getCoverageJar()));
+			}
+			return ResultCache.key(parseConfiguration(), version, parameters, pluginJars);
+		} catch (IOException e) {
+			getLog().warn("Not using the result cache, unable to hash the inputs of " + config + ": " + e.getMessage());
+			return null;
+		} finally {
+			span.end();
+		}
+	}
+
+	/**
+	 * @return the replayed results, or null on a miss
+	 */
+	private TestRunnerResults replayResults(ResultCache cache, String key, TestResultCollector collector)
+			throws MojoExecutionException {
+		PhaseTimer.Span span = timer.start("cache");
+		try {
+			OutputListener listener = reportWriter == null ? collector
+					: new CompositeOutputListener(collector, reportWriter.session());
+			TestRunnerResults results = cache.replay(key, listener, System.out, getTestOutputDirectory());
+			if (results != null) {
+				getLog().info("Replayed the results stored under " + key + " in " + cache.getStore());
+				timer.count("cacheHits", 1);
+			} else {
+				getLog().debug("No results stored under " + key + " in " + cache.getStore());
+			}
+			return results;
+		} catch (IOException e) {
+			getLog().warn("Running the tests, unable to read the result cache " + cache.getStore() + ": " + e.getMessage());
+			return null;
+		} finally {
+			span.end();
+		}
+	}
+
+	private void storeResults(ResultCache cache, String key, TestRunnerResults results) {
+		PhaseTimer.Span span = timer.start("cache");
+		try {
+			if (recording.store(key, results, getTestOutputDirectory())) {
+				getLog().debug("Stored the results under " + key + " in " + cache.getStore());
+			} else {
+				getLog().info("Not caching the results, the output of the run is too big");
+			}
+		} catch (IOException e) {
+			getLog().warn("Unable to store the results in " + cache.getStore() + ": " + e.getMessage());
+		} finally {
+			span.end();
+		}
+	}
+
+	private File getTestOutputDirectory() {
+		return StringUtils.isEmpty(testOutput) || ".".equals(testOutput) ? null : new File(testOutput);
+	}
+
+	private void writeMetrics() {
+		try {
+			if (metricsFile != null && StringUtils.isNotEmpty(metricsFile.getName())) {
+				timer.writeMetrics(metricsFile);
+			}
+			if (traceFile != null && StringUtils.isNotEmpty(traceFile.getName())) {
+				timer.writeTrace(traceFile);
+			}
+		} catch (IOException e) {
+			getLog().warn("Unable to write execution metrics: " + e.getMessage());
+		}
+	}
+
+	private void startReports() {
+		reportWriter = surefireReports && reportsDirectory != null ? new SurefireReportWriter(reportsDirectory) : null;
+	}
+
+	/**
+	 * Writes the Surefire reports; tests that passed were already streamed to their reports.
+	 */
+	private void finishReports() {
+		if (reportWriter == null) {
+			return;
+		}
+		try {
+			reportWriter.finish();
+		} catch (IOException e) {
+			getLog().warn("Unable to write test reports to " + reportsDirectory + ": " + e.getMessage());
+		}
+		reportWriter = null;
+	}
+
+	/**
+	 * Points <code>testOutput</code>, where the coverage plugin writes, at the directory next to
+	 * <code>coverageReport</code> unless it is set.
+	 *
+	 * @return the absolute directory the coverage data is written under, null without coverage
+	 */
+	private String prepareCoverage() throws MojoExecutionException {
+		if (!coverage) {
+			return null;
+		}
+		resolveConfigPaths();
+		if (StringUtils.isEmpty(testOutput) || ".".equals(testOutput)) {
+			testOutput = new File(coverageReport.getAbsoluteFile().getParentFile(), "data").getPath();
+		}
+		return testOutput;
+	}
+
+	private String getCoverageJar() throws MojoExecutionException {
+		if (StringUtils.isNotEmpty(coverageJar)) {
+			return coverageJar;
+		}
+		try {
+			ArtifactLocator locator = new ArtifactLocator(artifactFactory, artifactResolver, localRepository);
+			PhaseTimer.Span resolve = timer.start("resolve");
+			try {
+				return resolutionCache.getArtifactPath(locator, new CoverageCoordinate(resolutionCache.getJstdCoordinate()),
+						localRepository == null ? "" : localRepository.getBasedir());
+			} finally {
+				resolve.end();
+			}
+		} catch (IOException ex) {
+			throw new MojoExecutionException("Error loading JSTD Coordinate from properties file.", ex);
+		} catch (ArtifactNotFoundException ex) {
+			throw new MojoExecutionException("Error resolving the JsTD coverage plugin; set coverageJar to use a local copy.", ex);
+		}
+	}
+
+	/**
+	 * Merges the coverage files written under {@code directory} since {@code started} into
+	 * <code>coverageReport</code>.
+	 *
+	 * @return the totals, or null without coverage
+	 */
+	private LcovMerger.Summary mergeCoverage(String directory, long started) throws MojoExecutionException {
+		if (directory == null) {
+			return null;
+		}
+		PhaseTimer.Span span = timer.start("coverage");
+		try {
+			List<File> files = new ArrayList<File>();
+			// file times may be truncated to the second
+			findCoverageFiles(new File(directory), started / 1000 * 1000, files);
+			if (files.isEmpty()) {
+				getLog().warn("No coverage reported in " + directory + "; is the coverage plugin loaded?");
+				return null;
+			}
+			LcovMerger.Summary summary = new LcovMerger().merge(files, coverageReport);
+			getLog().info("Coverage: " + summary + ", merged from " + files.size() + " files into " + coverageReport);
+			return summary;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to merge the coverage in " + directory, e);
+		} finally {
+			span.end();
+		}
+	}
+
+	private static void findCoverageFiles(File directory, long since, List<File> files) {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		Arrays.sort(children);
+		for (File child : children) {
+			if (child.isDirectory()) {
+				findCoverageFiles(child, since, files);
+			} else if (child.getName().endsWith("coverage.dat") && child.lastModified() >= since) {
+				files.add(child);
+			}
+		}
+	}
+
+	private void checkCoverage(LcovMerger.Summary summary) throws MojoExecutionException {
+		if (!coverage || (coverageLineThreshold <= 0 && coverageBranchThreshold <= 0)) {
+			return;
+		}
+		if (summary == null) {
+			throw new MojoExecutionException("No coverage to check against the thresholds");
+		}
+		List<String> failures = new ArrayList<String>();
+		if (summary.getLineCoverage() < coverageLineThreshold) {
+			failures.add(String.format("line coverage %.1f%% is below %.1f%%", summary.getLineCoverage(),
+					coverageLineThreshold));
+		}
+		if (summary.getBranchCoverage() < coverageBranchThreshold) {
+			failures.add(String.format("branch coverage %.1f%% is below %.1f%%", summary.getBranchCoverage(),
+					coverageBranchThreshold));
+		}
+		if (!failures.isEmpty()) {
+			throw new MojoExecutionException("Coverage check failed: " + StringUtils.join(failures, ", "));
+		}
+	}
+
+	/**
+	 * Runs JsTD, once more with <code>--reset</code> if the first run timed out and
+	 * <code>retryOnTimeout</code> is set.
+	 *
+	 * @return the results, those up to the first failure when <code>failFast</code> aborted the run
+	 * @throws MojoExecutionException if the run failed or printed no results
+	 */
+	private TestRunnerResults runTests(ProcessExecutor executor, ProcessConfiguration configuration,
+			TestResultCollector collector) throws MojoExecutionException {
+		ResultsParser parser = resultsProcessor.createParser(failFast);
+		List<OutputListener> listeners = new ArrayList<OutputListener>();
+		listeners.add(collector);
+		if (reportWriter != null) {
+			listeners.add(reportWriter.session());
+		}
+		if (recording != null) {
+			listeners.add(recording);
+		}
+		listeners.add(parser);
+		PhaseTimer.TimedListener listener = timer.time(
+				new CompositeOutputListener(listeners.toArray(new OutputListener[listeners.size()])));
+		try {
+			executor.execute(configuration, listener);
+		} catch (FailFastException e) {
+			getLog().warn(e.getMessage());
+		} catch (ProcessTimeoutException e) {
+			if (!retryOnTimeout || !(configuration instanceof JarProcessConfiguration)
+					|| configuration.getArguments().contains("--reset")) {
+				throw e;
+			}
+			getLog().warn(e.getMessage() + ", retrying with --reset");
+			// the output of the run that timed out is no good for replaying
+			recording = null;
+			((JarProcessConfiguration) configuration).addArgument("--reset");
+			return runTests(executor, configuration, collector);
+		} finally {
+			listener.finish();
+		}
+		TestRunnerResults results = resultsProcessor.extractResults(parser);
+		timer.count("testsRun", results.getTotalTestsRun());
+		timer.count("testsFailed", results.getTotalTestsFailed() + results.getTotalTestsErrored());
+		return results;
+	}
+
+	/**
+	 * Runs the test cases in the <code>testOrder</code>, and records their outcomes in the
+	 * <code>historyFile</code>.
+	 *
+	 * @return the merged results of the runs
+	 */
+	private TestRunnerResults runOrderedTests(ProcessConfiguration configuration, TestResultCollector collector)
+			throws MojoExecutionException {
+		if ("config".equals(testOrder)) {
+			return runSplitTests(configuration, collector);
+		}
+		if (!"failuresFirst".equals(testOrder)) {
+			throw new MojoExecutionException("testOrder must be \"config\" or \"failuresFirst\", not \"" + testOrder + "\"");
+		}
+		if (historyFile == null || !(configuration instanceof JarProcessConfiguration)) {
+			return runSplitTests(configuration, collector);
+		}
+		TestHistory history = loadHistory();
+		File historyIndexFile = new File(historyFile.getAbsoluteFile().getParentFile(), "history-index.bin");
+		TestIndex index;
+		List<String> testCases;
+		List<String> changed;
+		try {
+			index = TestIndex.build(parseConfiguration());
+			testCases = findOrderableTestCases();
+			changed = index.getAffectedTestCases(TestIndex.load(historyIndexFile));
+		} catch (IOException e) {
+			getLog().warn("Running the tests in config order, unable to read the test files of " + config + ": " + e.getMessage());
+			return runSplitTests(configuration, collector);
+		}
+		if (testCases == null) {
+			return runSplitTests(configuration, collector);
+		}
+
+		List<String> first = history.prioritize(testCases, changed);
+		List<String> rest = new ArrayList<String>(testCases);
+		rest.removeAll(first);
+		rest = history.rank(rest);
+		List<List<String>> passes = new ArrayList<List<String>>();
+		if (first.isEmpty() || rest.isEmpty()) {
+			passes.add(first.isEmpty() ? rest : first);
+		} else {
+			getLog().info(String.format("Running %d of %d test cases first, they failed last time or changed: %s",
+					first.size(), testCases.size(), StringUtils.join(first, ", ")));
+			passes.add(first);
+			passes.add(rest);
+			// the result cache replays the output of a single run
+			recording = null;
+		}
+		List<TestRunnerResults> results = new ArrayList<TestRunnerResults>();
+		List<String> ran = new ArrayList<String>();
+		for (List<String> pass : passes) {
+			((JarProcessConfiguration) configuration).setArgument("--tests", StringUtils.join(pass, ","));
+			TestRunnerResults result = runSplitTests(configuration, collector);
+			results.add(result);
+			if (failFast && result.hasFailures()) {
+				// the run stopped at the first failure, and failFast reports every test that ran
+				Set<String> reported = new HashSet<String>();
+				for (TestResult test : collector.getResults()) {
+					reported.add(test.getTestCase());
+				}
+				List<String> reportedPass = new ArrayList<String>(pass);
+				reportedPass.retainAll(reported);
+				ran.addAll(reportedPass);
+				break;
+			}
+			ran.addAll(pass);
+		}
+		writeHistory(history, ran, collector, index, historyIndexFile);
+		return TestRunnerResults.merge(results);
+	}
+
+	/**
+	 * @return the test cases to order, those named by <code>tests</code> or all test cases of
+	 * the config, or null if the test files declare test cases the plugin cannot find
+	 */
+	private List<String> findOrderableTestCases() throws IOException {
+		TestCaseScanner scanner = new TestCaseScanner();
+		List<String> declared = new ArrayList<String>();
+		for (File testFile : parseConfiguration().getTestFiles()) {
+			List<String> found = scanner.scan(testFile);
+			if (found.isEmpty()) {
+				getLog().warn("Running the tests in config order, no test cases found in " + testFile);
+				return null;
+			}
+			for (String testCase : found) {
+				if (!declared.contains(testCase)) {
+					declared.add(testCase);
+				}
+			}
+		}
+		if (StringUtils.isEmpty(tests) || "all".equals(tests)) {
+			return declared;
+		}
+		List<String> named = Arrays.asList(StringUtils.split(tests, ","));
+		if (!declared.containsAll(named)) {
+			getLog().info("Running the tests in config order, tests names single tests.");
+			return null;
+		}
+		return named;
+	}
+
+	private TestHistory loadHistory() {
+		try {
+			return TestHistory.load(historyFile);
+		} catch (IOException e) {
+			getLog().warn("Ignoring unreadable test history " + historyFile + ": " + e.getMessage());
+			return new TestHistory();
+		}
 	}
 
-	private void buildArguments(JarProcessConfiguration testRunner)
+	/**
+	 * Records the outcome of each test case that ran, passed unless one of its tests was reported otherwise.
+	 */
+	private void writeHistory(TestHistory history, List<String> ran, TestResultCollector collector, TestIndex index,
+			File historyIndexFile) {
+		Map<String, Double> millis = new HashMap<String, Double>();
+		Set<String> failed = new HashSet<String>();
+		for (TestResult result : collector.getResults()) {
+			if (!TestResult.PASSED.equals(result.getStatus())) {
+				failed.add(result.getTestCase());
+			}
+			if (result.getMillis() >= 0) {
+				Double sum = millis.get(result.getTestCase());
+				millis.put(result.getTestCase(), sum == null ? result.getMillis() : sum + result.getMillis());
+			}
+		}
+		for (String testCase : ran) {
+			Double duration = millis.get(testCase);
+			history.record(testCase, failed.contains(testCase), duration == null ? TestResult.UNKNOWN : duration);
+		}
+		try {
+			history.write(historyFile);
+			index.write(historyIndexFile);
+		} catch (IOException e) {
+			getLog().warn("Unable to write the test history " + historyFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Runs the test files <code>browserless</code> selects on the JavaScript engine and the
+	 * others in browsers, with the <code>--tests</code> of the configuration narrowed to the test
+	 * cases of the files each runs.
+	 *
+	 * @return the merged results of both runs
+	 */
+	private TestRunnerResults runSplitTests(ProcessConfiguration configuration, TestResultCollector collector)
 			throws MojoExecutionException {
+		List<File> engineFiles = selectBrowserlessFiles();
+		if (engineFiles.isEmpty() || !(configuration instanceof JarProcessConfiguration)) {
+			return runTests(selectExecutor(), configuration, collector);
+		}
+		JstdConfiguration parsed;
+		List<String> engineTests;
+		List<String> browserTests;
+		try {
+			parsed = parseConfiguration();
+			List<File> browserFiles = new ArrayList<File>(parsed.getTestFiles());
+			browserFiles.removeAll(engineFiles);
+			TestCaseScanner scanner = new TestCaseScanner();
+			List<String> browserCases = scanner.scan(browserFiles);
+			if (!browserFiles.isEmpty() && browserCases.isEmpty()) {
+				getLog().warn("No test cases found in the test files left to browsers, running all tests in browsers.");
+				return runTests(selectExecutor(), configuration, collector);
+			}
+			String selected = ((JarProcessConfiguration) configuration).getArgument("--tests");
+			engineTests = selectTests(scanner.scan(engineFiles), selected);
+			browserTests = selectTests(browserCases, selected);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to read the test files of " + config, e);
+		}
+		if (engineTests.isEmpty() && browserTests.isEmpty()) {
+			return runTests(selectExecutor(), configuration, collector);
+		}
+
+		// the result cache replays the output of a single run
+		recording = null;
+		List<TestRunnerResults> results = new ArrayList<TestRunnerResults>();
+		if (!engineTests.isEmpty()) {
+			getLog().info(String.format("Running %d test files on the JavaScript engine", engineFiles.size()));
+			TestRunnerResults engineResults = runTests(new ScriptEngineExecutor(parsed.getLoadFiles(), engineFiles),
+					configuration, collector);
+			if (failFast && engineResults.hasFailures()) {
+				return engineResults;
+			}
+			results.add(engineResults);
+		}
+		if (!browserTests.isEmpty()) {
+			((JarProcessConfiguration) configuration).setArgument("--tests", StringUtils.join(browserTests, ","));
+			results.add(runTests(selectExecutor(), configuration, collector));
+		}
+		return TestRunnerResults.merge(results);
+	}
+
+	/**
+	 * @return the test files to run on the JavaScript engine, none unless <code>browserless</code>
+	 * selects some
+	 */
+	private List<File> selectBrowserlessFiles() throws MojoExecutionException {
+		List<File> files = new ArrayList<File>();
+		if ("off".equals(browserless)) {
+			return files;
+		}
+		if (!"marked".equals(browserless) && !"all".equals(browserless)) {
+			throw new MojoExecutionException("browserless must be \"off\", \"marked\" or \"all\", not \"" + browserless + "\"");
+		}
+		if (!ScriptEngineExecutor.isAvailable()) {
+			getLog().warn("This JVM has no JavaScript engine, running the browserless tests in browsers.");
+			return files;
+		}
+		try {
+			JstdConfiguration parsed = parseConfiguration();
+			boolean all = "all".equals(browserless) || ScriptEngineExecutor.isMarked(parsed.getFile());
+			for (File file : parsed.getTestFiles()) {
+				if (all || ScriptEngineExecutor.isMarked(file)) {
+					files.add(file);
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to read the test files of " + config, e);
+		}
+		if (coverage && !files.isEmpty()) {
+			getLog().warn("Running all tests in browsers, the coverage plugin measures browser runs only.");
+			files.clear();
+		}
+		return files;
+	}
+
+	/**
+	 * @param tests the value of <code>--tests</code>
+	 * @return the entries of {@code tests} naming the given test cases or their tests, or the
+	 * test cases themselves when {@code tests} is all
+	 */
+	private static List<String> selectTests(List<String> testCases, String tests) {
+		if (StringUtils.isEmpty(tests) || "all".equals(tests)) {
+			return testCases;
+		}
+		List<String> selected = new ArrayList<String>();
+		for (String entry : StringUtils.split(tests, ",")) {
+			for (String testCase : testCases) {
+				if (entry.equals(testCase) || entry.startsWith(testCase + ".")) {
+					selected.add(entry);
+					break;
+				}
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Runs the failed tests again, up to <code>rerunFailingTests</code> times, each time only
+	 * those still failing. Tests passing on a rerun count as passed and are recorded in the
+	 * quarantine file; failures of quarantined tests are reported without counting. Nothing
+	 * runs again unless every failure JsTD counted is one of a named test, as a failure to load
+	 * a file, of a whole test case or of a test in a second browser is not.
+	 *
+	 * @param target where the reruns go
+	 * @return the results with the outcome of the reruns merged in
+	 */
+	private TestRunnerResults rerunFailures(TestRunnerResults results, TestResultCollector collector, Target target)
+			throws MojoExecutionException {
+		if (rerunFailingTests <= 0 || !results.hasFailures()) {
+			return results;
+		}
+		Map<String, String> failed = failedTests(collector, null);
+		if (failed.size() < results.getTotalTestsFailed() + results.getTotalTestsErrored()) {
+			getLog().warn(String.format("Not rerunning: only %d of the %d failures could be attributed to tests.",
+					failed.size(), results.getTotalTestsFailed() + results.getTotalTestsErrored()));
+			return results;
+		}
+		TestQuarantine quarantine = loadQuarantine();
+		Map<String, String> failing = failed;
+		for (int attempt = 1; attempt <= rerunFailingTests && !failing.isEmpty(); attempt++) {
+			getLog().info(String.format("Rerun %d of %d: %s", attempt, rerunFailingTests,
+					StringUtils.join(failing.keySet(), ", ")));
+			ProcessConfiguration configuration = buildProcessConfiguration(StringUtils.join(failing.keySet(), ","), target);
+			logProcessArguments(configuration);
+			TestResultCollector rerun = new TestResultCollector();
+			runSplitTests(configuration, rerun);
+			Map<String, String> stillFailing = failedTests(rerun, failing);
+			for (String test : failing.keySet()) {
+				if (!stillFailing.containsKey(test)) {
+					getLog().warn(test + " passed when run again, it is flaky");
+					quarantine.recordFlip(test);
+				}
+			}
+			failing = stillFailing;
+		}
+
+		// the failures JsTD counted, less those of the tests that passed or are quarantined
+		int failures = results.getTotalTestsFailed();
+		int errors = results.getTotalTestsErrored();
+		for (Map.Entry<String, String> test : failed.entrySet()) {
+			boolean quarantined = failing.containsKey(test.getKey()) && quarantine.isQuarantined(test.getKey());
+			if (quarantined) {
+				getLog().warn(test.getKey() + " failed but is quarantined in " + quarantineFile);
+			}
+			if (!quarantined && failing.containsKey(test.getKey())) {
+				continue;
+			}
+			if (TestResult.ERROR.equals(test.getValue())) {
+				errors--;
+			} else {
+				failures--;
+			}
+		}
+		writeQuarantine(quarantine);
+		int run = results.getTotalTestsRun();
+		return new TestRunnerResults(run, run - failures - errors, failures, errors);
+	}
+
+	/**
+	 * @param candidates the tests that ran, with the status they keep if {@code collector} has
+	 * none for them, or null if all tests ran
+	 * @return the tests of {@code collector} that did not pass, with their status
+	 */
+	private Map<String, String> failedTests(TestResultCollector collector, Map<String, String> candidates) {
+		Map<String, String> failed = new LinkedHashMap<String, String>();
+		Set<String> reported = new HashSet<String>();
+		for (TestResult result : collector.getResults()) {
+			reported.add(result.toString());
+			if (!TestResult.PASSED.equals(result.getStatus()) && (candidates == null || candidates.containsKey(result.toString()))) {
+				failed.put(result.toString(), result.getStatus());
+			}
+		}
+		if (candidates != null) {
+			// a test the rerun did not report at all has not passed
+			for (Map.Entry<String, String> candidate : candidates.entrySet()) {
+				if (!reported.contains(candidate.getKey())) {
+					failed.put(candidate.getKey(), candidate.getValue());
+				}
+			}
+		}
+		return failed;
+	}
+
+	private TestQuarantine loadQuarantine() {
+		try {
+			return TestQuarantine.load(quarantineFile, quarantineThreshold);
+		} catch (IOException e) {
+			getLog().warn("Ignoring unreadable quarantine file " + quarantineFile + ": " + e.getMessage());
+			return new TestQuarantine(quarantineThreshold);
+		}
+	}
+
+	private void writeQuarantine(TestQuarantine quarantine) {
+		if (quarantineFile == null) {
+			return;
+		}
+		try {
+			quarantine.write(quarantineFile);
+		} catch (IOException e) {
+			getLog().warn("Unable to write quarantine file " + quarantineFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The test cases to distribute: those named by <code>tests</code>, or all test cases
+	 * declared in the <code>test:</code> files of the config.
+	 */
+	private List<String> findTestCases() throws MojoExecutionException {
+		if (StringUtils.isNotEmpty(tests) && !"all".equals(tests)) {
+			return Arrays.asList(StringUtils.split(tests, ","));
+		}
+		try {
+			return new TestCaseScanner().scan(parseConfiguration().getTestFiles());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to read test cases from " + config, e);
+		}
+	}
+
+	private JstdConfiguration parseConfiguration() throws IOException {
+		return parseConfiguration(configuredRun());
+	}
+
+	/**
+	 * Parses the config once per execution, and expands its patterns from the stored manifest
+	 * while that is current.
+	 */
+	private JstdConfiguration parseConfiguration(ConfigRun run) throws IOException {
+		if (run.configuration != null) {
+			return run.configuration;
+		}
+		JstdConfiguration configuration = JstdConfiguration.parse(new File(run.config), getConfigurationBase(run));
+		FileManifest manifest = FileManifest.load(run.manifestFile, configuration);
+		if (manifest != null) {
+			getLog().debug("Using the file manifest " + run.manifestFile);
+			configuration.setManifest(manifest);
+			run.configuration = configuration;
+			return configuration;
+		}
+		long start = System.currentTimeMillis();
+		manifest = configuration.getManifest();
+		getLog().debug(String.format("Expanded the patterns of %s in %d ms, listing %d directories",
+				run.config, System.currentTimeMillis() - start, manifest.getDirectoryCount()));
+		if (run.manifestFile != null) {
+			try {
+				manifest.write(run.manifestFile);
+			} catch (IOException e) {
+				getLog().warn("Unable to write file manifest " + run.manifestFile + ": " + e.getMessage());
+			}
+		}
+		run.configuration = configuration;
+		return configuration;
+	}
+
+	private File getConfigurationBase(ConfigRun run) {
+		return StringUtils.isNotEmpty(basePath) ? new File(basePath) : new File(run.config).getAbsoluteFile().getParentFile();
+	}
+
+	/**
+	 * @return the path of the config copy listing the matched files, written once per execution
+	 */
+	private String writeExpandedConfig(ConfigRun run) throws MojoExecutionException {
+		if (run.expandedConfig == null) {
+			if (run.manifestFile == null) {
+				throw new MojoExecutionException("expandConfig needs a manifestFile to write the expanded config next to");
+			}
+			File target = new File(run.manifestFile.getAbsoluteFile().getParentFile(), new File(run.config).getName());
+			try {
+				parseConfiguration(run).getManifest().writeConfig(target, serveLoadFiles(run));
+			} catch (IOException e) {
+				throw new MojoExecutionException("Unable to write the expanded config " + target, e);
+			}
+			run.expandedConfig = target.getPath();
+		}
+		return run.expandedConfig;
+	}
+
+	/**
+	 * Registers the <code>load:</code> files of the config with the <code>staticServer</code>,
+	 * started by the first config.
+	 *
+	 * @return the URL the files are served under, or null to leave them to JsTD
+	 */
+	private String serveLoadFiles(ConfigRun run) throws IOException {
+		if (!staticServer) {
+			return null;
+		}
+		if (coverage) {
+			getLog().warn("The load: files are served by JsTD, which instruments them for coverage, not by staticServer.");
+			return null;
+		}
+		if (staticFileServer == null) {
+			StaticFileServer server = new StaticFileServer(new File(run.manifestFile.getAbsoluteFile().getParentFile(), "static"));
+			int listening = server.start(staticServerHost, staticServerPort);
+			staticFileServer = server;
+			getLog().info("Serving the load: files at http://" + staticServerHost + ":" + listening + "/");
+		}
+		JstdConfiguration configuration = parseConfiguration(run);
+		String prefix = String.valueOf(staticFilePrefix++);
+		staticFileServer.register(prefix, configuration.getBasePath(), configuration.getLoadFiles());
+		return "http://" + staticServerHost + ":" + staticFileServer.getPort() + "/" + prefix + "/";
+	}
+
+	private void stopStaticServer() {
+		if (staticFileServer != null) {
+			staticFileServer.stop();
+			staticFileServer = null;
+		}
+	}
+
+	/**
+	 * Narrows <code>tests</code> down to the test cases affected by the changes since the
+	 * last passing run.
+	 *
+	 * @return the index to store once the run passes, carrying the results of the last passing
+	 * run when no file changed since, or null to run without one
+	 */
+	private TestIndex selectAffectedTests() throws MojoExecutionException {
+		if (StringUtils.isNotEmpty(tests) && !"all".equals(tests)) {
+			getLog().info("Incremental selection is off when tests are named explicitly.");
+			return null;
+		}
+		resolveConfigPaths();
+		if (!new File(config).exists()) {
+			return null;
+		}
+		try {
+			TestIndex index = TestIndex.build(parseConfiguration());
+			TestIndex previous = TestIndex.load(indexFile);
+			if (previous != null && previous.getResults() != null && index.isUnchanged(previous)) {
+				index.setResults(previous.getResults());
+				return index;
+			}
+			List<String> affected = index.getAffectedTestCases(previous);
+			List<String> all = index.getTestCases();
+			if (previous != null && !affected.isEmpty() && affected.size() < all.size()) {
+				getLog().info(String.format("Running %d of %d test cases affected by changes since the last passing run.",
+						affected.size(), all.size()));
+				tests = StringUtils.join(affected, ",");
+			}
+			return index;
+		} catch (IOException e) {
+			getLog().warn("Running all tests, unable to index " + config + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the index of a passing run. Its results only mark it as passing: a run narrowed down
+	 * to the affected test cases does not have the totals of the whole suite.
+	 */
+	private void writeIndex(TestIndex index, TestRunnerResults results) {
+		index.setResults(results);
+		try {
+			index.write(indexFile);
+		} catch (IOException e) {
+			getLog().warn("Unable to write test index " + indexFile + ": " + e.getMessage());
+		}
+	}
+
+	private TestTimings loadTimings() {
+		try {
+			return TestTimings.load(timingsFile);
+		} catch (IOException e) {
+			getLog().warn("Ignoring unreadable timing file " + timingsFile + ": " + e.getMessage());
+			return new TestTimings();
+		}
+	}
+
+	private ServerLease acquireLeasedServer() {
+		if (!reuseServer || StringUtils.isNotEmpty(server)) {
+			return null;
+		}
+		ServerLease lease = ServerLease.read(leaseFile);
+		if (lease == null || !lease.isAlive()) {
+			return null;
+		}
+		lease.touch();
+		getLog().info("Reusing JsTestDriver server " + lease.getServerUrl() + " leased in " + leaseFile);
+		PhaseTimer.Span capture = timer.start("capture");
+		awaitBrowserPool(lease);
+		capture.end();
+		server = lease.getServerUrl();
+		port = null;
+		browser = null;
+		return lease;
+	}
+
+	private void awaitBrowserPool(ServerLease lease) {
+		if (!lease.hasPooledBrowser()) {
+			return;
+		}
+		long deadline = System.currentTimeMillis() + browserCaptureTimeout * 1000L;
+		while (BrowserPool.capturedBrowsers(lease.getServerUrl()) <= 0) {
+			if (System.currentTimeMillis() >= deadline) {
+				getLog().warn("The pooled browser of the leased server is not captured, running anyway");
+				return;
+			}
+			try {
+				Thread.sleep(250);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private ProcessExecutor selectExecutor() throws MojoExecutionException {
+		if (fork) {
+			if (processExecutor instanceof StreamingProcessExecutor) {
+				configureStreaming((StreamingProcessExecutor) processExecutor);
+			}
+			return processExecutor;
+		}
+		if (StringUtils.isNotEmpty(jvmOpts)) {
+			getLog().warn("jvmOpts are ignored when JsTestDriver runs in process (fork=false).");
+		}
+		return inProcessExecutor;
+	}
+
+	private void configureStreaming(StreamingProcessExecutor executor) throws MojoExecutionException {
+		ConsoleSpill spill = null;
+		if ("spill".equals(consoleOverflow)) {
+			if (consoleSpill == null && consoleSpillFile != null) {
+				// every run of the execution spills to the same file, cleared once
+				if (consoleSpillFile.exists() && !consoleSpillFile.delete()) {
+					getLog().warn("Unable to clear the console spill file " + consoleSpillFile);
+				}
+				consoleSpill = new ConsoleSpill(consoleSpillFile);
+			}
+			spill = consoleSpill;
+		} else if (!"drop".equals(consoleOverflow)) {
+			throw new MojoExecutionException("consoleOverflow must be \"spill\" or \"drop\", not \"" + consoleOverflow + "\"");
+		}
+		executor.setConsoleLimit(consoleLimit, spill);
+		executor.setTimeouts(timeout * 1000, inactivityTimeout * 1000, threadDumpFile);
+		executor.setPhaseTimer(timer);
+	}
+
+	private ProcessConfiguration buildProcessConfiguration()
+			throws MojoExecutionException {
+		return buildProcessConfiguration(tests, configuredTarget());
+	}
+
+	/**
+	 * @param tests the tests to run, instead of <code>tests</code>
+	 * @param target the server to run them on, instead of the configured one
+	 */
+	private ProcessConfiguration buildProcessConfiguration(String tests, Target target)
+			throws MojoExecutionException {
+		return buildProcessConfiguration(tests, target, configuredRun());
+	}
+
+	/**
+	 * @param run the config to run, instead of the configured one
+	 */
+	private ProcessConfiguration buildProcessConfiguration(String tests, Target target, ConfigRun run)
+			throws MojoExecutionException {
+		PhaseTimer.Span span = timer.start("configure");
+		try {
+			ProcessConfiguration configuration;
+			if (StringUtils.isNotEmpty(jar)) {
+				configuration = buildLocalJarProcessConfig();
+			} else {
+				configuration = buildMavenJarProcessConfig();
+			}
+
+			buildArguments((JarProcessConfiguration) configuration, tests, target, run);
+
+			return configuration;
+		} finally {
+			span.end();
+		}
+	}
+
+	private ProcessConfiguration buildMavenJarProcessConfig() throws MojoExecutionException {
+		try {
+			ArtifactLocator locator = new ArtifactLocator(artifactFactory, artifactResolver, localRepository);
+			PhaseTimer.Span resolve = timer.start("resolve");
+			String jstdJarPath;
+			try {
+				jstdJarPath = resolutionCache.getArtifactPath(locator, resolutionCache.getJstdCoordinate(),
+						localRepository == null ? "" : localRepository.getBasedir());
+			} finally {
+				resolve.end();
+			}
+			JarProcessConfiguration jarConfig = new JarProcessConfiguration(jstdJarPath);
+			addClasspathArguments(jarConfig);
+			if (StringUtils.isNotEmpty(jvmOpts)) {
+				jarConfig.addExecutableOptions(jvmOpts);
+			}
+			return jarConfig;
+		} catch (IOException ex) {
+			throw new MojoExecutionException("Error loading JSTD Coordinate from properties file.", ex);
+		} catch (ArtifactNotFoundException ex) {
+			throw new MojoExecutionException("Error resolving JSTD artifact in local repository.", ex);
+		}
+	}
+
+	private ProcessConfiguration buildLocalJarProcessConfig() throws MojoExecutionException {
+		JarProcessConfiguration processConfiguration = new JarProcessConfiguration(jar);
+		if (StringUtils.isNotEmpty(jvmOpts)) {
+			processConfiguration.addExecutableOptions(jvmOpts);
+		}
+		return processConfiguration;
+	}
+
+	private void addClasspathArguments(JarProcessConfiguration jarConfig) {
+		List<String> classpathArgs = new ArrayList<String>();
+		for (Artifact artifact : dependencies) {
+			classpathArgs.add(artifact.getFile().getAbsolutePath());
+		}
+
+		jarConfig.addClasspath(StringUtils.join(classpathArgs, ";"));
+	}
+
+	/**
+	 * Lists the configs named by <code>config</code>, expanding its patterns against the base
+	 * path.
+	 */
+	private List<File> resolveConfigs() {
+		List<File> configs = new ArrayList<File>();
+		if (config == null || (config.indexOf(',') < 0 && config.indexOf('*') < 0 && config.indexOf('?') < 0)) {
+			return configs;
+		}
+		File base = new File(StringUtils.defaultIfEmpty(basePath, mavenProject.getBasedir().getAbsolutePath()));
+		for (String entry : StringUtils.split(config, ",")) {
+			GlobPattern pattern = new GlobPattern(base, entry.trim());
+			List<File> matches = pattern.expand();
+			if (matches.isEmpty()) {
+				getLog().warn("No config matches " + entry.trim());
+			}
+			for (File match : matches) {
+				if (!configs.contains(match)) {
+					configs.add(match);
+				}
+			}
+		}
+		if (configs.size() == 1) {
+			config = configs.get(0).getPath();
+		}
+		return configs;
+	}
+
+	/**
+	 * Resolves <code>config</code> and <code>testOutput</code> against the base path and
+	 * defaults the base path. Safe to call repeatedly.
+	 *
+	 * @return the base path relative paths are resolved against
+	 */
+	private String resolveConfigPaths() {
 		String defaultedBasePath = StringUtils.defaultIfEmpty(basePath, mavenProject.getBasedir().getAbsolutePath());
+		if (pathsResolved) {
+			return defaultedBasePath;
+		}
 		if (config != null) {
 			File configFile = new File(config);
 			if (!configFile.isAbsolute()) {
@@ -273,14 +1995,45 @@ public class JsTestDriverMojo extends AbstractMojo {
 			}
 		}
 
+		if (StringUtils.isNotEmpty(testOutput) && !".".equals(testOutput) && !new File(testOutput).isAbsolute()) {
+			testOutput = new File(defaultedBasePath, testOutput).getAbsolutePath();
+		}
+
 		if (defaultBasePath) {
 			basePath = defaultedBasePath;
 		}
+		pathsResolved = true;
+		return defaultedBasePath;
+	}
+
+	/**
+	 * @return the config set by <code>config</code> and <code>manifestFile</code>
+	 */
+	private ConfigRun configuredRun() {
+		if (configuredRun == null) {
+			resolveConfigPaths();
+			configuredRun = new ConfigRun(config, manifestFile);
+		}
+		return configuredRun;
+	}
+
+	private Target configuredTarget() {
+		resolveConfigPaths();
+		return new Target(port, server, browser, testOutput);
+	}
+
+	private void buildArguments(JarProcessConfiguration testRunner, String tests, Target target, ConfigRun run)
+			throws MojoExecutionException {
+		resolveConfigPaths();
+		boolean expand = (expandConfig || staticServer) && new File(run.config).isFile();
 		if (StringUtils.isNotEmpty(basePath)) {
 			testRunner.addArgument("--basePath", basePath);
+		} else if (expand) {
+			// the copy lives elsewhere, so JsTD cannot default the base path to its directory
+			testRunner.addArgument("--basePath", getConfigurationBase(run).getPath());
 		}
-		if (StringUtils.isNotEmpty(browser)) {
-			testRunner.addArgument("--browser", browser);
+		if (StringUtils.isNotEmpty(target.browser)) {
+			testRunner.addArgument("--browser", target.browser);
 		}
 		if (StringUtils.isNotEmpty(browserTimeout)) {
 			testRunner.addArgument("--browserTimeout", browserTimeout);
@@ -288,15 +2041,19 @@ public class JsTestDriverMojo extends AbstractMojo {
 		if (captureConsole) {
 			testRunner.addArgument("--captureConsole");
 		}
-		testRunner.addArgument("--config", config);
+		testRunner.addArgument("--config", expand ? writeExpandedConfig(run) : run.config);
 		if (StringUtils.isNotEmpty(dryRunFor)) {
 			testRunner.addArgument("--dryRunFor", dryRunFor);
 		}
-		if (StringUtils.isNotEmpty(plugins)) {
+		if (coverage) {
+			String coveragePlugin = getCoverageJar();
+			testRunner.addArgument("--plugins", StringUtils.isNotEmpty(plugins) ? plugins + "," + coveragePlugin
+					: coveragePlugin);
+		} else if (StringUtils.isNotEmpty(plugins)) {
 			testRunner.addArgument("--plugins", plugins);
 		}
-		if (StringUtils.isNotEmpty(port)) {
-			testRunner.addArgument("--port", port);
+		if (StringUtils.isNotEmpty(target.port)) {
+			testRunner.addArgument("--port", target.port);
 		}
 		if (preloadFiles) {
 			testRunner.addArgument("--preloadFiles");
@@ -310,23 +2067,22 @@ public class JsTestDriverMojo extends AbstractMojo {
 		if (StringUtils.isNotEmpty(runnerMode)) {
 			testRunner.addArgument("--runnerMode", runnerMode);
 		}
-		if (StringUtils.isNotEmpty(server)) {
-			testRunner.addArgument("--server", server);
+		if (StringUtils.isNotEmpty(target.server)) {
+			testRunner.addArgument("--server", target.server);
+		} else if (portsAllocated && StringUtils.isNotEmpty(target.port)) {
+			testRunner.addArgument("--server", "http://localhost:" + target.port);
 		}
 		if (StringUtils.isNotEmpty(serverHandlerPrefix)) {
 			testRunner.addArgument("--serverHandlerPrefix", serverHandlerPrefix);
 		}
-		if (StringUtils.isNotEmpty(testOutput)) {
-			if (testOutput != null && !testOutput.equals(".")) {
-				if (!testOutput.startsWith("/")) {
-					testOutput = new File(defaultedBasePath, testOutput).getAbsolutePath();
-				}
-				FileUtils.makeDirectoryIfNotExists(testOutput);
+		if (StringUtils.isNotEmpty(target.testOutput)) {
+			if (!target.testOutput.equals(".")) {
+				FileUtils.makeDirectoryIfNotExists(target.testOutput);
 			}
-			testRunner.addArgument("--testOutput", testOutput);
+			testRunner.addArgument("--testOutput", target.testOutput);
 		}
 		testRunner.addArgument("--tests", tests);
-		if (verbose) {
+		if (verbose || failFast || surefireReports) {
 			testRunner.addArgument("--verbose");
 		}
 	}
@@ -343,4 +2099,43 @@ public class JsTestDriverMojo extends AbstractMojo {
 				" J S  T E S T  D R I V E R                 \n" +
 				"-------------------------------------------\n");
 	}
+
+	/**
+	 * The server a run goes to: a <code>port</code> to start one on, capturing the
+	 * <code>browser</code>, and the URL of the <code>server</code> to run against. The
+	 * <code>testOutput</code> is where the run writes its reports.
+	 */
+	private static class Target {
+		private final String port;
+		private final String server;
+		private final String browser;
+		private final String testOutput;
+
+		private Target(String port, String server, String browser, String testOutput) {
+			this.port = port;
+			this.server = server;
+			this.browser = browser;
+			this.testOutput = testOutput;
+		}
+
+		private Target writingTo(String directory) {
+			return new Target(port, server, browser, directory);
+		}
+	}
+
+	/**
+	 * A config a run reads, with the <code>manifestFile</code> kept for it, and what is parsed
+	 * and written from it once per execution.
+	 */
+	private static class ConfigRun {
+		private final String config;
+		private final File manifestFile;
+		private JstdConfiguration configuration;
+		private String expandedConfig;
+
+		private ConfigRun(String config, File manifestFile) {
+			this.config = config;
+			this.manifestFile = manifestFile;
+		}
+	}
 }
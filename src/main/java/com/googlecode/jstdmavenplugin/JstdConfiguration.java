@@ -0,0 +1,184 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a <code>jsTestDriver.conf</code> file the plugin needs to understand itself.
+ * <p/>
+ * JsTD configs are a small YAML subset: top level <code>key: value</code> pairs and
+ * <code>key:</code> headers followed by <code>- item</code> lists.
+ */
+public class JstdConfiguration {
+
+	public static final String LOAD = "load";
+	public static final String TEST = "test";
+	public static final String EXCLUDE = "exclude";
+	public static final String SERVE = "serve";
+	public static final String PLUGIN = "plugin";
+
+	private final File file;
+	private final File basePath;
+	private final Map<String, String> values = new LinkedHashMap<String, String>();
+	private final Map<String, List<String>> lists = new LinkedHashMap<String, List<String>>();
+	private final List<String> pluginJars = new ArrayList<String>();
+	private FileManifest manifest;
+
+	private JstdConfiguration(File file, File basePath) {
+		this.file = file;
+		this.basePath = basePath;
+	}
+
+	/**
+	 * @param basePath directory the file patterns are relative to
+	 */
+	public static JstdConfiguration parse(File file, File basePath) throws IOException {
+		JstdConfiguration configuration = new JstdConfiguration(file, basePath);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String section = null;
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				String content = stripComment(line).trim();
+				if (content.length() == 0) {
+					continue;
+				}
+				if (content.startsWith("-")) {
+					if (section != null) {
+						configuration.list(section).add(unquote(content.substring(1).trim()));
+						configuration.itemKey(section, content.substring(1).trim());
+					}
+					continue;
+				}
+				if (section != null && Character.isWhitespace(line.charAt(0)) && !configuration.list(section).isEmpty()) {
+					// a further key of the last item, as the jar: of a plugin: entry
+					configuration.itemKey(section, content);
+					continue;
+				}
+				int colon = content.indexOf(':');
+				if (colon < 0) {
+					continue;
+				}
+				String key = content.substring(0, colon).trim().toLowerCase();
+				String value = content.substring(colon + 1).trim();
+				if (value.length() == 0) {
+					section = key;
+					configuration.list(section);
+				} else {
+					section = null;
+					configuration.values.put(key, unquote(value));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return configuration;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public File getBasePath() {
+		return basePath;
+	}
+
+	public String getValue(String key) {
+		return values.get(key);
+	}
+
+	public List<String> getList(String key) {
+		List<String> list = lists.get(key);
+		return list == null ? Collections.<String>emptyList() : Collections.unmodifiableList(list);
+	}
+
+	public List<File> getLoadFiles() {
+		return expand(LOAD);
+	}
+
+	public List<File> getTestFiles() {
+		return expand(TEST);
+	}
+
+	public List<File> getServeFiles() {
+		return expand(SERVE);
+	}
+
+	/**
+	 * @return the <code>jar:</code> of each <code>plugin:</code> entry, resolved against the
+	 * base path
+	 */
+	public List<File> getPluginJars() {
+		List<File> jars = new ArrayList<File>();
+		for (String jar : pluginJars) {
+			File file = new File(jar);
+			jars.add(file.isAbsolute() ? file : new File(basePath, jar));
+		}
+		return jars;
+	}
+
+	/**
+	 * Expands the patterns of a section into files, in pattern order, without duplicates
+	 * and without the files matched by the <code>exclude</code> section.
+	 */
+	public List<File> expand(String section) {
+		return getManifest().getFiles(section);
+	}
+
+	/**
+	 * @return the expansion of all patterns, made on first use unless one was set
+	 */
+	public synchronized FileManifest getManifest() {
+		if (manifest == null) {
+			manifest = FileManifest.build(this);
+		}
+		return manifest;
+	}
+
+	/**
+	 * Uses a manifest made earlier, see {@link FileManifest#load(File, JstdConfiguration)}.
+	 */
+	public synchronized void setManifest(FileManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	private List<String> list(String key) {
+		List<String> list = lists.get(key);
+		if (list == null) {
+			list = new ArrayList<String>();
+			lists.put(key, list);
+		}
+		return list;
+	}
+
+	private void itemKey(String section, String content) {
+		int colon = content.indexOf(':');
+		if (PLUGIN.equals(section) && colon > 0 && "jar".equals(content.substring(0, colon).trim().toLowerCase())) {
+			pluginJars.add(unquote(content.substring(colon + 1).trim()));
+		}
+	}
+
+	static boolean isUrl(String entry) {
+		return entry.startsWith("http://") || entry.startsWith("https://");
+	}
+
+	static String stripComment(String line) {
+		int hash = line.indexOf('#');
+		return hash < 0 ? line : line.substring(0, hash);
+	}
+
+	private static String unquote(String value) {
+		if (value.length() >= 2 && (value.startsWith("\"") && value.endsWith("\"")
+				|| value.startsWith("'") && value.endsWith("'"))) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,268 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+/**
+ * Runs the JsTestDriver command line runner inside the current JVM.
+ * <p/>
+ * The JsTD jar is loaded in its own class loader, parented by the bootstrap loader, so the
+ * Guice, Jetty and slf4j copies bundled in it never meet Maven's. Loaders are kept per jar,
+ * so every execution after the first one in a JVM skips class loading entirely.
+ * <p/>
+ * A run swaps <code>System.out</code> and <code>System.err</code> of the whole JVM, so runs
+ * in one JVM take turns, and replaces the <code>java.util.logging</code> configuration with
+ * that of JsTD, so the configuration in place before is put back once it returns.
+ * <p/>
+ * This class is deliberately free of Maven types so it can also be used from plain
+ * {@code main} methods running outside of a build.
+ */
+public class JstdLauncher {
+
+	private static final String JSTD_PACKAGE = "com.google.jstestdriver.";
+
+	private static final Map<String, ClassLoader> LOADERS = new HashMap<String, ClassLoader>();
+
+	/**
+	 * System.out and System.err are process wide, so in-process runs are serialized.
+	 */
+	private static final Object CONSOLE_LOCK = new Object();
+
+	private final ClassLoader loader;
+
+	public JstdLauncher(String jarPath) throws IOException {
+		this.loader = getClassLoader(jarPath);
+	}
+
+	public static synchronized ClassLoader getClassLoader(String jarPath) throws IOException {
+		File jar = new File(jarPath).getCanonicalFile();
+		String key = jar.getPath();
+		ClassLoader loader = LOADERS.get(key);
+		if (loader == null) {
+			if (!jar.isFile()) {
+				throw new IOException("JsTestDriver jar not found: " + jar);
+			}
+			loader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, null);
+			LOADERS.put(key, loader);
+		}
+		return loader;
+	}
+
+	/**
+	 * Runs JsTD with the given command line arguments, writing everything it prints to
+	 * {@code out}.
+	 *
+	 * @return the exit code the forked runner would have returned
+	 */
+	public int run(List<String> arguments, PrintStream out) {
+		return launch(arguments, out, true);
+	}
+
+	/**
+	 * Like {@link #run(List, PrintStream)}, but a server started with {@code --port} is left
+	 * running once the runner returns.
+	 */
+	public int serve(List<String> arguments, PrintStream out) {
+		return launch(arguments, out, false);
+	}
+
+	private int launch(List<String> arguments, PrintStream out, boolean stopServer) {
+		synchronized (CONSOLE_LOCK) {
+			PrintStream stdout = System.out;
+			PrintStream stderr = System.err;
+			Thread thread = Thread.currentThread();
+			ClassLoader contextLoader = thread.getContextClassLoader();
+			LoggingState logging = LoggingState.detach();
+			System.setOut(out);
+			System.setErr(out);
+			thread.setContextClassLoader(loader);
+			try {
+				runMain(arguments.toArray(new String[arguments.size()]), stopServer);
+				return 0;
+			} catch (InvocationTargetException e) {
+				out.println(describeFailure(e.getCause()));
+				return 1;
+			} catch (Exception e) {
+				out.println("Unable to start JsTestDriver in process: " + e);
+				return 1;
+			} finally {
+				out.flush();
+				thread.setContextClassLoader(contextLoader);
+				System.setOut(stdout);
+				System.setErr(stderr);
+				logging.restore();
+			}
+		}
+	}
+
+	/**
+	 * Mirrors {@code com.google.jstestdriver.Main#main}, minus the calls to System.exit.
+	 */
+	private void runMain(String[] args, boolean stopServer) throws Exception {
+		Object flags = call(type("config.CmdLineFlagsFactory").newInstance(), "create",
+				new Class<?>[]{String[].class}, new Object[]{args});
+		Class<?> flagsType = type("config.CmdLineFlags");
+		Object runnerMode = call(flags, flagsType, "getRunnerMode");
+		InputStream logConfig = (InputStream) call(runnerMode, type("runner.RunnerMode"), "getLogConfig");
+		LogManager.getLogManager().readConfiguration(logConfig);
+
+		Object plugins = call(flags, flagsType, "getPlugins");
+		Object modules = call(type("PluginLoader").newInstance(), "load", new Class<?>[]{List.class}, plugins);
+
+		Class<?> builderType = type("embedded.JsTestDriverBuilder");
+		Object builder = builderType.newInstance();
+		call(builder, "addBasePaths", new Class<?>[]{type("model.BasePaths")}, call(flags, flagsType, "getBasePath"));
+		call(builder, "setConfigurationSource", new Class<?>[]{type("config.ConfigurationSource")},
+				call(flags, flagsType, "getConfigurationSource"));
+		call(builder, "addPluginModules", new Class<?>[]{List.class}, modules);
+		call(builder, "withPluginInitializer", new Class<?>[]{Class.class},
+				type("guice.TestResultPrintingModule$TestResultPrintingInitializer"));
+		call(builder, "setRunnerMode", new Class<?>[]{type("runner.RunnerMode")}, runnerMode);
+		call(builder, "setFlags", new Class<?>[]{String[].class}, call(flags, flagsType, "getUnusedFlagsAsArgs"));
+
+		Object driver = call(builder, "build", new Class<?>[0]);
+		try {
+			call(driver, type("JsTestDriver"), "runConfiguration");
+		} finally {
+			String port = flagValue(args, "--port");
+			if (stopServer && port != null) {
+				quitServer("http://localhost:" + port, flagValue(args, "--serverHandlerPrefix"));
+			}
+		}
+	}
+
+	/**
+	 * A forked runner takes the server it started down with it when it exits, whether the
+	 * run succeeded or not. In process the server has to be asked to quit.
+	 *
+	 * @return true if a server answered
+	 */
+	public static boolean quitServer(String serverUrl, String handlerPrefix) {
+		String path = UrlBuilder.build("/", handlerPrefix == null ? "" : handlerPrefix, "/quit");
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(serverUrl.replaceAll("/+$", "") + path).openConnection();
+			connection.setConnectTimeout(2000);
+			connection.setReadTimeout(2000);
+			connection.getResponseCode();
+			connection.disconnect();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	static String flagValue(String[] args, String flag) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (flag.equals(args[i])) {
+				return args[i + 1];
+			}
+		}
+		return null;
+	}
+
+	private String describeFailure(Throwable cause) {
+		String name = cause.getClass().getSimpleName();
+		if ("UnreadableFilesException".equals(name) || "ConfigurationException".equals(name)) {
+			return "Configuration Error: \n" + cause.getMessage();
+		} else if ("RetryException".equals(name)) {
+			return "Tests failed due to unexpected environment issue: " + cause.getCause().getMessage();
+		} else if ("FailureException".equals(name)) {
+			return "Tests failed: " + cause.getMessage();
+		} else if ("BrowserPanicException".equals(name)) {
+			return "Test run failed due to unresponsive browser: " + cause;
+		}
+		return "Unexpected Runner Condition: " + cause.getMessage() + "\n Use --runnerMode DEBUG for more information.";
+	}
+
+	private Class<?> type(String name) throws ClassNotFoundException {
+		return Class.forName(JSTD_PACKAGE + name, true, loader);
+	}
+
+	private Object call(Object target, String name, Class<?>[] types, Object... args) throws Exception {
+		return call(target, target.getClass(), name, types, args);
+	}
+
+	private Object call(Object target, Class<?> type, String name) throws Exception {
+		return call(target, type, name, new Class<?>[0]);
+	}
+
+	private Object call(Object target, Class<?> type, String name, Class<?>[] types, Object... args) throws Exception {
+		Method method = type.getMethod(name, types);
+		return method.invoke(target, args);
+	}
+
+	/**
+	 * The levels and handlers of the loggers of the JVM. JsTD resets the logging configuration,
+	 * closing every handler attached, so the handlers are detached for the run and attached
+	 * again afterwards.
+	 */
+	static class LoggingState {
+
+		private final Map<String, Level> levels = new HashMap<String, Level>();
+		private final Map<String, Handler[]> handlers = new HashMap<String, Handler[]>();
+		private final Map<String, Boolean> useParentHandlers = new HashMap<String, Boolean>();
+
+		private LoggingState() {
+		}
+
+		static LoggingState detach() {
+			LoggingState state = new LoggingState();
+			LogManager manager = LogManager.getLogManager();
+			for (String name : Collections.list(manager.getLoggerNames())) {
+				Logger logger = manager.getLogger(name);
+				if (logger == null) {
+					continue;
+				}
+				Handler[] attached = logger.getHandlers();
+				for (Handler handler : attached) {
+					logger.removeHandler(handler);
+				}
+				state.levels.put(name, logger.getLevel());
+				state.handlers.put(name, attached);
+				state.useParentHandlers.put(name, logger.getUseParentHandlers());
+			}
+			return state;
+		}
+
+		/**
+		 * Closes the handlers the run attached and puts back the levels and handlers detached.
+		 */
+		void restore() {
+			LogManager manager = LogManager.getLogManager();
+			for (String name : Collections.list(manager.getLoggerNames())) {
+				Logger logger = manager.getLogger(name);
+				if (logger == null) {
+					continue;
+				}
+				for (Handler handler : logger.getHandlers()) {
+					logger.removeHandler(handler);
+					handler.close();
+				}
+				if (levels.containsKey(name)) {
+					logger.setLevel(levels.get(name));
+					logger.setUseParentHandlers(useParentHandlers.get(name));
+					for (Handler handler : handlers.get(name)) {
+						logger.addHandler(handler);
+					}
+				} else if (name.length() > 0) {
+					logger.setLevel(null);
+				}
+			}
+		}
+	}
+}
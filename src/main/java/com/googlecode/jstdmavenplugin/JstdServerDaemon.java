@@ -0,0 +1,88 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the background JVM started by the <code>start-server</code> goal.
+ * <p/>
+ * Usage: <code>JstdServerDaemon &lt;jstd jar&gt; &lt;lease file&gt; &lt;port&gt;
+ * &lt;idle timeout ms&gt; &lt;log file&gt; &lt;pool browser command&gt;
+ * [jstd arguments...]</code>
+ * <p/>
+ * Starts a JsTD server in process, publishes the lease once the server accepts
+ * connections and stops the server once the lease is released or has not been touched
+ * for the idle timeout. With a pool browser command, space separated, it also keeps the
+ * browser of a {@link BrowserPool} captured.
+ */
+public class JstdServerDaemon {
+
+	private static final long STARTUP_TIMEOUT = 60000;
+	private static final long MAX_POLL_INTERVAL = 5000;
+	private static final long POOL_CHECK_INTERVAL = 5000;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String jarPath = args[0];
+		File leaseFile = new File(args[1]);
+		int port = Integer.parseInt(args[2]);
+		long idleTimeout = Long.parseLong(args[3]);
+		PrintStream log = new PrintStream(new FileOutputStream(args[4], true), true);
+		String poolCommand = args[5].trim();
+		System.setOut(log);
+		System.setErr(log);
+
+		List<String> arguments = new ArrayList<String>();
+		arguments.add("--port");
+		arguments.add(String.valueOf(port));
+		arguments.addAll(Arrays.asList(args).subList(6, args.length));
+
+		BrowserPool pool = null;
+		if (poolCommand.length() > 0) {
+			pool = new BrowserPool(Arrays.asList(poolCommand.split("\\s+")), "http://localhost:" + port,
+					new File(leaseFile.getAbsoluteFile().getParentFile(), "browser-" + port), log);
+		}
+		ServerLease lease = new ServerLease(leaseFile, port, idleTimeout, pool != null);
+		if (new JstdLauncher(jarPath).serve(arguments, log) != 0 || !awaitServer(lease)) {
+			log.println("JsTestDriver server failed to start on port " + port);
+			System.exit(1);
+		}
+		if (pool != null) {
+			pool.start();
+		}
+		lease.write();
+		log.println("JsTestDriver server leased at " + lease.getServerUrl() + " until idle for " + idleTimeout + " ms");
+
+		long pollInterval = Math.max(100, Math.min(MAX_POLL_INTERVAL, idleTimeout / 10));
+		long lastCheck = System.currentTimeMillis();
+		while (!lease.isReleased() && !lease.isExpired()) {
+			Thread.sleep(pollInterval);
+			if (pool != null && System.currentTimeMillis() - lastCheck >= POOL_CHECK_INTERVAL) {
+				pool.check();
+				lastCheck = System.currentTimeMillis();
+			}
+		}
+		log.println("Stopping JsTestDriver server, lease " + (lease.isReleased() ? "released" : "expired"));
+		lease.release();
+		if (pool != null) {
+			pool.stop();
+		}
+		JstdLauncher.quitServer(lease.getServerUrl(), null);
+		System.exit(0);
+	}
+
+	private static boolean awaitServer(ServerLease lease) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+		while (System.currentTimeMillis() < deadline) {
+			if (lease.isListening()) {
+				return true;
+			}
+			Thread.sleep(200);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,355 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Merges LCOV files, such as the coverage JsTD writes per run, into one, adding up the hits of
+ * each source file across browsers and shards.
+ * <p/>
+ * A first pass only notes where the record of each source file starts in each input. The
+ * records of one source file are then read from all inputs, merged and written out before the
+ * next source file, so memory holds the counts of one source file at a time rather than whole
+ * coverage files.
+ */
+public class LcovMerger
+{
+    private static final String SOURCE_FILE = "SF:";
+    private static final String END_OF_RECORD = "end_of_record";
+
+    /**
+     * @return the totals of the merged coverage
+     */
+    public Summary merge(List<File> inputs, File output) throws IOException
+    {
+        List<LineReader> readers = new ArrayList<LineReader>();
+        try
+        {
+            Map<String, List<long[]>> records = new TreeMap<String, List<long[]>>();
+            for (File input : inputs)
+            {
+                LineReader reader = new LineReader(input);
+                readers.add(reader);
+                long position = 0;
+                for (String line = reader.readLine(); line != null; line = reader.readLine())
+                {
+                    if (line.startsWith(SOURCE_FILE))
+                    {
+                        String source = line.substring(SOURCE_FILE.length()).trim();
+                        List<long[]> starts = records.get(source);
+                        if (starts == null)
+                        {
+                            starts = new ArrayList<long[]>();
+                            records.put(source, starts);
+                        }
+                        starts.add(new long[]{readers.size() - 1, position});
+                    }
+                    position = reader.position();
+                }
+            }
+
+            FileUtils.makeDirectoryIfNotExists(output.getAbsoluteFile().getParent());
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+            Summary summary = new Summary();
+            try
+            {
+                for (Map.Entry<String, List<long[]>> record : records.entrySet())
+                {
+                    SourceFile source = new SourceFile();
+                    for (long[] start : record.getValue())
+                    {
+                        LineReader reader = readers.get((int) start[0]);
+                        reader.seek(start[1]);
+                        reader.readLine();
+                        for (String line = reader.readLine(); line != null && !line.startsWith(END_OF_RECORD)
+                                && !line.startsWith(SOURCE_FILE); line = reader.readLine())
+                        {
+                            source.add(line.trim());
+                        }
+                    }
+                    source.write(record.getKey(), writer, summary);
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+            return summary;
+        }
+        finally
+        {
+            for (LineReader reader : readers)
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * The merged counts of one source file.
+     */
+    private static class SourceFile
+    {
+        private final Map<String, Integer> functions = new LinkedHashMap<String, Integer>();
+        private final Map<String, Long> functionHits = new LinkedHashMap<String, Long>();
+        private final Map<String, Long> branches = new LinkedHashMap<String, Long>();
+        private final Map<Integer, Long> lines = new TreeMap<Integer, Long>();
+
+        private void add(String line)
+        {
+            int colon = line.indexOf(':');
+            if (colon < 0)
+            {
+                return;
+            }
+            String type = line.substring(0, colon);
+            String[] fields = line.substring(colon + 1).split(",");
+            try
+            {
+                if ("DA".equals(type) && fields.length >= 2)
+                {
+                    add(lines, Integer.valueOf(fields[0].trim()), Long.parseLong(fields[1].trim()));
+                }
+                else if ("BRDA".equals(type) && fields.length >= 4)
+                {
+                    String branch = fields[0].trim() + "," + fields[1].trim() + "," + fields[2].trim();
+                    // "-" marks a branch whose block never ran
+                    add(branches, branch, "-".equals(fields[3].trim()) ? -1 : Long.parseLong(fields[3].trim()));
+                }
+                else if ("FN".equals(type) && fields.length >= 2 && !functions.containsKey(fields[1]))
+                {
+                    functions.put(fields[1], Integer.valueOf(fields[0].trim()));
+                }
+                else if ("FNDA".equals(type) && fields.length >= 2)
+                {
+                    add(functionHits, fields[1], Long.parseLong(fields[0].trim()));
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                // a line no tool would write; the rest of the record still counts
+            }
+        }
+
+        private static <K> void add(Map<K, Long> counts, K key, long count)
+        {
+            Long previous = counts.get(key);
+            if (previous == null || previous < 0)
+            {
+                counts.put(key, count);
+            }
+            else if (count > 0)
+            {
+                counts.put(key, previous + count);
+            }
+        }
+
+        private void write(String source, PrintWriter writer, Summary summary)
+        {
+            writer.println("TN:");
+            writer.println(SOURCE_FILE + source);
+            for (Map.Entry<String, Integer> function : functions.entrySet())
+            {
+                writer.println("FN:" + function.getValue() + "," + function.getKey());
+            }
+            int functionsHit = 0;
+            for (Map.Entry<String, Long> hits : functionHits.entrySet())
+            {
+                writer.println("FNDA:" + hits.getValue() + "," + hits.getKey());
+                if (hits.getValue() > 0)
+                {
+                    functionsHit++;
+                }
+            }
+            if (!functions.isEmpty())
+            {
+                writer.println("FNF:" + functions.size());
+                writer.println("FNH:" + functionsHit);
+            }
+            int branchesHit = 0;
+            for (Map.Entry<String, Long> branch : branches.entrySet())
+            {
+                writer.println("BRDA:" + branch.getKey() + "," + (branch.getValue() < 0 ? "-" : branch.getValue()));
+                if (branch.getValue() > 0)
+                {
+                    branchesHit++;
+                }
+            }
+            if (!branches.isEmpty())
+            {
+                writer.println("BRF:" + branches.size());
+                writer.println("BRH:" + branchesHit);
+            }
+            int linesHit = 0;
+            for (Map.Entry<Integer, Long> line : lines.entrySet())
+            {
+                writer.println("DA:" + line.getKey() + "," + line.getValue());
+                if (line.getValue() > 0)
+                {
+                    linesHit++;
+                }
+            }
+            writer.println("LF:" + lines.size());
+            writer.println("LH:" + linesHit);
+            writer.println(END_OF_RECORD);
+
+            summary.files++;
+            summary.linesFound += lines.size();
+            summary.linesHit += linesHit;
+            summary.branchesFound += branches.size();
+            summary.branchesHit += branchesHit;
+        }
+    }
+
+    /**
+     * Reads lines of a file and jumps back to where a line started, which
+     * <code>BufferedReader</code> cannot do.
+     */
+    private static class LineReader
+    {
+        private final RandomAccessFile file;
+        private final byte[] buffer = new byte[65536];
+        private long bufferStart;
+        private int length;
+        private int offset;
+
+        private LineReader(File input) throws IOException
+        {
+            file = new RandomAccessFile(input, "r");
+        }
+
+        private long position()
+        {
+            return bufferStart + offset;
+        }
+
+        private void seek(long position) throws IOException
+        {
+            if (position >= bufferStart && position <= bufferStart + length)
+            {
+                offset = (int) (position - bufferStart);
+                return;
+            }
+            file.seek(position);
+            bufferStart = position;
+            length = 0;
+            offset = 0;
+        }
+
+        private String readLine() throws IOException
+        {
+            byte[] line = new byte[128];
+            int size = 0;
+            boolean started = false;
+            while (true)
+            {
+                if (offset == length)
+                {
+                    bufferStart += length;
+                    file.seek(bufferStart);
+                    length = Math.max(0, file.read(buffer));
+                    offset = 0;
+                    if (length == 0)
+                    {
+                        return started ? decode(line, size) : null;
+                    }
+                }
+                started = true;
+                byte b = buffer[offset++];
+                if (b == '\n')
+                {
+                    return decode(line, size);
+                }
+                if (size == line.length)
+                {
+                    byte[] grown = new byte[size * 2];
+                    System.arraycopy(line, 0, grown, 0, size);
+                    line = grown;
+                }
+                line[size++] = b;
+            }
+        }
+
+        private static String decode(byte[] line, int size) throws IOException
+        {
+            if (size > 0 && line[size - 1] == '\r')
+            {
+                size--;
+            }
+            return new String(line, 0, size, "UTF-8");
+        }
+
+        private void close() throws IOException
+        {
+            file.close();
+        }
+    }
+
+    public static class Summary
+    {
+        private int files;
+        private long linesFound;
+        private long linesHit;
+        private long branchesFound;
+        private long branchesHit;
+
+        public int getFiles()
+        {
+            return files;
+        }
+
+        public long getLinesFound()
+        {
+            return linesFound;
+        }
+
+        public long getLinesHit()
+        {
+            return linesHit;
+        }
+
+        public long getBranchesFound()
+        {
+            return branchesFound;
+        }
+
+        public long getBranchesHit()
+        {
+            return branchesHit;
+        }
+
+        /**
+         * @return the percentage of lines hit, or 100 when there are none
+         */
+        public double getLineCoverage()
+        {
+            return linesFound == 0 ? 100 : linesHit * 100.0 / linesFound;
+        }
+
+        /**
+         * @return the percentage of branches taken, or 100 when there are none
+         */
+        public double getBranchCoverage()
+        {
+            return branchesFound == 0 ? 100 : branchesHit * 100.0 / branchesFound;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(Locale.ENGLISH, "%d files, lines %.1f%% (%d/%d), branches %s", files,
+                    getLineCoverage(), linesHit, linesFound, branchesFound == 0 ? "not reported"
+                    : String.format(Locale.ENGLISH, "%.1f%% (%d/%d)", getBranchCoverage(), branchesHit, branchesFound));
+        }
+    }
+}
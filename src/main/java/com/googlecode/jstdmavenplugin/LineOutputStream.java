@@ -0,0 +1,53 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * An output stream that hands everything written to it over one line at a time.
+ */
+public abstract class LineOutputStream extends OutputStream {
+
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+	protected abstract void onLine(String line);
+
+	@Override
+	public synchronized void write(int b) {
+		if (b == '\n') {
+			emit();
+		} else {
+			line.write(b);
+		}
+	}
+
+	@Override
+	public synchronized void write(byte[] bytes, int offset, int length) {
+		int start = offset;
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			if (bytes[i] == '\n') {
+				line.write(bytes, start, i - start);
+				emit();
+				start = i + 1;
+			}
+		}
+		line.write(bytes, start, end - start);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (line.size() > 0) {
+			emit();
+		}
+	}
+
+	private void emit() {
+		String text = line.toString();
+		line.reset();
+		if (text.endsWith("\r")) {
+			text = text.substring(0, text.length() - 1);
+		}
+		onLine(text);
+	}
+}
@@ -0,0 +1,14 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Receives the output of a JsTestDriver run one line at a time, as it is produced.
+ */
+public interface OutputListener
+{
+    /**
+     * @throws MojoExecutionException to abort the run
+     */
+    void onLine(String line) throws MojoExecutionException;
+}
@@ -0,0 +1,248 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times the phases of one execution: artifact resolution, process start, the wait for the
+ * first line of output, the tests themselves, the parsing of their output and so on.
+ * <p/>
+ * The phases are written as a small JSON metrics file meant to be collected across builds,
+ * and optionally as a Chrome trace (<code>chrome://tracing</code>, Perfetto) showing every
+ * span on the thread that ran it. Phases may be timed from several threads at once.
+ */
+public class PhaseTimer
+{
+    private final long startedMillis = System.currentTimeMillis();
+    private final long startedNanos = System.nanoTime();
+    private final List<Event> events = new ArrayList<Event>();
+    private final Map<String, Phase> phases = new LinkedHashMap<String, Phase>();
+    private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+
+    public Span start(String phase)
+    {
+        return new Span(phase);
+    }
+
+    /**
+     * Adds time spent in many short pieces, such as handling lines of output, without a span.
+     */
+    public synchronized void add(String phase, long nanos, long count)
+    {
+        phase(phase).add(nanos, count);
+    }
+
+    public synchronized void count(String name, long value)
+    {
+        Long previous = counters.get(name);
+        counters.put(name, previous == null ? value : previous + value);
+    }
+
+    /**
+     * Wraps the listener of a run that starts now: the wait for its first line is timed as
+     * <code>startup</code>, from there to {@link TimedListener#finish()} as <code>tests</code>,
+     * and the time spent in {@code listener} as <code>parse</code>.
+     */
+    public TimedListener time(OutputListener listener)
+    {
+        return new TimedListener(listener);
+    }
+
+    private synchronized void record(String phase, long startNanos, long endNanos)
+    {
+        phase(phase).addSpan(endNanos - startNanos);
+        events.add(new Event(phase, Thread.currentThread(), startNanos, endNanos));
+    }
+
+    private Phase phase(String name)
+    {
+        Phase phase = phases.get(name);
+        if (phase == null)
+        {
+            phase = new Phase();
+            phases.put(name, phase);
+        }
+        return phase;
+    }
+
+    public synchronized void writeMetrics(File file) throws IOException
+    {
+        PrintWriter writer = open(file);
+        try
+        {
+            writer.print(String.format(Locale.ENGLISH, "{\"started\":%d,\"durationMs\":%.3f,\"phases\":{",
+                    startedMillis, millis(System.nanoTime() - startedNanos)));
+            String separator = "";
+            for (Map.Entry<String, Phase> entry : phases.entrySet())
+            {
+                Phase phase = entry.getValue();
+                writer.print(String.format(Locale.ENGLISH, "%s\"%s\":{\"count\":%d,\"totalMs\":%.3f,\"maxMs\":%.3f}",
+                        separator, entry.getKey(), phase.count, millis(phase.total), millis(phase.max)));
+                separator = ",";
+            }
+            writer.print("},\"counters\":{");
+            separator = "";
+            for (Map.Entry<String, Long> counter : counters.entrySet())
+            {
+                writer.print(separator + "\"" + counter.getKey() + "\":" + counter.getValue());
+                separator = ",";
+            }
+            writer.println("}}");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the spans in the Trace Event Format, as complete events in microseconds.
+     */
+    public synchronized void writeTrace(File file) throws IOException
+    {
+        PrintWriter writer = open(file);
+        try
+        {
+            writer.println("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            String separator = "";
+            for (Event event : events)
+            {
+                writer.print(String.format(Locale.ENGLISH,
+                        "%s{\"name\":\"%s\",\"cat\":\"jstd\",\"ph\":\"X\",\"ts\":%d,\"dur\":%d,\"pid\":1,\"tid\":%d,\"args\":{\"thread\":\"%s\"}}",
+                        separator, event.name, (event.start - startedNanos) / 1000, (event.end - event.start) / 1000,
+                        event.threadId, event.threadName.replace("\\", "\\\\").replace("\"", "\\\"")));
+                separator = ",\n";
+            }
+            writer.println("\n]}");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static PrintWriter open(File file) throws IOException
+    {
+        FileUtils.makeDirectoryIfNotExists(file.getAbsoluteFile().getParent());
+        return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos / 1000000.0;
+    }
+
+    public class Span
+    {
+        private final String phase;
+        private final long start = System.nanoTime();
+        private boolean ended;
+
+        private Span(String phase)
+        {
+            this.phase = phase;
+        }
+
+        /**
+         * Only the first call counts, so spans can be ended in finally blocks too.
+         */
+        public void end()
+        {
+            if (!ended)
+            {
+                ended = true;
+                record(phase, start, System.nanoTime());
+            }
+        }
+    }
+
+    public class TimedListener implements OutputListener
+    {
+        private final OutputListener listener;
+        private final long start = System.nanoTime();
+        private volatile long firstLine;
+        private long handling;
+        private long lines;
+
+        private TimedListener(OutputListener listener)
+        {
+            this.listener = listener;
+        }
+
+        public void onLine(String line) throws MojoExecutionException
+        {
+            long now = System.nanoTime();
+            if (firstLine == 0)
+            {
+                firstLine = now;
+                record("startup", start, now);
+            }
+            try
+            {
+                listener.onLine(line);
+            }
+            finally
+            {
+                handling += System.nanoTime() - now;
+                lines++;
+            }
+        }
+
+        public void finish()
+        {
+            if (firstLine != 0)
+            {
+                record("tests", firstLine, System.nanoTime());
+            }
+            add("parse", handling, lines);
+            count("outputLines", lines);
+        }
+    }
+
+    private static class Phase
+    {
+        private long count;
+        private long total;
+        private long max;
+
+        private void add(long nanos, long times)
+        {
+            count += times;
+            total += nanos;
+        }
+
+        private void addSpan(long nanos)
+        {
+            add(nanos, 1);
+            max = Math.max(max, nanos);
+        }
+    }
+
+    private static class Event
+    {
+        private final String name;
+        private final long threadId;
+        private final String threadName;
+        private final long start;
+        private final long end;
+
+        private Event(String name, Thread thread, long start, long end)
+        {
+            this.name = name;
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hands out free ports for JsTestDriver servers to builds running side by side on one machine.
+ * <p/>
+ * A port handed out is held by a lock on a file named after it in the lock directory, so other
+ * builds locking in the same directory pass it over until it is released. The operating system
+ * drops the locks of a build that dies, so a crashed build holds no port. Ports something else
+ * listens on are passed over as well.
+ */
+public class PortAllocator {
+
+	private final File lockDirectory;
+	private final int lowest;
+	private final int highest;
+
+	/**
+	 * @param lowest the first port of the range to allocate from
+	 * @param highest the last port of the range
+	 */
+	public PortAllocator(File lockDirectory, int lowest, int highest) {
+		this.lockDirectory = lockDirectory;
+		this.lowest = lowest;
+		this.highest = highest;
+	}
+
+	/**
+	 * @param range the ports to allocate from, as <code>lowest-highest</code>
+	 * @throws IllegalArgumentException if the range is not of that form
+	 */
+	public static PortAllocator forRange(File lockDirectory, String range) {
+		String[] bounds = range == null ? new String[0] : range.split("-");
+		try {
+			return new PortAllocator(lockDirectory, Integer.parseInt(bounds[0].trim()),
+					Integer.parseInt(bounds[bounds.length - 1].trim()));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("portRange must be \"lowest-highest\", not \"" + range + "\"");
+		}
+	}
+
+	/**
+	 * @return the lowest {@code count} consecutive free ports of the range, held until the
+	 * allocation is released
+	 * @throws IOException if the range has no such ports left, or the locks cannot be taken
+	 */
+	public Allocation allocate(int count) throws IOException {
+		if (!lockDirectory.isDirectory() && !lockDirectory.mkdirs()) {
+			throw new IOException("Failed to create " + lockDirectory);
+		}
+		for (int first = lowest; first + count - 1 <= highest; first++) {
+			Allocation allocation = new Allocation();
+			try {
+				for (int port = first; port < first + count; port++) {
+					if (!allocation.hold(port)) {
+						break;
+					}
+				}
+			} catch (IOException e) {
+				allocation.release();
+				throw e;
+			}
+			if (allocation.ports.size() == count) {
+				return allocation;
+			}
+			allocation.release();
+		}
+		throw new IOException(String.format("No %d consecutive free ports left in %d-%d", count, lowest, highest));
+	}
+
+	static boolean isBindable(int port) {
+		ServerSocket socket = null;
+		try {
+			socket = new ServerSocket();
+			socket.bind(new InetSocketAddress(port));
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (socket != null) {
+				try {
+					socket.close();
+				} catch (IOException ignored) {
+					// nothing was accepted
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ports held for one build.
+	 */
+	public class Allocation {
+
+		private final List<Integer> ports = new ArrayList<Integer>();
+		private final List<RandomAccessFile> files = new ArrayList<RandomAccessFile>();
+
+		private Allocation() {
+		}
+
+		private boolean hold(int port) throws IOException {
+			RandomAccessFile file = new RandomAccessFile(new File(lockDirectory, "port-" + port + ".lock"), "rw");
+			FileLock lock;
+			try {
+				lock = file.getChannel().tryLock();
+			} catch (OverlappingFileLockException e) {
+				// held by another build in this JVM
+				lock = null;
+			}
+			if (lock == null || !isBindable(port)) {
+				file.close();
+				return false;
+			}
+			files.add(file);
+			ports.add(port);
+			return true;
+		}
+
+		public List<Integer> getPorts() {
+			return Collections.unmodifiableList(ports);
+		}
+
+		public int getFirstPort() {
+			return ports.get(0);
+		}
+
+		/**
+		 * Hands the ports back; closing the lock files drops their locks.
+		 */
+		public void release() {
+			for (RandomAccessFile file : files) {
+				try {
+					file.close();
+				} catch (IOException ignored) {
+					// the lock goes with the file either way
+				}
+			}
+			files.clear();
+			ports.clear();
+		}
+	}
+}
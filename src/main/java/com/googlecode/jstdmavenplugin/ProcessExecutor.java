@@ -1,9 +1,15 @@
 package com.googlecode.jstdmavenplugin;
 
+import org.apache.maven.plugin.MojoExecutionException;
+
 /**
  * Copyright 2009-2011, Burke Webster (burke.webster@gmail.com)
  */
 public interface ProcessExecutor
 {
-    String execute(ProcessConfiguration config);
+    /**
+     * Runs JsTestDriver, echoing its output to the console and pushing every line to
+     * {@code listener}. The run is aborted as soon as the listener throws.
+     */
+    void execute(ProcessConfiguration config, OutputListener listener) throws MojoExecutionException;
 }
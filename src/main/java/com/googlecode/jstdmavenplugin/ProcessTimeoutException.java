@@ -0,0 +1,17 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Thrown when the watchdog killed a JsTestDriver run that took too long or went silent, as
+ * opposed to a run that finished with failing tests.
+ */
+public class ProcessTimeoutException extends MojoExecutionException
+{
+    private static final long serialVersionUID = 1L;
+
+    public ProcessTimeoutException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,134 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signals a child process and the processes it started, such as the browsers JsTD launches.
+ * <p/>
+ * Java 6 neither exposes process ids nor knows about process trees, so the id is read from the
+ * JDK's process class and the tree from <code>ps</code>. Where that fails, as on Windows, only
+ * the child itself is destroyed.
+ */
+public class ProcessTree {
+
+	private ProcessTree() {
+	}
+
+	/**
+	 * @return the id of the process, or null if the JDK does not tell
+	 */
+	public static Integer pid(Process process) {
+		try {
+			// Java 9 and later
+			return ((Number) Process.class.getMethod("pid").invoke(process)).intValue();
+		} catch (Exception ignored) {
+			// fall back to the field of java.lang.UNIXProcess
+		}
+		try {
+			Field field = process.getClass().getDeclaredField("pid");
+			field.setAccessible(true);
+			return field.getInt(process);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Sends a signal, such as <code>QUIT</code> which makes a JVM print a thread dump.
+	 *
+	 * @return true if the signal was sent
+	 */
+	public static boolean signal(int pid, String signal) {
+		try {
+			return run("kill", "-" + signal, String.valueOf(pid)) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Kills the descendants of the process, deepest first, and then the process itself.
+	 */
+	public static void kill(Process process) {
+		Integer pid = pid(process);
+		if (pid != null) {
+			List<Integer> descendants = descendants(pid);
+			for (int i = descendants.size() - 1; i >= 0; i--) {
+				signal(descendants.get(i), "KILL");
+			}
+		}
+		process.destroy();
+	}
+
+	/**
+	 * @return the descendants of the process, parents before their children
+	 */
+	static List<Integer> descendants(int pid) {
+		List<Integer> descendants = new ArrayList<Integer>();
+		List<String> table;
+		try {
+			table = run("ps", "-A", "-o", "pid=", "-o", "ppid=");
+		} catch (IOException e) {
+			return descendants;
+		}
+		if (table == null) {
+			return descendants;
+		}
+		Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+		for (String line : table) {
+			String[] columns = line.trim().split("\\s+");
+			if (columns.length != 2) {
+				continue;
+			}
+			try {
+				Integer parent = Integer.valueOf(columns[1]);
+				List<Integer> siblings = children.get(parent);
+				if (siblings == null) {
+					siblings = new ArrayList<Integer>();
+					children.put(parent, siblings);
+				}
+				siblings.add(Integer.valueOf(columns[0]));
+			} catch (NumberFormatException ignored) {
+				// a header or garbage line
+			}
+		}
+		List<Integer> parents = new ArrayList<Integer>();
+		parents.add(pid);
+		for (int i = 0; i < parents.size(); i++) {
+			List<Integer> direct = children.get(parents.get(i));
+			if (direct != null) {
+				descendants.addAll(direct);
+				parents.addAll(direct);
+			}
+		}
+		return descendants;
+	}
+
+	/**
+	 * @return the output lines of the command, or null if it failed
+	 */
+	private static List<String> run(String... command) throws IOException {
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		process.getOutputStream().close();
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				lines.add(line);
+			}
+			return process.waitFor() == 0 ? lines : null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			reader.close();
+		}
+	}
+}
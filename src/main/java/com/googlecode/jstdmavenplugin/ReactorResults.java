@@ -0,0 +1,39 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Results the <code>aggregate</code> goal ran for the modules of the reactor, waiting for the
+ * <code>test</code> goal of each module to report them.
+ * <p/>
+ * Like {@link ResolutionCache}, the shared instance lives in the plugin's class realm, which
+ * Maven keeps for the whole build, so the module executions find what the aggregate execution
+ * left. Each result is handed out once.
+ */
+public class ReactorResults {
+
+	private static final ReactorResults SHARED = new ReactorResults();
+
+	private final Map<String, TestRunnerResults> results = new HashMap<String, TestRunnerResults>();
+
+	public static ReactorResults getInstance() {
+		return SHARED;
+	}
+
+	public synchronized void put(File basedir, TestRunnerResults result) {
+		results.put(basedir.getAbsolutePath(), result);
+	}
+
+	/**
+	 * @return the results of the module in {@code basedir}, or null if none are waiting
+	 */
+	public synchronized TestRunnerResults take(File basedir) {
+		return results.remove(basedir.getAbsolutePath());
+	}
+
+	public synchronized void clear() {
+		results.clear();
+	}
+}
@@ -0,0 +1,84 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the resolved JsTD jar and other artifacts between executions.
+ * <p/>
+ * The shared instance lives in the plugin's class realm, which Maven keeps for the whole build,
+ * so every module of a reactor after the first one skips resolution. A resolved artifact is only
+ * used while its file keeps its modification time and size.
+ */
+public class ResolutionCache {
+
+	private static final ResolutionCache SHARED = new ResolutionCache();
+
+	private final Map<String, Entry> artifacts = new HashMap<String, Entry>();
+	private JstdCoordinate jstdCoordinate;
+
+	public static ResolutionCache getInstance() {
+		return SHARED;
+	}
+
+	/**
+	 * @return the coordinate of the JsTD jar the plugin was built against, read once
+	 */
+	public synchronized JstdCoordinate getJstdCoordinate() throws IOException {
+		if (jstdCoordinate == null) {
+			jstdCoordinate = new JstdCoordinate();
+		}
+		return jstdCoordinate;
+	}
+
+	/**
+	 * @param repository identifies the repository the locator resolves from
+	 * @return the absolute path of the artifact, resolved by {@code locator} on a miss
+	 */
+	public String getArtifactPath(ArtifactLocator locator, MavenCoordinate coordinate, String repository)
+			throws ArtifactNotFoundException {
+		String key = coordinate.getGroupId() + ":" + coordinate.getArtifactId() + ":" + coordinate.getVersion()
+				+ ":" + coordinate.getFileType() + "@" + repository;
+		synchronized (this) {
+			Entry entry = artifacts.get(key);
+			if (entry != null && entry.isCurrent()) {
+				MojoLogger.getInstance().getLog().debug("Using cached resolution of " + key + ": " + entry.path);
+				return entry.path;
+			}
+		}
+		long start = System.currentTimeMillis();
+		String path = locator.getAbsolutePathToArtifact(coordinate);
+		MojoLogger.getInstance().getLog().info(String.format("Resolved %s in %d ms", key, System.currentTimeMillis() - start));
+		synchronized (this) {
+			artifacts.put(key, new Entry(path));
+		}
+		return path;
+	}
+
+	public synchronized void clear() {
+		artifacts.clear();
+		jstdCoordinate = null;
+	}
+
+	private static class Entry {
+		private final String path;
+		private final long lastModified;
+		private final long length;
+
+		private Entry(String path) {
+			File file = new File(path);
+			this.path = path;
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+		}
+
+		private boolean isCurrent() {
+			File file = new File(path);
+			return file.exists() && file.lastModified() == lastModified && file.length() == length;
+		}
+	}
+}
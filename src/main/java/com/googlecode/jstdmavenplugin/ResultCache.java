@@ -0,0 +1,310 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Results of passing runs, stored under a hash of everything that decides their outcome, so
+ * a build running the same tests on the same files replays them instead of running JsTD.
+ * <p/>
+ * An entry holds the results, the output of the run and the files JsTD wrote, its XML
+ * reports and coverage, all compressed. Replaying pushes the output through the listeners of
+ * a run again, so the console, the Surefire reports and the timings look as if the tests had
+ * run.
+ */
+public class ResultCache
+{
+    private static final int VERSION = 2;
+
+    /**
+     * Runs whose compressed output exceeds this are not stored.
+     */
+    private static final int MAX_OUTPUT = 16 * 1024 * 1024;
+
+    private final ResultStore store;
+
+    public ResultCache(ResultStore store)
+    {
+        this.store = store;
+    }
+
+    public ResultStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * Hashes the config, the path relative to the base path and the content of each
+     * <code>load:</code>, <code>test:</code> and <code>serve:</code> file, the name and content
+     * of each plugin jar, the JsTD version and the parameters. Absolute paths are left out so
+     * checkouts in different places share entries.
+     *
+     * @param pluginJars the plugin jars given to JsTD besides those of the config
+     */
+    public static String key(JstdConfiguration configuration, String jstdVersion, Map<String, String> parameters,
+            List<File> pluginJars) throws IOException
+    {
+        MessageDigest digest = digest();
+        update(digest, "jstd-maven-plugin result cache " + VERSION);
+        update(digest, jstdVersion);
+        for (Map.Entry<String, String> parameter : parameters.entrySet())
+        {
+            update(digest, parameter.getKey() + "=" + (parameter.getValue() == null ? "" : parameter.getValue()));
+        }
+        hashFile(digest, "config", configuration.getFile(), configuration.getBasePath());
+        for (File file : configuration.getLoadFiles())
+        {
+            hashFile(digest, JstdConfiguration.LOAD, file, configuration.getBasePath());
+        }
+        for (File file : configuration.getTestFiles())
+        {
+            hashFile(digest, JstdConfiguration.TEST, file, configuration.getBasePath());
+        }
+        for (File file : configuration.getServeFiles())
+        {
+            hashFile(digest, JstdConfiguration.SERVE, file, configuration.getBasePath());
+        }
+        List<File> jars = new ArrayList<File>(configuration.getPluginJars());
+        jars.addAll(pluginJars);
+        for (File jar : jars)
+        {
+            // jars usually live in the local repository, where the name carries the version
+            hashFile(digest, JstdConfiguration.PLUGIN, jar, jar.getAbsoluteFile().getParentFile());
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @return a listener recording the output of the run that starts now
+     */
+    public Recording record()
+    {
+        return new Recording();
+    }
+
+    /**
+     * Echoes the stored output to {@code console}, pushes it to {@code listener} and restores
+     * the stored reports into {@code reportDirectory}.
+     *
+     * @param reportDirectory where JsTD writes its reports, null if it does not
+     * @return the stored results, or null if nothing is stored under {@code key}
+     */
+    public TestRunnerResults replay(String key, OutputListener listener, PrintStream console, File reportDirectory)
+            throws IOException, MojoExecutionException
+    {
+        byte[] entry = store.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+        if (in.readInt() != VERSION)
+        {
+            return null;
+        }
+        TestRunnerResults results = new TestRunnerResults(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+
+        byte[] reports = new byte[in.readInt()];
+        in.readFully(reports);
+        if (reportDirectory != null)
+        {
+            DataInputStream files = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(reports)));
+            for (int count = files.readInt(); count > 0; count--)
+            {
+                String name = new File(files.readUTF()).getName();
+                byte[] content = new byte[files.readInt()];
+                files.readFully(content);
+                org.apache.commons.io.FileUtils.writeByteArrayToFile(new File(reportDirectory, name), content);
+            }
+        }
+
+        byte[] output = new byte[in.readInt()];
+        in.readFully(output);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(output)), "UTF-8"));
+        for (String line = lines.readLine(); line != null; line = lines.readLine())
+        {
+            console.println(line);
+            listener.onLine(line);
+        }
+        console.flush();
+        return results;
+    }
+
+    private static void hashFile(MessageDigest digest, String section, File file, File base) throws IOException
+    {
+        update(digest, section);
+        update(digest, relativePath(file, base));
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer))
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static String relativePath(File file, File base)
+    {
+        String path = file.getAbsolutePath().replace('\\', '/');
+        String prefix = base.getAbsolutePath().replace('\\', '/') + "/";
+        return path.startsWith(prefix) ? path.substring(prefix.length()) : path;
+    }
+
+    private static void update(MessageDigest digest, String text) throws IOException
+    {
+        digest.update(text.getBytes("UTF-8"));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest digest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes)
+    {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Compresses the output of a run as it streams. Recording stops once the output gets too
+     * big to store.
+     */
+    public class Recording implements OutputListener
+    {
+        private final long started = System.currentTimeMillis();
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private Writer writer;
+
+        private Recording()
+        {
+            try
+            {
+                writer = new OutputStreamWriter(new GZIPOutputStream(output), "UTF-8");
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to compress in memory", e);
+            }
+        }
+
+        public synchronized void onLine(String line)
+        {
+            if (writer == null)
+            {
+                return;
+            }
+            try
+            {
+                writer.write(line);
+                writer.write('\n');
+            }
+            catch (IOException e)
+            {
+                writer = null;
+            }
+            if (output.size() > MAX_OUTPUT)
+            {
+                writer = null;
+            }
+        }
+
+        /**
+         * Stores the results with the recorded output and the reports in
+         * {@code reportDirectory} written since the recording started.
+         *
+         * @return false if the output was too big to store
+         */
+        public synchronized boolean store(String key, TestRunnerResults results, File reportDirectory)
+                throws IOException
+        {
+            if (writer == null)
+            {
+                return false;
+            }
+            writer.close();
+            writer = null;
+
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(entry);
+            out.writeInt(VERSION);
+            out.writeInt(results.getTotalTestsRun());
+            out.writeInt(results.getTotalTestsPassed());
+            out.writeInt(results.getTotalTestsFailed());
+            out.writeInt(results.getTotalTestsErrored());
+            byte[] reports = compressReports(reportDirectory);
+            out.writeInt(reports.length);
+            out.write(reports);
+            out.writeInt(output.size());
+            output.writeTo(out);
+            out.close();
+            store.put(key, entry.toByteArray());
+            return true;
+        }
+
+        private byte[] compressReports(File reportDirectory) throws IOException
+        {
+            File[] files = reportDirectory == null ? null : reportDirectory.listFiles();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(new GZIPOutputStream(compressed));
+            int count = 0;
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            DataOutputStream entries = new DataOutputStream(content);
+            for (File file : files == null ? new File[0] : files)
+            {
+                // file times may be truncated to the second
+                if (file.isFile() && file.lastModified() >= started / 1000 * 1000)
+                {
+                    byte[] bytes = org.apache.commons.io.FileUtils.readFileToByteArray(file);
+                    entries.writeUTF(file.getName());
+                    entries.writeInt(bytes.length);
+                    entries.write(bytes);
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            content.writeTo(out);
+            out.close();
+            return compressed.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.IOException;
+
+/**
+ * Where a {@link ResultCache} keeps its entries, by key.
+ */
+public interface ResultStore
+{
+    /**
+     * @return the entry stored under {@code key}, or null if there is none
+     */
+    byte[] get(String key) throws IOException;
+
+    void put(String key, byte[] entry) throws IOException;
+}
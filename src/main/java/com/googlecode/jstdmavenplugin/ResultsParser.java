@@ -0,0 +1,125 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the totals out of JsTestDriver output while it streams past, without keeping the
+ * output around.
+ * <p/>
+ * With fail fast on, the per-test lines <code>--verbose</code> prints are counted as well,
+ * and the first failure or error aborts the run with a {@link FailFastException}. The results
+ * then are the counts up to that point.
+ */
+public class ResultsParser implements OutputListener
+{
+    private static final Pattern RESULTS = Pattern.compile(
+            "Total ([0-9]+) tests \\(Passed: ([0-9]+); Fails: ([0-9]+); Errors: ([0-9]+)\\).*");
+    private static final String[] PROGRESS_STATUSES = {"PASSED", "FAILED", "ERROR"};
+    private static final Pattern NO_BROWSERS_CAPTURED = Pattern.compile("No browsers were captured.*");
+    private static final Pattern NO_BROWSERS_AVAILABLE = Pattern.compile(
+            "Unexpected Runner Condition: (?:[\\w.$]+: )?No browsers available, yet actions.* requested\\..*");
+
+    private final boolean failFast;
+    private TestRunnerResults results;
+    private boolean aborted;
+    private int passed;
+    private int failed;
+    private int errored;
+
+    public ResultsParser()
+    {
+        this(false);
+    }
+
+    public ResultsParser(boolean failFast)
+    {
+        this.failFast = failFast;
+    }
+
+    public void onLine(String line) throws MojoExecutionException
+    {
+        if (results != null || aborted)
+        {
+            return;
+        }
+        if (NO_BROWSERS_CAPTURED.matcher(line).matches() || NO_BROWSERS_AVAILABLE.matcher(line).matches())
+        {
+            throw new MojoExecutionException("Unable to capture any browsers");
+        }
+        Matcher matcher = RESULTS.matcher(line);
+        if (matcher.matches())
+        {
+            results = TestRunnerResults.buildResultsFromMatcher(matcher);
+        }
+        else if (failFast)
+        {
+            countTestResult(line);
+        }
+    }
+
+    /**
+     * @return the totals of the run, the counts up to the abort if it was aborted, or null
+     *         if the totals have not been seen (yet)
+     */
+    public TestRunnerResults getResults()
+    {
+        if (results == null && aborted)
+        {
+            return new TestRunnerResults(passed + failed + errored, passed, failed, errored);
+        }
+        return results;
+    }
+
+    public boolean isAborted()
+    {
+        return aborted;
+    }
+
+    /**
+     * @return the status of a <code>--verbose</code> progress line such as
+     *         <code>[PASSED] GreeterTest.testGreet</code>, or null for any other line
+     */
+    static String progressStatus(String line)
+    {
+        if (!line.startsWith("["))
+        {
+            return null;
+        }
+        for (String status : PROGRESS_STATUSES)
+        {
+            if (line.startsWith(status, 1) && line.startsWith("] ", status.length() + 1))
+            {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    private void countTestResult(String line) throws FailFastException
+    {
+        String status = progressStatus(line);
+        if (status == null)
+        {
+            return;
+        }
+        if ("PASSED".equals(status))
+        {
+            passed++;
+            return;
+        }
+        if ("FAILED".equals(status))
+        {
+            failed++;
+        }
+        else
+        {
+            errored++;
+        }
+        aborted = true;
+        throw new FailFastException("Aborting test run (failFast), " + line.substring(status.length() + 3) + " "
+                + status.toLowerCase());
+    }
+}
@@ -2,21 +2,22 @@ package com.googlecode.jstdmavenplugin;
 
 import org.apache.maven.plugin.MojoExecutionException;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
 
 /**
  * Copyright 2009-2011, Burke Webster (burke.webster@gmail.com)
  */
 public class ResultsProcessor
 {
-    private static final String RESULTS_START_REGEXP = "Total ([0-9]+) tests \\(Passed: ([0-9]+); Fails: ([0-9]+); Errors: ([0-9]+)\\).*";
-    private static final String NO_BROWSERS_CAPTURED_REGEXP = "No browsers were captured.*";
-
     public void processResults(String output) throws MojoExecutionException
     {
-        TestRunnerResults testRunnerResults = extractResults(output);
+        processResults(extractResults(output));
+    }
 
+    public void processResults(TestRunnerResults testRunnerResults) throws MojoExecutionException
+    {
         if (testRunnerResults == null || testRunnerResults.hasFailures())
         {
 			StringBuilder errorString = new StringBuilder();
@@ -43,23 +44,41 @@ public class ResultsProcessor
         }
     }
 
-    private TestRunnerResults extractResults(String output) throws MojoExecutionException
+    public ResultsParser createParser()
+    {
+        return createParser(false);
+    }
+
+    public ResultsParser createParser(boolean failFast)
     {
-        Pattern pattern = Pattern.compile(RESULTS_START_REGEXP);
+        return new ResultsParser(failFast);
+    }
 
-        for (String line : output.split("\\n"))
+    public TestRunnerResults extractResults(ResultsParser parser) throws MojoExecutionException
+    {
+        TestRunnerResults results = parser.getResults();
+        if (results == null)
         {
-            if (line.matches(NO_BROWSERS_CAPTURED_REGEXP))
-            {
-                throw new MojoExecutionException("Unable to capture any browsers");
-            }
+            throw new MojoExecutionException("Failed to parse results");
+        }
+        return results;
+    }
 
-            Matcher matcher = pattern.matcher(line);
-            if (matcher.matches())
+    public TestRunnerResults extractResults(String output) throws MojoExecutionException
+    {
+        ResultsParser parser = createParser();
+        BufferedReader reader = new BufferedReader(new StringReader(output));
+        try
+        {
+            for (String line = reader.readLine(); line != null && parser.getResults() == null; line = reader.readLine())
             {
-                return TestRunnerResults.buildResultsFromMatcher(matcher);
+                parser.onLine(line);
             }
         }
-        throw new MojoExecutionException("Failed to parse results");
+        catch (IOException e)
+        {
+            throw new MojoExecutionException("Failed to parse results", e);
+        }
+        return extractResults(parser);
     }
 }
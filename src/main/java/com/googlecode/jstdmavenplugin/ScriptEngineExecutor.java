@@ -0,0 +1,303 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Runs JsTD test cases on the JavaScript engine of the JVM instead of in browsers, for tests
+ * of pure logic that need no DOM. The engine gets the <code>load:</code> files and the given
+ * test files, on top of a shim of the JsTD API: <code>TestCase</code>, the assertions and
+ * <code>jstestdriver.console</code>.
+ * <p/>
+ * The output imitates that of a JsTD run, with the engine standing in for the browser, so it
+ * is parsed, collected and reported like any other. <code>--tests</code>,
+ * <code>--verbose</code> and <code>--captureConsole</code> are read from the runner
+ * arguments; the rest do not apply. An <code>AsyncTestCase</code> needs a browser and is
+ * reported as an error.
+ */
+public class ScriptEngineExecutor implements ProcessExecutor
+{
+    /**
+     * Marks a test file, or a config for all its test files, as runnable on the engine.
+     */
+    public static final String MARKER = "jstd:browserless";
+
+    private static final String SHIM = "jstd-browserless.js";
+    private static final int MARKER_SCAN_BYTES = 4096;
+
+    /**
+     * The name the engine is looked up by; tests change it to act as a JVM without one.
+     */
+    static String lookupName = "JavaScript";
+
+    private final List<File> loadFiles;
+    private final List<File> testFiles;
+
+    public ScriptEngineExecutor(List<File> loadFiles, List<File> testFiles)
+    {
+        this.loadFiles = loadFiles;
+        this.testFiles = testFiles;
+    }
+
+    /**
+     * @return whether the first 4 KB of the file mention {@link #MARKER}, as a comment would
+     */
+    public static boolean isMarked(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] head = new byte[MARKER_SCAN_BYTES];
+            int length = 0;
+            for (int read = in.read(head); read > 0 && length < head.length; read = in.read(head, length, head.length - length))
+            {
+                length += read;
+            }
+            return new String(head, 0, length, "UTF-8").contains(MARKER);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * @return whether this JVM has a JavaScript engine; Java 15 dropped Nashorn
+     */
+    public static boolean isAvailable()
+    {
+        return createEngine() != null;
+    }
+
+    private static ScriptEngine createEngine()
+    {
+        return new ScriptEngineManager().getEngineByName(lookupName);
+    }
+
+    public void execute(ProcessConfiguration config, OutputListener listener) throws MojoExecutionException
+    {
+        List<String> arguments = ((JarProcessConfiguration) config).getRunnerArguments();
+        String[] args = arguments.toArray(new String[arguments.size()]);
+        ScriptEngine engine = createEngine();
+        if (engine == null)
+        {
+            throw new MojoExecutionException("This JVM has no JavaScript engine to run browserless tests on");
+        }
+        String engineName = engine.getFactory().getEngineName() + " " + engine.getFactory().getEngineVersion();
+        Reporter reporter = new Reporter(System.out, listener, JstdLauncher.flagValue(args, "--tests"),
+                arguments.contains("--verbose"), arguments.contains("--captureConsole"));
+        engine.put("__jstdReporter", reporter);
+
+        long start = System.currentTimeMillis();
+        evaluateShim(engine);
+        for (File file : loadFiles)
+        {
+            evaluate(engine, file);
+        }
+        for (File file : testFiles)
+        {
+            evaluate(engine, file);
+        }
+        try
+        {
+            engine.eval("jstestdriver.runBrowserless();");
+        }
+        catch (ScriptException e)
+        {
+            throw new MojoExecutionException("Browserless tests failed to run: " + e.getMessage(), e);
+        }
+        reporter.finish(engineName, System.currentTimeMillis() - start);
+    }
+
+    private void evaluateShim(ScriptEngine engine) throws MojoExecutionException
+    {
+        InputStream shim = getClass().getClassLoader().getResourceAsStream(SHIM);
+        if (shim == null)
+        {
+            throw new MojoExecutionException("Missing resource " + SHIM);
+        }
+        try
+        {
+            engine.put(ScriptEngine.FILENAME, SHIM);
+            engine.eval(new InputStreamReader(shim, "UTF-8"));
+        }
+        catch (Exception e)
+        {
+            throw new MojoExecutionException("Unable to load " + SHIM + " on the JavaScript engine", e);
+        }
+        finally
+        {
+            org.apache.commons.io.IOUtils.closeQuietly(shim);
+        }
+    }
+
+    private void evaluate(ScriptEngine engine, File file) throws MojoExecutionException
+    {
+        Reader reader = null;
+        try
+        {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            engine.put(ScriptEngine.FILENAME, file.getPath());
+            engine.eval(reader);
+        }
+        catch (IOException e)
+        {
+            throw new MojoExecutionException("Unable to read " + file, e);
+        }
+        catch (ScriptException e)
+        {
+            throw new MojoExecutionException("Unable to load " + file + " on the JavaScript engine (does it need a browser?): "
+                    + e.getMessage(), e);
+        }
+        finally
+        {
+            org.apache.commons.io.IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Called by the shim for every test, writes the output of the run as JsTD would.
+     */
+    public static class Reporter
+    {
+        private final PrintStream console;
+        private final OutputListener listener;
+        private final Set<String> filter;
+        private final boolean verbose;
+        private final boolean captureConsole;
+        private final List<String> problems = new ArrayList<String>();
+        private MojoExecutionException abort;
+        private long testStart;
+        private int passed;
+        private int failed;
+        private int errored;
+
+        Reporter(PrintStream console, OutputListener listener, String tests, boolean verbose, boolean captureConsole)
+        {
+            this.console = console;
+            this.listener = listener;
+            this.verbose = verbose;
+            this.captureConsole = captureConsole;
+            if (tests == null || "all".equals(tests))
+            {
+                filter = null;
+            }
+            else
+            {
+                filter = new HashSet<String>();
+                for (String test : tests.split(","))
+                {
+                    filter.add(test.trim());
+                }
+            }
+        }
+
+        public boolean accepts(String testCase, String test)
+        {
+            return abort == null && (filter == null || filter.contains(testCase) || filter.contains(testCase + "." + test));
+        }
+
+        public void started()
+        {
+            testStart = System.nanoTime();
+        }
+
+        public void result(String testCase, String test, String status, String message)
+        {
+            double millis = (System.nanoTime() - testStart) / 1e6;
+            String name = testCase + "." + test;
+            if ("passed".equals(status))
+            {
+                passed++;
+            }
+            else if ("failed".equals(status))
+            {
+                failed++;
+            }
+            else
+            {
+                errored++;
+            }
+            if (verbose)
+            {
+                print("[" + status.toUpperCase(Locale.ENGLISH) + "] " + name);
+            }
+            else
+            {
+                console.print("passed".equals(status) ? "." : "failed".equals(status) ? "F" : "E");
+            }
+            if (verbose || !"passed".equals(status))
+            {
+                StringBuilder problem = new StringBuilder(String.format(Locale.ENGLISH, "    %s %s (%.2f ms)", name, status, millis));
+                if (message.length() > 0)
+                {
+                    problem.append(": ").append(message.replaceAll("\n\\s*", "\n      "));
+                }
+                problems.add(problem.toString());
+            }
+        }
+
+        public void log(String level, String message)
+        {
+            if (captureConsole)
+            {
+                print("  [" + level + "] " + message);
+            }
+        }
+
+        void finish(String engineName, long millis) throws MojoExecutionException
+        {
+            if (!verbose)
+            {
+                console.println();
+            }
+            int run = passed + failed + errored;
+            print(String.format(Locale.ENGLISH, "Total %d tests (Passed: %d; Fails: %d; Errors: %d) (%.2f ms)",
+                    run, passed, failed, errored, (double) millis));
+            print(String.format(Locale.ENGLISH, "  %s: Run %d tests (Passed: %d; Fails: %d; Errors %d) (%.2f ms)",
+                    engineName, run, passed, failed, errored, (double) millis));
+            for (String problem : problems)
+            {
+                for (String line : problem.split("\n"))
+                {
+                    print(line);
+                }
+            }
+            if (abort != null)
+            {
+                throw abort;
+            }
+        }
+
+        private void print(String line)
+        {
+            console.println(line);
+            if (abort == null)
+            {
+                try
+                {
+                    listener.onLine(line);
+                }
+                catch (MojoExecutionException e)
+                {
+                    abort = e;
+                }
+            }
+        }
+    }
+}
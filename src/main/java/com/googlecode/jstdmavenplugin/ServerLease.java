@@ -0,0 +1,159 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * A lease on a JsTestDriver server left running between executions and builds.
+ * <p/>
+ * The lease is a small properties file naming the server. Its modification time records
+ * when the server was last used: every execution that reuses the server touches the file,
+ * and the server daemon shuts down once the file has been left alone for the idle timeout
+ * or has been deleted.
+ */
+public class ServerLease {
+
+	private static final int CONNECT_TIMEOUT = 1000;
+
+	private final File file;
+	private final int port;
+	private final String serverUrl;
+	private final long idleTimeout;
+	private final boolean pooledBrowser;
+
+	public ServerLease(File file, int port, long idleTimeout) {
+		this(file, port, idleTimeout, false);
+	}
+
+	/**
+	 * @param pooledBrowser whether the server keeps a browser of its own captured
+	 */
+	public ServerLease(File file, int port, long idleTimeout, boolean pooledBrowser) {
+		this.file = file;
+		this.port = port;
+		this.serverUrl = "http://localhost:" + port;
+		this.idleTimeout = idleTimeout;
+		this.pooledBrowser = pooledBrowser;
+	}
+
+	/**
+	 * @return the lease held in {@code file}, or null if there is none
+	 */
+	public static ServerLease read(File file) {
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		Properties props = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			props.load(in);
+			return new ServerLease(file, Integer.parseInt(props.getProperty("port")),
+					Long.parseLong(props.getProperty("idleTimeout")), Boolean.parseBoolean(props.getProperty("pooledBrowser")));
+		} catch (IOException e) {
+			return null;
+		} catch (NumberFormatException e) {
+			return null;
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	public void write() throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Failed to create " + directory);
+		}
+		Properties props = new Properties();
+		props.setProperty("port", String.valueOf(port));
+		props.setProperty("server", serverUrl);
+		props.setProperty("idleTimeout", String.valueOf(idleTimeout));
+		props.setProperty("pooledBrowser", String.valueOf(pooledBrowser));
+		OutputStream out = new FileOutputStream(file);
+		try {
+			props.store(out, "JsTestDriver server lease");
+		} finally {
+			closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Records a use of the server, postponing its idle shutdown.
+	 */
+	public void touch() {
+		file.setLastModified(System.currentTimeMillis());
+	}
+
+	public boolean isReleased() {
+		return !file.isFile();
+	}
+
+	public boolean isExpired() {
+		return System.currentTimeMillis() - file.lastModified() > idleTimeout;
+	}
+
+	/**
+	 * @return true if the lease is current and the server accepts connections
+	 */
+	public boolean isAlive() {
+		return !isReleased() && !isExpired() && isListening();
+	}
+
+	public boolean isListening() {
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress("localhost", port), CONNECT_TIMEOUT);
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException ignored) {
+				// nothing was sent
+			}
+		}
+	}
+
+	public void release() {
+		file.delete();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public String getServerUrl() {
+		return serverUrl;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public boolean hasPooledBrowser() {
+		return pooledBrowser;
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException ignored) {
+				// nothing left to flush
+			}
+		}
+	}
+}
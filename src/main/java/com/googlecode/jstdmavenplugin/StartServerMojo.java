@@ -0,0 +1,191 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts a JsTestDriver server in the background and leases it to later executions of the
+ * <code>test</code> goal with <code>reuseServer</code> set, in this reactor and in the builds
+ * that follow. Browsers captured by the server stay captured until it shuts down after
+ * <code>serverIdleTimeout</code> seconds without use, or until <code>stop-server</code> is run.
+ * <p/>
+ * With <code>browserPool</code> set, the server also keeps a local headless browser
+ * captured, relaunching it when it dies, so builds skip capture altogether.
+ *
+ * @goal start-server
+ * @requiresProject false
+ */
+public class StartServerMojo extends AbstractMojo {
+
+	private static final long STARTUP_TIMEOUT = 60000;
+
+	/**
+	 * @parameter expression="${jstd.jar}" default-value=""
+	 */
+	private String jar;
+
+	/**
+	 * @parameter expression="${jstd.jvmOpts}" default-value=""
+	 */
+	private String jvmOpts;
+
+	/**
+	 * Browsers to launch and capture when the server starts.
+	 *
+	 * @parameter expression="${jstd.browser}" default-value=""
+	 */
+	private String browser;
+
+	/**
+	 * Browser executable, followed by any extra arguments, to keep one browser of captured by
+	 * the server. Chrome, Chromium and Firefox are run headless, with a profile of their own.
+	 * The server keeps a single browser because JsTD runs every test on each browser a server
+	 * captured; to spread the tests over several browsers, start a server per browser and list
+	 * their ports in <code>shardServers</code>.
+	 *
+	 * @parameter expression="${jstd.browserPool}" default-value=""
+	 */
+	private String browserPool;
+
+	/**
+	 * @parameter expression="${jstd.port}" default-value="9876"
+	 */
+	private int port;
+
+	/**
+	 * Seconds the server stays up without being used.
+	 *
+	 * @parameter expression="${jstd.serverIdleTimeout}" default-value="1800"
+	 */
+	private int serverIdleTimeout;
+
+	/**
+	 * @parameter expression="${jstd.leaseFile}" default-value="${user.home}/.jstd/server.lease"
+	 */
+	private File leaseFile;
+
+	/**
+	 * @component role="org.apache.maven.artifact.factory.ArtifactFactory"
+	 * @required
+	 * @readonly
+	 */
+	protected ArtifactFactory artifactFactory;
+
+	/**
+	 * @component role="org.apache.maven.artifact.resolver.ArtifactResolver"
+	 * @required
+	 * @readonly
+	 */
+	protected ArtifactResolver artifactResolver;
+
+	/**
+	 * @parameter expression="${localRepository}"
+	 * @readonly
+	 * @required
+	 */
+	protected ArtifactRepository localRepository;
+
+	public void execute() throws MojoExecutionException {
+		ServerLease lease = ServerLease.read(leaseFile);
+		if (lease != null) {
+			if (lease.isAlive()) {
+				lease.touch();
+				getLog().info("JsTestDriver server already running at " + lease.getServerUrl());
+				return;
+			}
+			lease.release();
+		}
+
+		File log = new File(leaseFile.getAbsoluteFile().getParentFile(), "server-" + port + ".log");
+		FileUtils.makeDirectoryIfNotExists(log.getParent());
+		try {
+			Process daemon = new ProcessBuilder(buildDaemonCommand(log)).start();
+			daemon.getOutputStream().close();
+			daemon.getInputStream().close();
+			daemon.getErrorStream().close();
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to start the JsTestDriver server daemon", e);
+		}
+
+		lease = awaitLease();
+		if (lease == null) {
+			throw new MojoExecutionException("JsTestDriver server did not start on port " + port + ", see " + log);
+		}
+		getLog().info("JsTestDriver server started at " + lease.getServerUrl()
+				+ (lease.hasPooledBrowser() ? " with a pooled browser" : "")
+				+ ", stopping after " + serverIdleTimeout + " s idle. Log: " + log);
+	}
+
+	private List<String> buildDaemonCommand(File log) throws MojoExecutionException {
+		List<String> command = new ArrayList<String>();
+		command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+		if (StringUtils.isNotEmpty(jvmOpts)) {
+			command.addAll(Arrays.asList(StringUtils.split(jvmOpts)));
+		}
+		command.add("-cp");
+		command.add(getPluginClasspath());
+		command.add(JstdServerDaemon.class.getName());
+		command.add(resolveJar());
+		command.add(leaseFile.getAbsolutePath());
+		command.add(String.valueOf(port));
+		command.add(String.valueOf(serverIdleTimeout * 1000L));
+		command.add(log.getAbsolutePath());
+		command.add(StringUtils.defaultString(browserPool));
+		if (StringUtils.isNotEmpty(browser)) {
+			command.add("--browser");
+			command.add(browser);
+		}
+		return command;
+	}
+
+	private String resolveJar() throws MojoExecutionException {
+		if (StringUtils.isNotEmpty(jar)) {
+			return jar;
+		}
+		try {
+			return new ArtifactLocator(artifactFactory, artifactResolver, localRepository)
+					.getAbsolutePathToArtifact(new JstdCoordinate());
+		} catch (IOException ex) {
+			throw new MojoExecutionException("Error loading JSTD Coordinate from properties file.", ex);
+		} catch (ArtifactNotFoundException ex) {
+			throw new MojoExecutionException("Error resolving JSTD artifact in local repository.", ex);
+		}
+	}
+
+	private String getPluginClasspath() throws MojoExecutionException {
+		try {
+			return new File(JstdServerDaemon.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		} catch (URISyntaxException e) {
+			throw new MojoExecutionException("Unable to locate the plugin jar", e);
+		}
+	}
+
+	private ServerLease awaitLease() throws MojoExecutionException {
+		long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+		while (System.currentTimeMillis() < deadline) {
+			ServerLease lease = ServerLease.read(leaseFile);
+			if (lease != null && lease.isAlive()) {
+				return lease;
+			}
+			try {
+				Thread.sleep(250);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("Interrupted while waiting for the JsTestDriver server", e);
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,420 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the files a config loads to the browsers, instead of the JsTD server, which streams
+ * every file through its servlets on every run.
+ * <p/>
+ * Only registered files are served. Bodies go from the file channel straight to the socket
+ * with <code>transferTo</code>. Each file gets a strong ETag, the SHA-1 of its content hashed
+ * through a memory mapping once per modification, so browsers revalidate cached files with a
+ * <code>304</code>. Text files are compressed once into a cache named after their hash, so
+ * later runs serve the compressed copy unchanged files left. Connections are kept alive.
+ */
+public class StaticFileServer {
+
+	private static final int MAX_HEADER_LINE = 8192;
+	private static final int IDLE_TIMEOUT = 30000;
+	private static final Set<String> COMPRESSIBLE = new HashSet<String>(Arrays.asList(
+			"js", "css", "html", "htm", "json", "txt", "svg", "xml", "map"));
+	private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+
+	static {
+		CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+		CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+		CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+		CONTENT_TYPES.put("htm", "text/html; charset=utf-8");
+		CONTENT_TYPES.put("json", "application/json; charset=utf-8");
+		CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+		CONTENT_TYPES.put("map", "application/json; charset=utf-8");
+		CONTENT_TYPES.put("svg", "image/svg+xml");
+		CONTENT_TYPES.put("xml", "application/xml");
+		CONTENT_TYPES.put("png", "image/png");
+		CONTENT_TYPES.put("gif", "image/gif");
+		CONTENT_TYPES.put("jpg", "image/jpeg");
+	}
+
+	private final File cacheDirectory;
+	private final Map<String, File> files = new ConcurrentHashMap<String, File>();
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private ServerSocketChannel server;
+	private ExecutorService workers;
+	private volatile boolean running;
+
+	/**
+	 * @param cacheDirectory where the compressed copies are kept
+	 */
+	public StaticFileServer(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Listens on the loopback interface only.
+	 *
+	 * @param port the port to listen on, 0 for any free one
+	 * @return the port listened on
+	 */
+	public int start(int port) throws IOException {
+		return start("localhost", port);
+	}
+
+	/**
+	 * @param host the name whose address to listen on; the browsers must reach the server by it
+	 * @param port the port to listen on, 0 for any free one
+	 * @return the port listened on
+	 */
+	public synchronized int start(String host, int port) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		if (address.isUnresolved()) {
+			throw new IOException("Unable to resolve " + host);
+		}
+		server = ServerSocketChannel.open();
+		server.socket().setReuseAddress(true);
+		server.socket().bind(address);
+		workers = Executors.newCachedThreadPool(new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "jstd-static-" + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		running = true;
+		workers.execute(new Runnable() {
+			public void run() {
+				accept();
+			}
+		});
+		return getPort();
+	}
+
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	InetAddress getAddress() {
+		return server.socket().getInetAddress();
+	}
+
+	/**
+	 * Serves {@code served} at <code>/{prefix}/</code> followed by their path relative to
+	 * {@code root}; files outside {@code root} are not served.
+	 */
+	public void register(String prefix, File root, Collection<File> served) {
+		String rootPath = GlobPattern.normalize(root).getPath() + File.separator;
+		for (File file : served) {
+			String path = GlobPattern.normalize(file).getPath();
+			if (path.startsWith(rootPath)) {
+				files.put("/" + prefix + "/" + path.substring(rootPath.length()).replace(File.separatorChar, '/'),
+						file.getAbsoluteFile());
+			}
+		}
+	}
+
+	public synchronized void stop() {
+		running = false;
+		try {
+			if (server != null) {
+				server.close();
+			}
+		} catch (IOException ignored) {
+			// closing anyway
+		}
+		if (workers != null) {
+			workers.shutdownNow();
+		}
+	}
+
+	private void accept() {
+		while (running) {
+			final SocketChannel socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				// closed by stop()
+				return;
+			}
+			workers.execute(new Runnable() {
+				public void run() {
+					serve(socket);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Answers the requests of one connection until the client closes it, asks to or idles.
+	 */
+	private void serve(SocketChannel socket) {
+		try {
+			socket.socket().setSoTimeout(IDLE_TIMEOUT);
+			socket.socket().setTcpNoDelay(true);
+			// the stream of the socket adaptor honours the timeout, unlike the channel
+			InputStream in = new BufferedInputStream(socket.socket().getInputStream());
+			while (running) {
+				String requestLine = readLine(in);
+				if (requestLine == null) {
+					return;
+				}
+				if (requestLine.length() == 0) {
+					continue;
+				}
+				Map<String, String> headers = new HashMap<String, String>();
+				for (String line = readLine(in); line != null && line.length() > 0; line = readLine(in)) {
+					int colon = line.indexOf(':');
+					if (colon > 0) {
+						headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+					}
+				}
+				String[] request = requestLine.split(" ");
+				boolean http11 = request.length > 2 && "HTTP/1.1".equals(request[2]);
+				String connection = headers.get("connection");
+				boolean keepAlive = http11 ? !"close".equalsIgnoreCase(connection) : "keep-alive".equalsIgnoreCase(connection);
+				if (headers.containsKey("content-length") || headers.containsKey("transfer-encoding")) {
+					// no request this server answers has a body
+					keepAlive = false;
+				}
+				respond(socket, request, headers, keepAlive);
+				if (!keepAlive) {
+					return;
+				}
+			}
+		} catch (SocketTimeoutException e) {
+			// idle connection
+		} catch (IOException e) {
+			// the client went away
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException ignored) {
+				// closing anyway
+			}
+		}
+	}
+
+	private void respond(SocketChannel socket, String[] request, Map<String, String> headers, boolean keepAlive)
+			throws IOException {
+		String method = request[0];
+		if (request.length < 2 || !("GET".equals(method) || "HEAD".equals(method))) {
+			writeHead(socket, "405 Method Not Allowed", "Allow: GET, HEAD\r\nContent-Length: 0\r\n", keepAlive);
+			return;
+		}
+		File file = files.get(decodePath(request[1]));
+		if (file == null || !file.isFile()) {
+			writeHead(socket, "404 Not Found", "Content-Length: 0\r\n", keepAlive);
+			return;
+		}
+		Entry entry = entry(file);
+		String encoding = headers.get("accept-encoding");
+		boolean gzip = entry.compressed != null && encoding != null && encoding.toLowerCase().contains("gzip");
+		String etag = gzip ? entry.etag.replaceFirst("\"$", "-gz\"") : entry.etag;
+		StringBuilder head = new StringBuilder();
+		head.append("ETag: ").append(etag).append("\r\n");
+		head.append("Cache-Control: no-cache\r\n");
+		if (entry.compressed != null) {
+			head.append("Vary: Accept-Encoding\r\n");
+		}
+		String ifNoneMatch = headers.get("if-none-match");
+		if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || "*".equals(ifNoneMatch.trim()))) {
+			writeHead(socket, "304 Not Modified", head.toString(), keepAlive);
+			return;
+		}
+
+		File body = gzip ? entry.compressed : file;
+		FileChannel channel = new FileInputStream(body).getChannel();
+		try {
+			long length = channel.size();
+			head.append("Content-Type: ").append(contentType(file)).append("\r\n");
+			head.append("Content-Length: ").append(length).append("\r\n");
+			if (gzip) {
+				head.append("Content-Encoding: gzip\r\n");
+			}
+			writeHead(socket, "200 OK", head.toString(), keepAlive);
+			if ("GET".equals(method)) {
+				for (long sent = 0; sent < length; ) {
+					long transferred = channel.transferTo(sent, length - sent, socket);
+					if (transferred <= 0 && channel.size() < length) {
+						throw new IOException(file + " shrank while being served");
+					}
+					sent += transferred;
+				}
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void writeHead(SocketChannel socket, String status, String headers, boolean keepAlive)
+			throws IOException {
+		ByteBuffer head = ByteBuffer.wrap(("HTTP/1.1 " + status + "\r\n" + headers
+				+ "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n").getBytes("ISO-8859-1"));
+		while (head.hasRemaining()) {
+			socket.write(head);
+		}
+	}
+
+	/**
+	 * @return the hash and compressed copy of the current content of {@code file}
+	 */
+	private Entry entry(File file) throws IOException {
+		String key = file.getPath();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.isCurrent(file)) {
+			return entry;
+		}
+		long lastModified = file.lastModified();
+		long length = file.length();
+		String hash = hash(file);
+		File compressed = null;
+		if (COMPRESSIBLE.contains(extension(file)) && length > 0) {
+			compressed = new File(cacheDirectory, hash + ".gz");
+			if (!compressed.isFile()) {
+				compress(file, compressed);
+			}
+			if (compressed.length() >= length) {
+				compressed = null;
+			}
+		}
+		entry = new Entry("\"" + hash + "\"", lastModified, length, compressed);
+		entries.put(key, entry);
+		return entry;
+	}
+
+	private static String hash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not available", e);
+		}
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			long size = channel.size();
+			for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(Integer.MAX_VALUE, size - position));
+				digest.update(mapped);
+			}
+		} finally {
+			in.close();
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Compresses into a temporary file renamed into place, so concurrent requests never serve
+	 * half a copy.
+	 */
+	private static void compress(File file, File compressed) throws IOException {
+		FileUtils.makeDirectoryIfNotExists(compressed.getParent());
+		File temporary = File.createTempFile(compressed.getName(), ".tmp", compressed.getParentFile());
+		InputStream in = new FileInputStream(file);
+		try {
+			OutputStream out = new GZIPOutputStream(new FileOutputStream(temporary), 65536);
+			try {
+				byte[] buffer = new byte[65536];
+				for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		if (!temporary.renameTo(compressed) && !compressed.isFile()) {
+			temporary.delete();
+			throw new IOException("Unable to move " + temporary + " to " + compressed);
+		}
+		temporary.delete();
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		for (int c = in.read(); c != '\n'; c = in.read()) {
+			if (c < 0) {
+				return line.length() == 0 ? null : line.toString();
+			}
+			if (c != '\r') {
+				if (line.length() == MAX_HEADER_LINE) {
+					throw new IOException("Header line too long");
+				}
+				line.append((char) c);
+			}
+		}
+		return line.toString();
+	}
+
+	private static String decodePath(String target) throws UnsupportedEncodingException {
+		int query = target.indexOf('?');
+		String path = query < 0 ? target : target.substring(0, query);
+		return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+	}
+
+	private static String extension(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+	}
+
+	private static String contentType(File file) {
+		String type = CONTENT_TYPES.get(extension(file));
+		return type == null ? "application/octet-stream" : type;
+	}
+
+	private static class Entry {
+		private final String etag;
+		private final long lastModified;
+		private final long length;
+		private final File compressed;
+
+		private Entry(String etag, long lastModified, long length, File compressed) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.compressed = compressed;
+		}
+
+		private boolean isCurrent(File file) {
+			return file.lastModified() == lastModified && file.length() == length
+					&& (compressed == null || compressed.isFile());
+		}
+	}
+}
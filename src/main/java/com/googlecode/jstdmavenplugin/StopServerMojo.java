@@ -0,0 +1,34 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+
+/**
+ * Stops the JsTestDriver server started by <code>start-server</code> and releases its lease.
+ *
+ * @goal stop-server
+ * @requiresProject false
+ */
+public class StopServerMojo extends AbstractMojo {
+
+	/**
+	 * @parameter expression="${jstd.leaseFile}" default-value="${user.home}/.jstd/server.lease"
+	 */
+	private File leaseFile;
+
+	public void execute() throws MojoExecutionException {
+		ServerLease lease = ServerLease.read(leaseFile);
+		if (lease == null) {
+			getLog().info("No JsTestDriver server lease found in " + leaseFile);
+			return;
+		}
+		lease.release();
+		if (JstdLauncher.quitServer(lease.getServerUrl(), null)) {
+			getLog().info("Stopped JsTestDriver server at " + lease.getServerUrl());
+		} else {
+			getLog().info("JsTestDriver server at " + lease.getServerUrl() + " was not running");
+		}
+	}
+}
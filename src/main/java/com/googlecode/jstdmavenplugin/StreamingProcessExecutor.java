@@ -1,48 +1,302 @@
 package com.googlecode.jstdmavenplugin;
 
+import org.apache.maven.plugin.MojoExecutionException;
+
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Copyright 2009-2011, Burke Webster (burke.webster@gmail.com)
+ * <p/>
+ * stdout and stderr are each read by a pump thread of their own, so the child never waits
+ * on a full pipe. Only stdout lines reach the listener; both streams are echoed through a
+ * {@link ConsoleWriter}, which keeps a slow console from holding up the pumps.
+ * <p/>
+ * With timeouts set, a watchdog kills a run that takes too long overall or stops printing,
+ * after asking the child JVM for a thread dump, and reports it as a
+ * {@link ProcessTimeoutException}.
  */
 public class StreamingProcessExecutor implements ProcessExecutor
 {
-    public String execute(ProcessConfiguration jarConfig)
+    private static final long WATCHDOG_INTERVAL = 250;
+    private static final long THREAD_DUMP_WAIT = 1000;
+    private static final long KILL_WAIT = 5000;
+
+    private long consoleLimit;
+    private ConsoleSpill consoleSpill;
+    private long timeout;
+    private long inactivityTimeout;
+    private File threadDumpFile;
+    private PhaseTimer timer;
+
+    /**
+     * @param consoleLimit bytes of output to echo per stream, 0 for no limit
+     * @param consoleSpill where output beyond the limit goes, null to drop it
+     */
+    public void setConsoleLimit(long consoleLimit, ConsoleSpill consoleSpill)
+    {
+        this.consoleLimit = consoleLimit;
+        this.consoleSpill = consoleSpill;
+    }
+
+    /**
+     * @param timeout milliseconds a run may take, 0 for no limit
+     * @param inactivityTimeout milliseconds a run may go without printing, 0 for no limit
+     * @param threadDumpFile where the thread dump of a run that timed out is written
+     */
+    public void setTimeouts(long timeout, long inactivityTimeout, File threadDumpFile)
+    {
+        this.timeout = timeout;
+        this.inactivityTimeout = inactivityTimeout;
+        this.threadDumpFile = threadDumpFile;
+    }
+
+    /**
+     * @param timer times the start of the process as <code>fork</code>, null for none
+     */
+    public void setPhaseTimer(PhaseTimer timer)
     {
-		StringBuilder buffer = new StringBuilder();
+        this.timer = timer;
+    }
+
+    public void execute(ProcessConfiguration jarConfig, OutputListener listener) throws MojoExecutionException
+    {
+        Process process = null;
         try
         {
-            Process process = create(jarConfig);
-            BufferedReader inputReader = getInputStream(process);
-            for (String line = inputReader.readLine(); line != null; line = inputReader.readLine())
+            PhaseTimer.Span fork = timer == null ? null : timer.start("fork");
+            process = create(jarConfig);
+            if (fork != null)
             {
-                System.out.println(line);
-                buffer.append(line).append("\n");
+                fork.end();
             }
+            process.getOutputStream().close();
+            ConsoleWriter stdout = new ConsoleWriter("jstd-stdout", System.out, consoleLimit, consoleSpill);
+            ConsoleWriter stderr = new ConsoleWriter("jstd-stderr", System.err, consoleLimit, consoleSpill);
+            Pump out = new Pump("jstd-stdout-pump", process, process.getInputStream(), stdout, listener);
+            Pump err = new Pump("jstd-stderr-pump", process, process.getErrorStream(), stderr, null);
+            out.start();
+            err.start();
 
+            String expired = timeout > 0 || inactivityTimeout > 0 ? watch(process, out, err) : null;
+            if (expired != null)
+            {
+                stdout.close();
+                stderr.close();
+                throw new ProcessTimeoutException(expired);
+            }
             process.waitFor();
-
-            return buffer.toString();
+            if (out.abort == null)
+            {
+                // whatever the child wrote before exiting is still in the pipes
+                out.join();
+                err.join();
+            }
+            process = null;
+            stdout.close();
+            stderr.close();
+            if (out.abort != null)
+            {
+                throw out.abort;
+            }
+        }
+        catch (MojoExecutionException e)
+        {
+            throw e;
         }
         catch (Exception e)
         {
             throw new RuntimeException(e);
         }
+        finally
+        {
+            if (process != null)
+            {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Waits for the child to exit, or kills it once a timeout expires.
+     *
+     * @return why the child was killed, or null if it exited
+     */
+    private String watch(final Process process, Pump out, Pump err) throws InterruptedException
+    {
+        final CountDownLatch exited = new CountDownLatch(1);
+        Thread waiter = new Thread("jstd-watchdog")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    process.waitFor();
+                }
+                catch (InterruptedException ignored)
+                {
+                }
+                exited.countDown();
+            }
+        };
+        waiter.setDaemon(true);
+        waiter.start();
+
+        long started = System.currentTimeMillis();
+        while (!exited.await(WATCHDOG_INTERVAL, TimeUnit.MILLISECONDS))
+        {
+            long now = System.currentTimeMillis();
+            String expired = null;
+            if (timeout > 0 && now - started > timeout)
+            {
+                expired = String.format("JsTestDriver did not finish within %d s", timeout / 1000);
+            }
+            else if (inactivityTimeout > 0 && now - Math.max(started, Math.max(out.lastOutput, err.lastOutput)) > inactivityTimeout)
+            {
+                expired = String.format("JsTestDriver printed nothing for %d s", inactivityTimeout / 1000);
+            }
+            if (expired != null)
+            {
+                if (dumpThreads(process, out, err))
+                {
+                    expired += ", thread dump in " + threadDumpFile;
+                }
+                ProcessTree.kill(process);
+                exited.await(KILL_WAIT, TimeUnit.MILLISECONDS);
+                return expired;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A JVM prints its thread dump to stdout on SIGQUIT, so the pumps copy what follows the
+     * signal into the dump file for a moment.
+     *
+     * @return true if a dump was written
+     */
+    private boolean dumpThreads(Process process, Pump out, Pump err) throws InterruptedException
+    {
+        Integer pid = ProcessTree.pid(process);
+        if (pid == null || threadDumpFile == null)
+        {
+            return false;
+        }
+        PrintWriter dump;
+        try
+        {
+            FileUtils.makeDirectoryIfNotExists(threadDumpFile.getAbsoluteFile().getParent());
+            dump = new PrintWriter(new OutputStreamWriter(new FileOutputStream(threadDumpFile), "UTF-8"), true);
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        out.capture = dump;
+        err.capture = dump;
+        try
+        {
+            if (!ProcessTree.signal(pid, "QUIT"))
+            {
+                return false;
+            }
+            Thread.sleep(THREAD_DUMP_WAIT);
+            return true;
+        }
+        finally
+        {
+            out.capture = null;
+            err.capture = null;
+            dump.close();
+        }
     }
 
     private Process create(ProcessConfiguration configuration) throws IOException
     {
-        ProcessBuilder pb = new ProcessBuilder(configuration.getFullCommand());
-        pb.redirectErrorStream(true);
-        return pb.start();
+        return new ProcessBuilder(configuration.getFullCommand()).start();
     }
 
-    private BufferedReader getInputStream(Process p)
+    /**
+     * Reads one stream of the child to its end. Once the listener aborts, the child is
+     * destroyed and the remaining lines are only echoed.
+     */
+    private static class Pump extends Thread
     {
-        InputStream inputStream = p.getInputStream();
-        return new BufferedReader(new InputStreamReader(inputStream));
+        private final Process process;
+        private final InputStream stream;
+        private final ConsoleWriter console;
+        private final OutputListener listener;
+        private volatile MojoExecutionException abort;
+        private volatile long lastOutput;
+        private volatile PrintWriter capture;
+
+        Pump(String name, Process process, InputStream stream, ConsoleWriter console, OutputListener listener)
+        {
+            super(name);
+            this.process = process;
+            this.stream = stream;
+            this.console = console;
+            this.listener = listener;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run()
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+            try
+            {
+                for (String line = reader.readLine(); line != null; line = reader.readLine())
+                {
+                    lastOutput = System.currentTimeMillis();
+                    console.println(line);
+                    PrintWriter dump = capture;
+                    if (dump != null)
+                    {
+                        dump.println(line);
+                    }
+                    if (listener != null && abort == null)
+                    {
+                        try
+                        {
+                            listener.onLine(line);
+                        }
+                        catch (MojoExecutionException e)
+                        {
+                            abort = e;
+                            process.destroy();
+                        }
+                        catch (RuntimeException e)
+                        {
+                            abort = new MojoExecutionException("Failed to process JsTestDriver output", e);
+                            process.destroy();
+                        }
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                // the stream closes under the reader when the child is destroyed
+            }
+            finally
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+        }
     }
 }
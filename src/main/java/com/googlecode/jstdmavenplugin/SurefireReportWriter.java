@@ -0,0 +1,408 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes Surefire compatible <code>TEST-&lt;testCase&gt;.xml</code> reports and a JSON summary
+ * from the <code>--verbose</code> output of JsTestDriver, as it streams.
+ * <p/>
+ * A passed test is appended to the body of its test case's report right away, so memory only
+ * holds counts per test case and the failures. Failures wait until the end: their duration and
+ * message come with the summary JsTD prints last, and a failed test that passes on a rerun is
+ * reported as passed with a <code>flakyFailure</code>, the way Surefire reports its reruns.
+ * <p/>
+ * Each run gets a {@link #session()} of its own; sessions of concurrent runs may share a writer.
+ */
+public class SurefireReportWriter
+{
+    private static final Pattern PROBLEM = Pattern.compile(
+            "\\s+(.+)\\.([^.\\s]+) (failed|error) \\(([0-9.,]+) ms\\):?\\s*(.*)");
+
+    /**
+     * Caps the message lines kept per failure, as a failing test may log without end.
+     */
+    private static final int MAX_MESSAGE_LINES = 50;
+
+    private final File directory;
+    private final Map<String, Suite> suites = new LinkedHashMap<String, Suite>();
+    private final Map<String, Failure> failures = new LinkedHashMap<String, Failure>();
+    private Suite openSuite;
+    private PrintWriter openBody;
+
+    public SurefireReportWriter(File directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * @return a listener for the output of one run
+     */
+    public OutputListener session()
+    {
+        return new Session();
+    }
+
+    /**
+     * Writes the reports and <code>jstd-summary.json</code>.
+     */
+    public synchronized void finish() throws IOException
+    {
+        for (Failure failure : failures.values())
+        {
+            Suite suite = suite(failure.testCase);
+            suite.add(failure.status, failure.millis);
+            body(suite).println(testCase(failure.testCase, failure.testName, failure.millis,
+                    element(failure.status.equals(TestResult.ERROR) ? "error" : "failure", failure)));
+        }
+        failures.clear();
+        closeBody();
+
+        int tests = 0, failed = 0, errors = 0, flaky = 0;
+        double millis = 0;
+        for (Suite suite : suites.values())
+        {
+            writeReport(suite);
+            tests += suite.tests;
+            failed += suite.failures;
+            errors += suite.errors;
+            flaky += suite.flaky;
+            millis += suite.millis;
+        }
+        writeSummary(tests, failed, errors, flaky, millis);
+    }
+
+    private synchronized void passed(String testCase, String testName)
+    {
+        Failure flakyFailure = failures.remove(testCase + "." + testName);
+        Suite suite = suite(testCase);
+        suite.add(TestResult.PASSED, 0);
+        String content = null;
+        if (flakyFailure != null)
+        {
+            suite.flaky++;
+            content = element("flakyFailure", flakyFailure);
+        }
+        body(suite).println(testCase(testCase, testName, 0, content));
+    }
+
+    /**
+     * Later reports of the same test, such as the summary line after the progress line or a
+     * failing rerun, replace the earlier one, keeping the longer message and a known duration.
+     */
+    private synchronized void failed(String testCase, String testName, String status, double millis, List<String> message)
+    {
+        String key = testCase + "." + testName;
+        Failure known = failures.get(key);
+        if (known != null && known.message.size() > message.size())
+        {
+            message = known.message;
+        }
+        if (known != null && millis < 0)
+        {
+            millis = known.millis;
+        }
+        failures.put(key, new Failure(testCase, testName, status, millis, message));
+    }
+
+    private Suite suite(String testCase)
+    {
+        Suite suite = suites.get(testCase);
+        if (suite == null)
+        {
+            suite = new Suite(testCase);
+            suites.put(testCase, suite);
+        }
+        return suite;
+    }
+
+    /**
+     * Keeps the body of one suite open at a time; the tests of a test case mostly come together.
+     */
+    private PrintWriter body(Suite suite)
+    {
+        if (suite != openSuite)
+        {
+            closeBody();
+            try
+            {
+                FileUtils.makeDirectoryIfNotExists(directory.getPath());
+                openBody = new PrintWriter(new OutputStreamWriter(new FileOutputStream(suite.body, true), "UTF-8"));
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to write " + suite.body, e);
+            }
+            openSuite = suite;
+        }
+        return openBody;
+    }
+
+    private void closeBody()
+    {
+        if (openBody != null)
+        {
+            openBody.close();
+            openBody = null;
+            openSuite = null;
+        }
+    }
+
+    private void writeReport(Suite suite) throws IOException
+    {
+        File report = new File(directory, "TEST-" + suite.name + ".xml");
+        OutputStream out = new FileOutputStream(report);
+        try
+        {
+            out.write(String.format(Locale.ENGLISH, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"%d\" skipped=\"0\" time=\"%.3f\">\n",
+                    escape(suite.name), suite.tests, suite.failures, suite.errors, suite.millis / 1000).getBytes("UTF-8"));
+            if (suite.body.isFile())
+            {
+                InputStream in = new FileInputStream(suite.body);
+                try
+                {
+                    byte[] buffer = new byte[8192];
+                    for (int read = in.read(buffer); read > 0; read = in.read(buffer))
+                    {
+                        out.write(buffer, 0, read);
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            out.write("</testsuite>\n".getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+        suite.body.delete();
+    }
+
+    private void writeSummary(int tests, int failed, int errors, int flaky, double millis) throws IOException
+    {
+        FileUtils.makeDirectoryIfNotExists(directory.getPath());
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directory, "jstd-summary.json")), "UTF-8"));
+        try
+        {
+            writer.print(String.format(Locale.ENGLISH,
+                    "{\"tests\":%d,\"passed\":%d,\"failures\":%d,\"errors\":%d,\"flaky\":%d,\"time\":%.3f,\"suites\":[",
+                    tests, tests - failed - errors, failed, errors, flaky, millis / 1000));
+            String separator = "";
+            for (Suite suite : suites.values())
+            {
+                writer.print(String.format(Locale.ENGLISH,
+                        "%s{\"name\":\"%s\",\"tests\":%d,\"failures\":%d,\"errors\":%d,\"flaky\":%d,\"time\":%.3f}",
+                        separator, json(suite.name), suite.tests, suite.failures, suite.errors, suite.flaky,
+                        suite.millis / 1000));
+                separator = ",";
+            }
+            writer.println("]}");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static String testCase(String testCase, String testName, double millis, String content)
+    {
+        String start = String.format(Locale.ENGLISH, "  <testcase name=\"%s\" classname=\"%s\" time=\"%.3f\"",
+                escape(testName), escape(testCase), Math.max(0, millis) / 1000);
+        return content == null ? start + "/>" : start + ">\n" + content + "\n  </testcase>";
+    }
+
+    private static String element(String name, Failure failure)
+    {
+        String first = failure.message.isEmpty() ? "" : failure.message.get(0);
+        StringBuilder text = new StringBuilder();
+        for (String line : failure.message)
+        {
+            text.append(line).append('\n');
+        }
+        return String.format("    <%s message=\"%s\" type=\"%s\">%s</%s>", name, escape(first), failure.status,
+                escape(text.toString()), name);
+    }
+
+    /**
+     * Escapes markup and drops the characters XML 1.0 does not allow.
+     */
+    static String escape(String text)
+    {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r')
+                    {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String json(String text)
+    {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private class Suite
+    {
+        private final String name;
+        private final File body;
+        private int tests;
+        private int failures;
+        private int errors;
+        private int flaky;
+        private double millis;
+
+        private Suite(String name)
+        {
+            this.name = name;
+            this.body = new File(directory, ".TEST-" + name + ".xml.part");
+            body.delete();
+        }
+
+        private void add(String status, double testMillis)
+        {
+            tests++;
+            if (TestResult.FAILED.equals(status))
+            {
+                failures++;
+            }
+            else if (TestResult.ERROR.equals(status))
+            {
+                errors++;
+            }
+            millis += Math.max(0, testMillis);
+        }
+    }
+
+    private static class Failure
+    {
+        private final String testCase;
+        private final String testName;
+        private final String status;
+        private final double millis;
+        private final List<String> message;
+
+        private Failure(String testCase, String testName, String status, double millis, List<String> message)
+        {
+            this.testCase = testCase;
+            this.testName = testName;
+            this.status = status;
+            this.millis = millis;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Follows the output of one run: a progress line starts a test, the indented lines after
+     * a failed one are its message.
+     */
+    private class Session implements OutputListener
+    {
+        private String testCase;
+        private String testName;
+        private String status;
+        private List<String> message;
+
+        public void onLine(String line)
+        {
+            String progress = ResultsParser.progressStatus(line);
+            if (progress != null)
+            {
+                flush();
+                String test = line.substring(progress.length() + 3);
+                int dot = test.lastIndexOf('.');
+                if (dot <= 0)
+                {
+                    return;
+                }
+                if (TestResult.PASSED.equalsIgnoreCase(progress))
+                {
+                    passed(test.substring(0, dot), test.substring(dot + 1));
+                    return;
+                }
+                testCase = test.substring(0, dot);
+                testName = test.substring(dot + 1);
+                status = progress.toLowerCase();
+                message = new ArrayList<String>();
+                return;
+            }
+            if (line.contains(" ms)"))
+            {
+                Matcher matcher = PROBLEM.matcher(line);
+                if (matcher.matches())
+                {
+                    flush();
+                    List<String> problem = new ArrayList<String>();
+                    if (matcher.group(5).length() > 0)
+                    {
+                        problem.add(matcher.group(5));
+                    }
+                    failed(matcher.group(1), matcher.group(2), matcher.group(3),
+                            Double.parseDouble(matcher.group(4).replace(',', '.')), problem);
+                    return;
+                }
+            }
+            if (testCase == null)
+            {
+                return;
+            }
+            if (line.length() > 0 && Character.isWhitespace(line.charAt(0)))
+            {
+                if (message.size() < MAX_MESSAGE_LINES)
+                {
+                    message.add(line.trim());
+                }
+            }
+            else
+            {
+                flush();
+            }
+        }
+
+        private void flush()
+        {
+            if (testCase != null)
+            {
+                failed(testCase, testName, status, TestResult.UNKNOWN, message);
+                testCase = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the names of the JsTD test cases declared in test files, i.e. the names that can be
+ * passed to <code>--tests</code>.
+ */
+public class TestCaseScanner
+{
+    private static final Pattern TEST_CASE_DECLARATION = Pattern.compile(
+            "\\b(?:Conditional)?(?:Async)?TestCase\\s*\\(\\s*(['\"])(.+?)\\1");
+
+    public List<String> scan(List<File> testFiles) throws IOException
+    {
+        Set<String> testCases = new LinkedHashSet<String>();
+        for (File testFile : testFiles)
+        {
+            testCases.addAll(scan(testFile));
+        }
+        return new ArrayList<String>(testCases);
+    }
+
+    public List<String> scan(File testFile) throws IOException
+    {
+        return scan(org.apache.commons.io.FileUtils.readFileToString(testFile, "UTF-8"));
+    }
+
+    public List<String> scan(String source)
+    {
+        List<String> testCases = new ArrayList<String>();
+        Matcher matcher = TEST_CASE_DECLARATION.matcher(source);
+        while (matcher.find())
+        {
+            testCases.add(matcher.group(2));
+        }
+        return testCases;
+    }
+}
@@ -0,0 +1,203 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcomes and durations of the test cases in earlier runs, for running the likely failures
+ * first.
+ * <p/>
+ * The history file is tab separated text, one test case per line:
+ * <code>testCase&lt;TAB&gt;runs&lt;TAB&gt;failures&lt;TAB&gt;failure rate&lt;TAB&gt;millis&lt;TAB&gt;last status</code>.
+ * The failure rate is a moving average of the outcomes that weighs recent runs most, so a test
+ * case fixed a while ago drifts back down the order.
+ */
+public class TestHistory
+{
+    private static final double DECAY = 0.7;
+    private static final double DEFAULT_MILLIS = 1000;
+
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+    public static TestHistory load(File file) throws IOException
+    {
+        TestHistory history = new TestHistory();
+        if (file == null || !file.isFile())
+        {
+            return history;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                String[] columns = line.split("\t");
+                if (columns.length < 6 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                try
+                {
+                    history.entries.put(columns[0], new Entry(Integer.parseInt(columns[1]), Integer.parseInt(columns[2]),
+                            Double.parseDouble(columns[3]), Double.parseDouble(columns[4]), TestResult.FAILED.equals(columns[5])));
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // a damaged line only costs us one test case's history
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return history;
+    }
+
+    /**
+     * @param millis the duration of all tests of the test case, or {@link TestResult#UNKNOWN}
+     *        to keep the one recorded
+     */
+    public void record(String testCase, boolean failed, double millis)
+    {
+        Entry entry = entries.get(testCase);
+        if (entry == null)
+        {
+            entry = new Entry(0, 0, 0, TestResult.UNKNOWN, false);
+        }
+        entries.put(testCase, new Entry(entry.runs + 1, entry.failures + (failed ? 1 : 0),
+                entry.failureRate * DECAY + (failed ? 1 - DECAY : 0), millis < 0 ? entry.millis : millis, failed));
+    }
+
+    /**
+     * @return the test cases that failed the last time they ran, likeliest to fail again first,
+     *         then those in {@code changed} or without a history, in the given order
+     */
+    public List<String> prioritize(List<String> testCases, Collection<String> changed)
+    {
+        List<String> failed = new ArrayList<String>();
+        List<String> fresh = new ArrayList<String>();
+        for (String testCase : testCases)
+        {
+            Entry entry = entries.get(testCase);
+            if (entry != null && entry.lastFailed)
+            {
+                failed.add(testCase);
+            }
+            else if (entry == null || changed.contains(testCase))
+            {
+                fresh.add(testCase);
+            }
+        }
+        Collections.sort(failed, new Comparator<String>()
+        {
+            public int compare(String left, String right)
+            {
+                return Double.compare(entries.get(right).failureRate, entries.get(left).failureRate);
+            }
+        });
+        failed.addAll(fresh);
+        return failed;
+    }
+
+    /**
+     * @return the test cases by failure rate per second of run time, highest first, those never
+     *         failing in the given order
+     */
+    public List<String> rank(List<String> testCases)
+    {
+        final double averageMillis = getAverageMillis();
+        List<String> ranked = new ArrayList<String>(testCases);
+        Collections.sort(ranked, new Comparator<String>()
+        {
+            public int compare(String left, String right)
+            {
+                return Double.compare(failuresPerSecond(right, averageMillis), failuresPerSecond(left, averageMillis));
+            }
+        });
+        return ranked;
+    }
+
+    public void write(File file) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Failed to create " + directory);
+        }
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try
+        {
+            writer.println("# testCase\truns\tfailures\tfailure rate\tmillis\tlast status");
+            for (Map.Entry<String, Entry> entry : entries.entrySet())
+            {
+                Entry value = entry.getValue();
+                writer.println(entry.getKey() + "\t" + value.runs + "\t" + value.failures + "\t"
+                        + String.format(Locale.ENGLISH, "%.4f\t%.2f\t", value.failureRate, value.millis)
+                        + (value.lastFailed ? TestResult.FAILED : TestResult.PASSED));
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private double failuresPerSecond(String testCase, double averageMillis)
+    {
+        Entry entry = entries.get(testCase);
+        if (entry == null)
+        {
+            return 0;
+        }
+        double millis = entry.millis < 0 ? averageMillis : entry.millis;
+        return entry.failureRate / Math.max(millis, 1) * 1000;
+    }
+
+    private double getAverageMillis()
+    {
+        double total = 0;
+        int count = 0;
+        for (Entry entry : entries.values())
+        {
+            if (entry.millis >= 0)
+            {
+                total += entry.millis;
+                count++;
+            }
+        }
+        return count == 0 ? DEFAULT_MILLIS : total / count;
+    }
+
+    private static class Entry
+    {
+        private final int runs;
+        private final int failures;
+        private final double failureRate;
+        private final double millis;
+        private final boolean lastFailed;
+
+        private Entry(int runs, int failures, double failureRate, double millis, boolean lastFailed)
+        {
+            this.runs = runs;
+            this.failures = failures;
+            this.failureRate = failureRate;
+            this.millis = millis;
+            this.lastFailed = lastFailed;
+        }
+    }
+}
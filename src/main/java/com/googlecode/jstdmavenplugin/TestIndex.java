@@ -0,0 +1,290 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Content hashes of the files named by a JsTD config, the test cases each test file declares
+ * and the results of the run that last passed with exactly these files.
+ * <p/>
+ * Comparing the index of the current tree with the one of the last passing run tells which
+ * test cases can have changed outcome. JavaScript has no imports to follow, and a test may
+ * depend on a <code>load:</code> file through any other, so a changed, added or removed
+ * <code>load:</code> file affects every test case. Only changes confined to test files narrow
+ * the run down to their test cases, and only when each of those files declares test cases the
+ * {@link TestCaseScanner} recognizes.
+ */
+public class TestIndex
+{
+    private static final int VERSION = 1;
+
+    private static final String CONFIG = "config";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    private TestRunnerResults results;
+
+    /**
+     * Hashes the config file and every file of its <code>load:</code> and <code>test:</code>
+     * sections, and scans the test files for test cases.
+     */
+    public static TestIndex build(JstdConfiguration configuration) throws IOException
+    {
+        TestIndex index = new TestIndex();
+        index.add(CONFIG, configuration.getFile(), Collections.<String>emptyList());
+        for (File file : configuration.getLoadFiles())
+        {
+            index.add(JstdConfiguration.LOAD, file, Collections.<String>emptyList());
+        }
+        TestCaseScanner scanner = new TestCaseScanner();
+        for (File file : configuration.getTestFiles())
+        {
+            index.add(JstdConfiguration.TEST, file, scanner.scan(file));
+        }
+        return index;
+    }
+
+    /**
+     * @return the index stored in {@code file}, or null if there is none or it is unreadable
+     */
+    public static TestIndex load(File file)
+    {
+        if (file == null || !file.isFile())
+        {
+            return null;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                if (in.readInt() != VERSION)
+                {
+                    return null;
+                }
+                TestIndex index = new TestIndex();
+                if (in.readBoolean())
+                {
+                    index.results = new TestRunnerResults(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                }
+                int entryCount = in.readInt();
+                for (int i = 0; i < entryCount; i++)
+                {
+                    String path = in.readUTF();
+                    String section = in.readUTF();
+                    String hash = in.readUTF();
+                    int testCaseCount = in.readInt();
+                    List<String> testCases = new ArrayList<String>(testCaseCount);
+                    for (int j = 0; j < testCaseCount; j++)
+                    {
+                        testCases.add(in.readUTF());
+                    }
+                    index.entries.put(path, new Entry(section, hash, testCases));
+                }
+                return index;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    public void write(File file) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Failed to create " + directory);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try
+        {
+            out.writeInt(VERSION);
+            out.writeBoolean(results != null);
+            if (results != null)
+            {
+                out.writeInt(results.getTotalTestsRun());
+                out.writeInt(results.getTotalTestsPassed());
+                out.writeInt(results.getTotalTestsFailed());
+                out.writeInt(results.getTotalTestsErrored());
+            }
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().section);
+                out.writeUTF(entry.getValue().hash);
+                out.writeInt(entry.getValue().testCases.size());
+                for (String testCase : entry.getValue().testCases)
+                {
+                    out.writeUTF(testCase);
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * @return all test cases declared by the test files, in config order
+     */
+    public List<String> getTestCases()
+    {
+        Set<String> testCases = new LinkedHashSet<String>();
+        for (Entry entry : entries.values())
+        {
+            testCases.addAll(entry.testCases);
+        }
+        return new ArrayList<String>(testCases);
+    }
+
+    /**
+     * @param previous the index of the last passing run, or null if there was none
+     * @return the test cases whose outcome the changes since {@code previous} can affect
+     */
+    public List<String> getAffectedTestCases(TestIndex previous)
+    {
+        if (previous == null)
+        {
+            return getTestCases();
+        }
+        for (Map.Entry<String, Entry> entry : entries.entrySet())
+        {
+            if (!JstdConfiguration.TEST.equals(entry.getValue().section) && isChanged(entry.getKey(), previous))
+            {
+                return getTestCases();
+            }
+        }
+        for (Map.Entry<String, Entry> entry : previous.entries.entrySet())
+        {
+            if (JstdConfiguration.LOAD.equals(entry.getValue().section) && !entries.containsKey(entry.getKey()))
+            {
+                return getTestCases();
+            }
+        }
+        Set<String> affected = new LinkedHashSet<String>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet())
+        {
+            if (isChanged(entry.getKey(), previous))
+            {
+                if (entry.getValue().testCases.isEmpty())
+                {
+                    // a describe() spec or a computed TestCase name, whatever it runs is unknown
+                    return getTestCases();
+                }
+                affected.addAll(entry.getValue().testCases);
+            }
+        }
+        return new ArrayList<String>(affected);
+    }
+
+    /**
+     * @param previous the index of the last passing run, or null if there was none
+     * @return whether every file is as it was in {@code previous}, none added or removed
+     */
+    public boolean isUnchanged(TestIndex previous)
+    {
+        if (previous == null || !entries.keySet().equals(previous.entries.keySet()))
+        {
+            return false;
+        }
+        for (String path : entries.keySet())
+        {
+            if (isChanged(path, previous))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public TestRunnerResults getResults()
+    {
+        return results;
+    }
+
+    public void setResults(TestRunnerResults results)
+    {
+        this.results = results;
+    }
+
+    private void add(String section, File file, List<String> testCases) throws IOException
+    {
+        entries.put(file.getAbsolutePath(), new Entry(section, hash(file), testCases));
+    }
+
+    private boolean isChanged(String path, TestIndex previous)
+    {
+        Entry before = previous.entries.get(path);
+        Entry now = entries.get(path);
+        return before == null || now == null || !before.hash.equals(now.hash) || !before.section.equals(now.section);
+    }
+
+    private static String hash(File file) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("MD5 is a required JVM algorithm", e);
+        }
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static class Entry
+    {
+        private final String section;
+        private final String hash;
+        private final List<String> testCases;
+
+        private Entry(String section, String hash, List<String> testCases)
+        {
+            this.section = section;
+            this.hash = hash;
+            this.testCases = testCases;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tests that failed and then passed when run again, and how often they did.
+ * <p/>
+ * The quarantine file is tab separated text, one test per line:
+ * <code>testCase.testName&lt;TAB&gt;flips&lt;TAB&gt;last flip</code>. A test that flipped
+ * <code>threshold</code> times is quarantined: its failures are reported but do not fail the
+ * build. Deleting its line releases it.
+ */
+public class TestQuarantine
+{
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+    private final int threshold;
+
+    public TestQuarantine(int threshold)
+    {
+        this.threshold = threshold;
+    }
+
+    public static TestQuarantine load(File file, int threshold) throws IOException
+    {
+        TestQuarantine quarantine = new TestQuarantine(threshold);
+        if (file == null || !file.isFile())
+        {
+            return quarantine;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                String[] columns = line.split("\t");
+                if (columns.length < 2 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                try
+                {
+                    quarantine.entries.put(columns[0],
+                            new Entry(Integer.parseInt(columns[1]), columns.length > 2 ? columns[2] : ""));
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // a damaged line only costs us one test's history
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return quarantine;
+    }
+
+    /**
+     * Records that {@code test} failed and then passed on a rerun.
+     */
+    public void recordFlip(String test)
+    {
+        Entry entry = entries.get(test);
+        String now = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date());
+        entries.put(test, new Entry(entry == null ? 1 : entry.flips + 1, now));
+    }
+
+    public boolean isQuarantined(String test)
+    {
+        Entry entry = entries.get(test);
+        return entry != null && entry.flips >= threshold;
+    }
+
+    public void write(File file) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Failed to create " + directory);
+        }
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try
+        {
+            writer.println("# test\tflips\tlast flip");
+            for (Map.Entry<String, Entry> entry : entries.entrySet())
+            {
+                writer.println(entry.getKey() + "\t" + entry.getValue().flips + "\t" + entry.getValue().lastFlip);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static class Entry
+    {
+        private final int flips;
+        private final String lastFlip;
+
+        private Entry(int flips, String lastFlip)
+        {
+            this.flips = flips;
+            this.lastFlip = lastFlip;
+        }
+    }
+}
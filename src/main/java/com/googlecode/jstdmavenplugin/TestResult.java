@@ -0,0 +1,67 @@
+package com.googlecode.jstdmavenplugin;
+
+/**
+ * The outcome of one test in one browser.
+ */
+public class TestResult
+{
+    public static final String PASSED = "passed";
+    public static final String FAILED = "failed";
+    public static final String ERROR = "error";
+
+    /**
+     * Duration of a test whose time was not reported.
+     */
+    public static final double UNKNOWN = -1;
+
+    private final String browser;
+    private final String testCase;
+    private final String testName;
+    private final String status;
+    private final double millis;
+
+    public TestResult(String browser, String testCase, String testName, String status, double millis)
+    {
+        this.browser = browser;
+        this.testCase = testCase;
+        this.testName = testName;
+        this.status = status;
+        this.millis = millis;
+    }
+
+    public String getBrowser()
+    {
+        return browser;
+    }
+
+    public String getTestCase()
+    {
+        return testCase;
+    }
+
+    public String getTestName()
+    {
+        return testName;
+    }
+
+    public String getStatus()
+    {
+        return status;
+    }
+
+    public double getMillis()
+    {
+        return millis;
+    }
+
+    public boolean hasDuration()
+    {
+        return millis >= 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return testCase + "." + testName;
+    }
+}
@@ -0,0 +1,145 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds per-test results from JsTestDriver output.
+ * <p/>
+ * The console only names the browser-less test and its status (the <code>--verbose</code>
+ * progress lines), and the duration of the tests that did not pass. The XML reports written
+ * under <code>--testOutput</code> have browser and duration of every test, and replace what
+ * the console said when they are read.
+ * <p/>
+ * Shards running at the same time may share one collector.
+ */
+public class TestResultCollector implements OutputListener
+{
+    private static final Pattern PROBLEM = Pattern.compile(
+            "\\s+(.+)\\.([^.\\s]+) (passed|failed|error) \\(([0-9.,]+) ms\\).*");
+
+    private final Map<String, TestResult> results = new LinkedHashMap<String, TestResult>();
+
+    public synchronized void onLine(String line)
+    {
+        // progress lines are split by hand and the rest prefiltered: with captureConsole
+        // most lines are logged output, and running a regex over each shows in the build time
+        String status = ResultsParser.progressStatus(line);
+        if (status != null)
+        {
+            String test = line.substring(status.length() + 3);
+            int dot = test.lastIndexOf('.');
+            if (dot > 0)
+            {
+                add(new TestResult("", test.substring(0, dot), test.substring(dot + 1), status.toLowerCase(),
+                        TestResult.UNKNOWN));
+            }
+            return;
+        }
+        if (!line.contains(" ms)"))
+        {
+            return;
+        }
+        Matcher matcher = PROBLEM.matcher(line);
+        if (matcher.matches())
+        {
+            add(new TestResult("", matcher.group(1), matcher.group(2), matcher.group(3),
+                    Double.parseDouble(matcher.group(4).replace(',', '.'))));
+        }
+    }
+
+    /**
+     * Reads the <code>TEST-*.xml</code> reports of {@code directory} written since
+     * {@code since}, replacing the console results of the tests they cover.
+     */
+    public synchronized void addXmlReports(File directory, final long since) throws Exception
+    {
+        File[] reports = directory.listFiles(new FileFilter()
+        {
+            public boolean accept(File file)
+            {
+                return file.getName().startsWith("TEST-") && file.getName().endsWith(".xml")
+                        && file.lastModified() >= since;
+            }
+        });
+        if (reports == null)
+        {
+            return;
+        }
+        Arrays.sort(reports);
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        for (File report : reports)
+        {
+            addXmlReport(builder.parse(report));
+        }
+    }
+
+    /**
+     * @return the results in the order the tests were first reported
+     */
+    public synchronized List<TestResult> getResults()
+    {
+        return new ArrayList<TestResult>(results.values());
+    }
+
+    private void addXmlReport(Document report)
+    {
+        NodeList testCases = report.getElementsByTagName("testcase");
+        for (int i = 0; i < testCases.getLength(); i++)
+        {
+            Element element = (Element) testCases.item(i);
+            String className = element.getAttribute("classname");
+            int dot = className.indexOf('.');
+            String browser = dot < 0 ? "" : className.substring(0, dot);
+            String testCase = dot < 0 ? className : className.substring(dot + 1);
+            String status = TestResult.PASSED;
+            if (element.getElementsByTagName("failure").getLength() > 0)
+            {
+                status = TestResult.FAILED;
+            }
+            else if (element.getElementsByTagName("error").getLength() > 0)
+            {
+                status = TestResult.ERROR;
+            }
+            double millis = TestResult.UNKNOWN;
+            try
+            {
+                millis = Double.parseDouble(element.getAttribute("time")) * 1000;
+            }
+            catch (NumberFormatException ignored)
+            {
+                // keep the test, without a duration
+            }
+            results.remove(key("", testCase, element.getAttribute("name")));
+            add(new TestResult(browser, testCase, element.getAttribute("name"), status, millis));
+        }
+    }
+
+    private void add(TestResult result)
+    {
+        String key = key(result.getBrowser(), result.getTestCase(), result.getTestName());
+        TestResult known = results.get(key);
+        if (known == null || !known.hasDuration())
+        {
+            results.put(key, result);
+        }
+    }
+
+    private static String key(String browser, String testCase, String testName)
+    {
+        return browser + "\t" + testCase + "\t" + testName;
+    }
+}
@@ -1,5 +1,6 @@
 package com.googlecode.jstdmavenplugin;
 
+import java.util.List;
 import java.util.regex.Matcher;
 
 /**
@@ -29,6 +30,19 @@ public class TestRunnerResults
                 Integer.parseInt(matcher.group(4)));
     }
 
+    public static TestRunnerResults merge(List<TestRunnerResults> results)
+    {
+        int run = 0, passed = 0, failed = 0, errored = 0;
+        for (TestRunnerResults result : results)
+        {
+            run += result.totalTestsRun;
+            passed += result.totalTestsPassed;
+            failed += result.totalTestsFailed;
+            errored += result.totalTestsErrored;
+        }
+        return new TestRunnerResults(run, passed, failed, errored);
+    }
+
     public boolean hasFailures()
     {
         return totalTestsFailed > 0 || totalTestsErrored > 0;
@@ -53,4 +67,4 @@ public class TestRunnerResults
     {
         return totalTestsErrored;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits test cases into shards of roughly equal run time.
+ * <p/>
+ * Test cases are handed out longest first, each to the shard with the least work so far.
+ * Test cases without history count as the average known duration, so without any timing
+ * file the shards simply get equal numbers of test cases.
+ */
+public class TestSharder
+{
+    public List<List<String>> shard(List<String> testCases, int shardCount, TestTimings timings)
+    {
+        final double defaultDuration = timings.isEmpty() ? 1 : Math.max(timings.getAverageTestCaseDuration(), 1);
+        final List<String> ordered = new ArrayList<String>(testCases);
+        final List<Double> durations = new ArrayList<Double>();
+        for (String testCase : testCases)
+        {
+            Double duration = timings.getTestCaseDuration(testCase);
+            durations.add(duration == null ? defaultDuration : duration);
+        }
+        List<Integer> indexes = new ArrayList<Integer>();
+        for (int i = 0; i < ordered.size(); i++)
+        {
+            indexes.add(i);
+        }
+        Collections.sort(indexes, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                int byDuration = Double.compare(durations.get(b), durations.get(a));
+                return byDuration != 0 ? byDuration : a.compareTo(b);
+            }
+        });
+
+        List<List<Integer>> assignments = new ArrayList<List<Integer>>();
+        double[] loads = new double[shardCount];
+        for (int i = 0; i < shardCount; i++)
+        {
+            assignments.add(new ArrayList<Integer>());
+        }
+        for (Integer index : indexes)
+        {
+            int lightest = 0;
+            for (int i = 1; i < shardCount; i++)
+            {
+                if (loads[i] < loads[lightest])
+                {
+                    lightest = i;
+                }
+            }
+            assignments.get(lightest).add(index);
+            loads[lightest] += durations.get(index);
+        }
+
+        List<List<String>> shards = new ArrayList<List<String>>();
+        for (List<Integer> assignment : assignments)
+        {
+            // keep the configured order inside each shard
+            Collections.sort(assignment);
+            List<String> shard = new ArrayList<String>();
+            for (Integer index : assignment)
+            {
+                shard.add(ordered.get(index));
+            }
+            shards.add(shard);
+        }
+        return shards;
+    }
+}
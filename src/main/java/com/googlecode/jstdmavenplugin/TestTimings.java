@@ -0,0 +1,87 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test durations recorded by an earlier run.
+ * <p/>
+ * The timing file is tab separated text, one test per line:
+ * <code>testCase&lt;TAB&gt;testName&lt;TAB&gt;milliseconds</code>. Further columns are ignored.
+ */
+public class TestTimings
+{
+    private final Map<String, Double> testCaseDurations = new HashMap<String, Double>();
+
+    public static TestTimings load(File file) throws IOException
+    {
+        TestTimings timings = new TestTimings();
+        if (file == null || !file.isFile())
+        {
+            return timings;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                String[] columns = line.split("\t");
+                if (columns.length < 3 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                try
+                {
+                    timings.add(columns[0], Double.parseDouble(columns[2]));
+                }
+                catch (NumberFormatException ignored)
+                {
+                    // a damaged line only costs us one test's history
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return timings;
+    }
+
+    public void add(String testCase, double millis)
+    {
+        Double current = testCaseDurations.get(testCase);
+        testCaseDurations.put(testCase, current == null ? millis : current + millis);
+    }
+
+    public boolean isEmpty()
+    {
+        return testCaseDurations.isEmpty();
+    }
+
+    /**
+     * @return the recorded duration of all tests of the test case, or null if unknown
+     */
+    public Double getTestCaseDuration(String testCase)
+    {
+        return testCaseDurations.get(testCase);
+    }
+
+    public double getAverageTestCaseDuration()
+    {
+        if (testCaseDurations.isEmpty())
+        {
+            return 0;
+        }
+        double total = 0;
+        for (Double duration : testCaseDurations.values())
+        {
+            total += duration;
+        }
+        return total / testCaseDurations.size();
+    }
+}
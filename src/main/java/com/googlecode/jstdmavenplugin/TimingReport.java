@@ -0,0 +1,145 @@
+package com.googlecode.jstdmavenplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes the durations of a run: the timing file {@link TestTimings} reads back, and a
+ * human readable list of the slowest tests.
+ */
+public class TimingReport
+{
+    /**
+     * A test case counts as slower once it takes twice as long as before, and at least
+     * 100 ms more so jitter in fast tests goes unnoticed.
+     */
+    private static final double REGRESSION_FACTOR = 2;
+    private static final double REGRESSION_MINIMUM_MILLIS = 100;
+
+    private final List<TestResult> timedResults = new ArrayList<TestResult>();
+
+    public TimingReport(List<TestResult> results)
+    {
+        for (TestResult result : results)
+        {
+            if (result.hasDuration())
+            {
+                timedResults.add(result);
+            }
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return timedResults.isEmpty();
+    }
+
+    public List<TestResult> getSlowest(int count)
+    {
+        List<TestResult> sorted = new ArrayList<TestResult>(timedResults);
+        Collections.sort(sorted, new Comparator<TestResult>()
+        {
+            public int compare(TestResult a, TestResult b)
+            {
+                return Double.compare(b.getMillis(), a.getMillis());
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    /**
+     * Writes one line per test: <code>testCase, testName, millis, browser, status</code>,
+     * tab separated.
+     */
+    public void writeTimings(File file) throws IOException
+    {
+        PrintWriter writer = open(file);
+        try
+        {
+            writer.println("# testCase\ttestName\tmillis\tbrowser\tstatus");
+            for (TestResult result : timedResults)
+            {
+                writer.println(result.getTestCase() + "\t" + result.getTestName() + "\t"
+                        + String.format(Locale.ENGLISH, "%.2f", result.getMillis()) + "\t"
+                        + result.getBrowser() + "\t" + result.getStatus());
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    public void writeSlowest(File file, int count) throws IOException
+    {
+        PrintWriter writer = open(file);
+        try
+        {
+            for (String line : formatSlowest(count))
+            {
+                writer.println(line);
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    public List<String> formatSlowest(int count)
+    {
+        List<String> lines = new ArrayList<String>();
+        for (TestResult result : getSlowest(count))
+        {
+            String browser = result.getBrowser().length() == 0 ? "" : " [" + result.getBrowser() + "]";
+            lines.add(String.format(Locale.ENGLISH, "%10.2f ms  %s%s (%s)", result.getMillis(), result, browser,
+                    result.getStatus()));
+        }
+        return lines;
+    }
+
+    /**
+     * @return a description of every test case that got markedly slower than in {@code previous}
+     */
+    public List<String> findRegressions(TestTimings previous)
+    {
+        Map<String, Double> durations = new LinkedHashMap<String, Double>();
+        for (TestResult result : timedResults)
+        {
+            Double duration = durations.get(result.getTestCase());
+            durations.put(result.getTestCase(), (duration == null ? 0 : duration) + result.getMillis());
+        }
+        List<String> regressions = new ArrayList<String>();
+        for (Map.Entry<String, Double> entry : durations.entrySet())
+        {
+            Double before = previous.getTestCaseDuration(entry.getKey());
+            double now = entry.getValue();
+            if (before != null && now > before * REGRESSION_FACTOR && now - before > REGRESSION_MINIMUM_MILLIS)
+            {
+                regressions.add(String.format(Locale.ENGLISH, "%s took %.2f ms, up from %.2f ms", entry.getKey(),
+                        now, before));
+            }
+        }
+        return regressions;
+    }
+
+    private static PrintWriter open(File file) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Failed to create " + directory);
+        }
+        return new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+}
@@ -0,0 +1,288 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a JsTestDriver server and the in-process runner warm and re-runs tests as files
+ * change, until the build is interrupted.
+ * <p/>
+ * The <code>load:</code>, <code>test:</code> and <code>exclude:</code> patterns of the config
+ * and the config itself are watched. Once a burst of changes has settled, only the test cases
+ * affected by the changed files run, the same selection <code>incremental</code> makes for the
+ * <code>test</code> goal. Results stream to the console as the tests report them.
+ *
+ * @goal watch
+ * @requiresProject false
+ */
+public class WatchMojo extends AbstractMojo {
+
+	/**
+	 * @parameter default-value="${project}"
+	 * @readonly
+	 */
+	private MavenProject mavenProject;
+
+	/**
+	 * @parameter expression="${jstd.jar}" default-value=""
+	 */
+	private String jar;
+
+	/**
+	 * @parameter expression="${jstd.basePath}" default-value=""
+	 */
+	private String basePath;
+
+	/**
+	 * @parameter expression="${jstd.config}" default-value="src/test/resources/jsTestDriver.conf"
+	 */
+	private String config = "src/test/resources/jsTestDriver.conf";
+
+	/**
+	 * Browsers to launch and capture when the server starts.
+	 *
+	 * @parameter expression="${jstd.browser}" default-value=""
+	 */
+	private String browser;
+
+	/**
+	 * Port of the server started by this goal, unless <code>server</code> is set.
+	 *
+	 * @parameter expression="${jstd.port}" default-value="9876"
+	 */
+	private int port = 9876;
+
+	/**
+	 * Runs the tests on this already running server instead of starting one.
+	 *
+	 * @parameter expression="${jstd.server}" default-value=""
+	 */
+	private String server;
+
+	/**
+	 * @parameter expression="${jstd.captureConsole}" default-value=true
+	 */
+	private boolean captureConsole = true;
+
+	/**
+	 * Milliseconds without further changes before a burst of changes triggers a run.
+	 *
+	 * @parameter expression="${jstd.debounce}" default-value="200"
+	 */
+	private long debounce = 200;
+
+	/**
+	 * Milliseconds between two scans of the watched files.
+	 *
+	 * @parameter expression="${jstd.pollInterval}" default-value="100"
+	 */
+	private long pollInterval = 100;
+
+	/**
+	 * @component role="org.apache.maven.artifact.factory.ArtifactFactory"
+	 * @required
+	 * @readonly
+	 */
+	protected ArtifactFactory artifactFactory;
+
+	/**
+	 * @component role="org.apache.maven.artifact.resolver.ArtifactResolver"
+	 * @required
+	 * @readonly
+	 */
+	protected ArtifactResolver artifactResolver;
+
+	/**
+	 * @parameter expression="${localRepository}"
+	 * @readonly
+	 * @required
+	 */
+	protected ArtifactRepository localRepository;
+
+	private final ProcessExecutor executor = new InProcessExecutor();
+	private final ResultsProcessor resultsProcessor = new ResultsProcessor();
+
+	public void execute() throws MojoExecutionException {
+		MojoLogger.bindLog(getLog());
+
+		File base = StringUtils.isNotEmpty(basePath) ? new File(basePath)
+				: mavenProject != null && mavenProject.getBasedir() != null ? mavenProject.getBasedir() : new File(".");
+		base = base.getAbsoluteFile();
+		File configFile = new File(config);
+		if (!configFile.isAbsolute()) {
+			configFile = new File(base, config);
+		}
+		if (!configFile.isFile()) {
+			throw new MojoExecutionException("Unable to locate config file: " + configFile);
+		}
+
+		String jarPath = resolveJar();
+		String serverUrl = StringUtils.isNotEmpty(server) ? server : startServer(jarPath);
+
+		FileWatcher watcher = new FileWatcher(pollInterval, debounce);
+		try {
+			watchConfiguredFiles(watcher, configFile, base);
+			watcher.start();
+		} catch (Exception e) {
+			throw new MojoExecutionException("Unable to watch the files of " + configFile, e);
+		}
+
+		try {
+			TestIndex previous = null;
+			TestIndex index = buildIndex(configFile, base);
+			if (index != null && run(jarPath, serverUrl, configFile, base, "all")) {
+				previous = index;
+			}
+			getLog().info("Watching the files of " + configFile + " for changes, press Ctrl-C to stop");
+			while (true) {
+				Set<File> changes = watcher.awaitChanges(0);
+				getLog().info(changes.size() + " file(s) changed: " + StringUtils.join(changes.iterator(), ", "));
+				if (changes.contains(configFile)) {
+					watcher.stop();
+					watcher = new FileWatcher(pollInterval, debounce);
+					watchConfiguredFiles(watcher, configFile, base);
+					watcher.start();
+				}
+				index = buildIndex(configFile, base);
+				if (index == null) {
+					continue;
+				}
+				List<String> affected = index.getAffectedTestCases(previous);
+				if (affected.isEmpty()) {
+					getLog().info("No test cases affected");
+					previous = index;
+					continue;
+				}
+				if (run(jarPath, serverUrl, configFile, base, StringUtils.join(affected, ","))) {
+					previous = index;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			throw new MojoExecutionException("Watching " + configFile + " failed", e);
+		} finally {
+			try {
+				watcher.stop();
+			} catch (Exception ignored) {
+				// stopping anyway
+			}
+		}
+	}
+
+	/**
+	 * Watches the root of every local pattern of the config, and the config itself.
+	 */
+	private void watchConfiguredFiles(FileWatcher watcher, File configFile, File base) throws IOException {
+		JstdConfiguration configuration = JstdConfiguration.parse(configFile, base);
+		List<GlobPattern> patterns = new ArrayList<GlobPattern>();
+		patterns.add(new GlobPattern(configFile.getParentFile(), configFile.getName()));
+		for (String section : new String[]{JstdConfiguration.LOAD, JstdConfiguration.TEST, JstdConfiguration.EXCLUDE}) {
+			for (String glob : configuration.getList(section)) {
+				if (!JstdConfiguration.isUrl(glob)) {
+					patterns.add(new GlobPattern(base, glob));
+				}
+			}
+		}
+		for (GlobPattern pattern : patterns) {
+			watcher.watch(pattern.getRoot(), pattern.toFileFilter());
+		}
+	}
+
+	private TestIndex buildIndex(File configFile, File base) {
+		try {
+			return TestIndex.build(JstdConfiguration.parse(configFile, base));
+		} catch (IOException e) {
+			getLog().error("Unable to index " + configFile + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if every test passed
+	 */
+	private boolean run(String jarPath, String serverUrl, File configFile, File base, String tests) {
+		JarProcessConfiguration configuration = new JarProcessConfiguration(jarPath);
+		configuration.addArgument("--server", serverUrl);
+		configuration.addArgument("--basePath", base.getPath());
+		configuration.addArgument("--config", configFile.getPath());
+		if (captureConsole) {
+			configuration.addArgument("--captureConsole");
+		}
+		configuration.addArgument("--tests", tests);
+		configuration.addArgument("--verbose");
+
+		long started = System.currentTimeMillis();
+		ResultsParser parser = resultsProcessor.createParser();
+		try {
+			executor.execute(configuration, parser);
+			TestRunnerResults results = resultsProcessor.extractResults(parser);
+			long elapsed = System.currentTimeMillis() - started;
+			String summary = String.format("%d tests run in %d ms: %d passed, %d failed, %d errors",
+					results.getTotalTestsRun(), elapsed, results.getTotalTestsPassed(),
+					results.getTotalTestsFailed(), results.getTotalTestsErrored());
+			if (results.hasFailures()) {
+				getLog().error(summary);
+				return false;
+			}
+			getLog().info(summary);
+			return true;
+		} catch (MojoExecutionException e) {
+			getLog().error(e.getMessage() + ", waiting for changes");
+			return false;
+		}
+	}
+
+	private String startServer(String jarPath) throws MojoExecutionException {
+		List<String> arguments = new ArrayList<String>();
+		arguments.add("--port");
+		arguments.add(String.valueOf(port));
+		if (StringUtils.isNotEmpty(browser)) {
+			arguments.add("--browser");
+			arguments.add(browser);
+		}
+		try {
+			if (new JstdLauncher(jarPath).serve(arguments, System.out) != 0) {
+				throw new MojoExecutionException("JsTestDriver server did not start on port " + port);
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to load JsTestDriver from " + jarPath, e);
+		}
+		final String serverUrl = "http://localhost:" + port;
+		Runtime.getRuntime().addShutdownHook(new Thread("jstd-watch-shutdown") {
+			@Override
+			public void run() {
+				JstdLauncher.quitServer(serverUrl, null);
+			}
+		});
+		getLog().info("JsTestDriver server started, capture browsers at " + serverUrl + "/capture");
+		return serverUrl;
+	}
+
+	private String resolveJar() throws MojoExecutionException {
+		if (StringUtils.isNotEmpty(jar)) {
+			return jar;
+		}
+		ResolutionCache cache = ResolutionCache.getInstance();
+		try {
+			return cache.getArtifactPath(new ArtifactLocator(artifactFactory, artifactResolver, localRepository),
+					cache.getJstdCoordinate(), localRepository == null ? "" : localRepository.getBasedir());
+		} catch (IOException ex) {
+			throw new MojoExecutionException("Error loading JSTD Coordinate from properties file.", ex);
+		} catch (ArtifactNotFoundException ex) {
+			throw new MojoExecutionException("Error resolving JSTD artifact in local repository.", ex);
+		}
+	}
+}
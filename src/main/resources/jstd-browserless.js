@@ -0,0 +1,292 @@
+/*
+ * The part of the JsTestDriver API pure logic tests use, for running them on the JVM's
+ * JavaScript engine: TestCase, the assertions and jstestdriver.console. Run by
+ * ScriptEngineExecutor, which reads the results through the reporter it binds as
+ * __jstdReporter.
+ */
+var jstestdriver = jstestdriver || {};
+
+(function(global) {
+
+    var testCases = [];
+
+    function AssertError(message) {
+        this.name = 'AssertError';
+        this.message = message;
+    }
+    AssertError.prototype = new Error();
+    AssertError.prototype.constructor = AssertError;
+
+    function declare(name, prototype, async) {
+        if (typeof name !== 'string' || !name) {
+            throw new Error('Test case name must be a non-empty string');
+        }
+        var testCase = function() {};
+        if (prototype) {
+            testCase.prototype = prototype;
+        }
+        testCases.push({ name: name, constructor: testCase, async: async });
+        return testCase;
+    }
+
+    global.TestCase = function(name, prototype) {
+        return declare(name, prototype, false);
+    };
+    global.ConditionalTestCase = function(name, condition, prototype) {
+        return condition() ? declare(name, prototype, false) : function() {};
+    };
+    global.AsyncTestCase = function(name, prototype) {
+        return declare(name, prototype, true);
+    };
+
+    function format(value) {
+        if (typeof value === 'string') {
+            return '"' + value + '"';
+        }
+        if (value instanceof Array) {
+            var items = [];
+            for (var i = 0; i < value.length; i++) {
+                items.push(format(value[i]));
+            }
+            return '[' + items.join(', ') + ']';
+        }
+        if (value && typeof value === 'object' && !(value instanceof Date) && !(value instanceof RegExp)) {
+            var fields = [];
+            for (var key in value) {
+                if (typeof value[key] !== 'function') {
+                    fields.push(key + ': ' + format(value[key]));
+                }
+            }
+            return '{' + fields.join(', ') + '}';
+        }
+        return String(value);
+    }
+
+    function equal(expected, actual) {
+        if (expected === actual) {
+            return true;
+        }
+        if (expected === null || actual === null || typeof expected !== 'object' || typeof actual !== 'object') {
+            // like JsTD, 1 equals "1" but null and undefined equal only themselves
+            return expected != null && actual != null && typeof expected !== 'object'
+                    && typeof actual !== 'object' && expected == actual;
+        }
+        if (expected instanceof Date || actual instanceof Date) {
+            return expected instanceof Date && actual instanceof Date && expected.getTime() === actual.getTime();
+        }
+        if ((expected instanceof Array) !== (actual instanceof Array)) {
+            return false;
+        }
+        var key;
+        for (key in expected) {
+            if (!(key in actual) || !equal(expected[key], actual[key])) {
+                return false;
+            }
+        }
+        for (key in actual) {
+            if (!(key in expected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Takes the arguments of an assertion, whose optional message comes first.
+     */
+    function args(values, count) {
+        var list = Array.prototype.slice.call(values);
+        var message = list.length > count ? list.shift() + ' ' : '';
+        return { message: message, values: list };
+    }
+
+    function check(condition, message) {
+        if (!condition) {
+            throw new AssertError(message);
+        }
+        return true;
+    }
+
+    global.fail = function(message) {
+        throw new AssertError(message);
+    };
+    global.assert = global.assertTrue = function() {
+        var a = args(arguments, 1);
+        return check(a.values[0] === true, a.message + 'expected true but was ' + format(a.values[0]));
+    };
+    global.assertFalse = function() {
+        var a = args(arguments, 1);
+        return check(a.values[0] === false, a.message + 'expected false but was ' + format(a.values[0]));
+    };
+    global.assertEquals = function() {
+        var a = args(arguments, 2);
+        return check(equal(a.values[0], a.values[1]),
+                a.message + 'expected ' + format(a.values[0]) + ' but was ' + format(a.values[1]));
+    };
+    global.assertNotEquals = function() {
+        var a = args(arguments, 2);
+        return check(!equal(a.values[0], a.values[1]),
+                a.message + 'expected ' + format(a.values[0]) + ' not to be equal to ' + format(a.values[1]));
+    };
+    global.assertSame = function() {
+        var a = args(arguments, 2);
+        return check(a.values[0] === a.values[1],
+                a.message + 'expected ' + format(a.values[0]) + ' but was ' + format(a.values[1]));
+    };
+    global.assertNotSame = function() {
+        var a = args(arguments, 2);
+        return check(a.values[0] !== a.values[1],
+                a.message + 'expected not same as ' + format(a.values[0]) + ' but was ' + format(a.values[1]));
+    };
+    global.assertNull = function() {
+        var a = args(arguments, 1);
+        return check(a.values[0] === null, a.message + 'expected null but was ' + format(a.values[0]));
+    };
+    global.assertNotNull = function() {
+        var a = args(arguments, 1);
+        return check(a.values[0] !== null, a.message + 'expected not null but was null');
+    };
+    global.assertUndefined = function() {
+        var a = args(arguments, 1);
+        return check(typeof a.values[0] === 'undefined', a.message + 'expected undefined but was ' + format(a.values[0]));
+    };
+    global.assertNotUndefined = function() {
+        var a = args(arguments, 1);
+        return check(typeof a.values[0] !== 'undefined', a.message + 'expected not undefined but was undefined');
+    };
+    global.assertNaN = function() {
+        var a = args(arguments, 1);
+        return check(isNaN(a.values[0]), a.message + 'expected NaN but was ' + format(a.values[0]));
+    };
+    global.assertNotNaN = function() {
+        var a = args(arguments, 1);
+        return check(!isNaN(a.values[0]), a.message + 'expected not NaN but was NaN');
+    };
+    global.assertTypeOf = function() {
+        var a = args(arguments, 2);
+        return check(typeof a.values[1] === a.values[0],
+                a.message + 'expected to be ' + a.values[0] + ' but was ' + typeof a.values[1]);
+    };
+    function typeAssertion(type) {
+        return function() {
+            var a = args(arguments, 1);
+            return check(typeof a.values[0] === type,
+                    a.message + 'expected to be ' + type + ' but was ' + typeof a.values[0]);
+        };
+    }
+    global.assertBoolean = typeAssertion('boolean');
+    global.assertFunction = typeAssertion('function');
+    global.assertNumber = typeAssertion('number');
+    global.assertObject = typeAssertion('object');
+    global.assertString = typeAssertion('string');
+    global.assertArray = function() {
+        var a = args(arguments, 1);
+        return check(a.values[0] instanceof Array, a.message + 'expected to be array but was ' + format(a.values[0]));
+    };
+    global.assertInstanceOf = function() {
+        var a = args(arguments, 2);
+        return check(a.values[1] instanceof a.values[0], a.message + 'expected ' + format(a.values[1])
+                + ' to be an instance of ' + (a.values[0] && a.values[0].name || a.values[0]));
+    };
+    global.assertNotInstanceOf = function() {
+        var a = args(arguments, 2);
+        return check(!(a.values[1] instanceof a.values[0]), a.message + 'expected ' + format(a.values[1])
+                + ' not to be an instance of ' + (a.values[0] && a.values[0].name || a.values[0]));
+    };
+    global.assertMatch = function() {
+        var a = args(arguments, 2);
+        return check(a.values[0].test(a.values[1]), a.message + format(a.values[1]) + ' did not match ' + a.values[0]);
+    };
+    global.assertNoMatch = function() {
+        var a = args(arguments, 2);
+        return check(!a.values[0].test(a.values[1]), a.message + format(a.values[1]) + ' matched ' + a.values[0]);
+    };
+    global.assertException = function() {
+        var a = args(arguments, 1);
+        var callback = typeof arguments[0] === 'function' ? arguments[0] : arguments[1];
+        var type = typeof arguments[0] === 'function' ? arguments[1] : arguments[2];
+        a.message = typeof arguments[0] === 'function' ? '' : arguments[0] + ' ';
+        try {
+            callback();
+        } catch (e) {
+            return check(!type || e.name === type,
+                    a.message + 'expected to throw ' + type + ' but threw ' + e.name);
+        }
+        throw new AssertError(a.message + 'expected to throw ' + (type || 'an exception'));
+    };
+    global.assertNoException = function() {
+        var a = args(arguments, 1);
+        try {
+            a.values[0]();
+        } catch (e) {
+            throw new AssertError(a.message + 'expected not to throw but threw ' + e.name + ': ' + e.message);
+        }
+        return true;
+    };
+
+    var reporter = global.__jstdReporter;
+
+    function log(level) {
+        return function() {
+            reporter.log(level, Array.prototype.slice.call(arguments).join(' '));
+        };
+    }
+    jstestdriver.console = {
+        log: log('LOG'), debug: log('DEBUG'), info: log('INFO'), warn: log('WARN'), error: log('ERROR')
+    };
+    if (typeof global.console === 'undefined') {
+        global.console = jstestdriver.console;
+    }
+
+    function describe(e) {
+        if (e && e.name && e.message !== undefined) {
+            var head = e.name + ': ' + e.message;
+            if (typeof e.stack === 'string' && e.stack.indexOf(head) === 0) {
+                return e.stack;
+            }
+            return head + (e.stack ? '\n' + e.stack : '');
+        }
+        return String(e);
+    }
+
+    /*
+     * Runs every test the reporter accepts, each on a fresh instance of its test case.
+     */
+    jstestdriver.runBrowserless = function() {
+        for (var i = 0; i < testCases.length; i++) {
+            var testCase = testCases[i];
+            var prototype = testCase.constructor.prototype;
+            for (var test in prototype) {
+                if (test.indexOf('test') !== 0 || typeof prototype[test] !== 'function'
+                        || !reporter.accepts(testCase.name, test)) {
+                    continue;
+                }
+                reporter.started();
+                if (testCase.async) {
+                    reporter.result(testCase.name, test, 'error', 'AsyncTestCase needs a browser');
+                    continue;
+                }
+                var instance = new testCase.constructor();
+                try {
+                    if (typeof instance.setUp === 'function') {
+                        instance.setUp();
+                    }
+                    instance[test]();
+                    if (typeof instance.tearDown === 'function') {
+                        instance.tearDown();
+                    }
+                    reporter.result(testCase.name, test, 'passed', '');
+                } catch (e) {
+                    try {
+                        if (typeof instance.tearDown === 'function') {
+                            instance.tearDown();
+                        }
+                    } catch (ignored) {
+                        // the first failure is the one reported
+                    }
+                    reporter.result(testCase.name, test, e instanceof AssertError ? 'failed' : 'error', describe(e));
+                }
+            }
+        }
+    };
+})(this);
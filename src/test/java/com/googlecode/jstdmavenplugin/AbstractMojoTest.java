@@ -31,6 +31,15 @@ public abstract class AbstractMojoTest {
         field.set(mojo, object);
     }
 
+    protected Object getField(JsTestDriverMojo mojo, String fieldName) throws
+            NoSuchFieldException,
+            IllegalAccessException
+    {
+        Field field = mojo.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        return field.get(mojo);
+    }
+
     protected MavenProject getMockMavenProject(JsTestDriverMojo mojo) throws
             NoSuchFieldException,
             IllegalAccessException
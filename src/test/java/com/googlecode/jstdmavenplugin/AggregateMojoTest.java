@@ -0,0 +1,180 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class AggregateMojoTest
+{
+    private ProcessExecutor executor;
+    private AggregateMojo mojo;
+    private File root;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        executor = mock(ProcessExecutor.class);
+        mojo = new AggregateMojo(executor);
+        root = new File(".").getAbsoluteFile();
+        setField("jar", "test/resources/jstestdriver-1.X.jar");
+        setField("server", "http://localhost:4224");
+        ReactorResults.getInstance().clear();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        ReactorResults.getInstance().clear();
+    }
+
+    public void shouldReadTheConfigOfEachModuleFromItsPom() throws Exception
+    {
+        MavenProject module = project("greeter", root, "config", "${basedir}/src/test/resources/jsTestDriver.conf",
+                "basePath", "src/main/js");
+
+        AggregateMojo.Module described = AggregateMojo.Module.describe(module);
+
+        assertEquals(described.name, "greeter");
+        assertEquals(described.config, new File(root, "src/test/resources/jsTestDriver.conf"));
+        assertEquals(described.basePath, new File(root, "src/main/js"));
+        assertEquals(described.reportsDirectory, new File(root, "target/surefire-reports"));
+        assertNull(AggregateMojo.Module.describe(project("skipped", root, "skipTests", "true")));
+        assertNull(AggregateMojo.Module.describe(mock(MavenProject.class)));
+    }
+
+    public void shouldRunEveryModuleOnOneServerAndLeaveTheResultsToTheModules() throws Exception
+    {
+        File other = new File(root, "src/test");
+        setField("reactorProjects", Arrays.asList(
+                project("greeter", root, "config", "src/test/resources/jsTestDriver.conf"),
+                mock(MavenProject.class),
+                project("stack", other, "config", "resources/jsTestDriver.conf")));
+        doAnswer(printing("Total 2 tests (Passed: 2; Fails: 0; Errors: 0) (2.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        mojo.execute();
+
+        ArgumentCaptor<ProcessConfiguration> configurations = ArgumentCaptor.forClass(ProcessConfiguration.class);
+        verify(executor, times(2)).execute(configurations.capture(), any(OutputListener.class));
+        String command = configurations.getAllValues().get(1).getFullCommand().toString();
+        assertTrue(command.contains("--server, http://localhost:4224"), command);
+        assertTrue(command.contains("--basePath, " + other.getPath()), command);
+        assertEquals(ReactorResults.getInstance().take(root).getTotalTestsPassed(), 2);
+        assertEquals(ReactorResults.getInstance().take(other).getTotalTestsPassed(), 2);
+    }
+
+    public void shouldFailNamingOnlyTheFailingModules() throws Exception
+    {
+        File other = new File(root, "src/test");
+        setField("reactorProjects", Arrays.asList(
+                project("greeter", root, "config", "src/test/resources/jsTestDriver.conf"),
+                project("stack", other, "config", "resources/jsTestDriver.conf")));
+        doAnswer(printing("Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (2.00 ms)"))
+                .doAnswer(printing("Total 1 tests (Passed: 0; Fails: 1; Errors: 0) (2.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        try
+        {
+            mojo.execute();
+            fail("Expected the failing module to fail the goal");
+        }
+        catch (MojoExecutionException e)
+        {
+            assertEquals(e.getMessage(), "JavaScript tests failed in stack");
+        }
+    }
+
+    public void shouldLeaveFailuresToTheModulesWhenDeferring() throws Exception
+    {
+        setField("deferFailures", true);
+        setField("reactorProjects", Arrays.asList(
+                project("greeter", root, "config", "src/test/resources/jsTestDriver.conf")));
+        doAnswer(printing("Total 1 tests (Passed: 0; Fails: 1; Errors: 0) (2.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        mojo.execute();
+
+        assertTrue(ReactorResults.getInstance().take(root).hasFailures());
+    }
+
+    public void shouldLeaveModulesWithUnparseableResultsToTheirTestGoal() throws Exception
+    {
+        setField("reactorProjects", Arrays.asList(
+                project("greeter", root, "config", "src/test/resources/jsTestDriver.conf")));
+        doAnswer(printing("Failed to connect to the server"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        mojo.execute();
+
+        assertNull(ReactorResults.getInstance().take(root));
+    }
+
+    private MavenProject project(String name, File basedir, String... settings)
+    {
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        for (int i = 0; i < settings.length; i += 2)
+        {
+            Xpp3Dom setting = new Xpp3Dom(settings[i]);
+            setting.setValue(settings[i + 1]);
+            configuration.addChild(setting);
+        }
+        Plugin plugin = new Plugin();
+        plugin.setConfiguration(configuration);
+        Build build = new Build();
+        build.setDirectory(new File(basedir, "target").getPath());
+
+        MavenProject project = mock(MavenProject.class);
+        when(project.getArtifactId()).thenReturn(name);
+        when(project.getBasedir()).thenReturn(basedir);
+        when(project.getBuild()).thenReturn(build);
+        when(project.getPlugin(AggregateMojo.PLUGIN_KEY)).thenReturn(plugin);
+        return project;
+    }
+
+    private Answer<Void> printing(final String... lines)
+    {
+        return new Answer<Void>()
+        {
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                OutputListener listener = (OutputListener) invocation.getArguments()[1];
+                for (String line : lines)
+                {
+                    listener.onLine(line);
+                }
+                return null;
+            }
+        };
+    }
+
+    private void setField(String name, Object value) throws Exception
+    {
+        Field field = AggregateMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+}
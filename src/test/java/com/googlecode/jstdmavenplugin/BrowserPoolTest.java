@@ -0,0 +1,108 @@
+package com.googlecode.jstdmavenplugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class BrowserPoolTest
+{
+    private File profiles;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        profiles = File.createTempFile("browsers", "");
+        profiles.delete();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(profiles);
+    }
+
+    public void shouldRunChromeAndFirefoxHeadlessWithAProfileEach()
+    {
+        File profile = new File(profiles, "0");
+
+        assertEquals(BrowserPool.buildCommand(Arrays.asList("/usr/bin/chromium", "--no-sandbox"), profile, "http://localhost:9876/capture"),
+                Arrays.asList("/usr/bin/chromium", "--headless", "--disable-gpu", "--no-first-run",
+                        "--no-default-browser-check", "--remote-debugging-port=0",
+                        "--user-data-dir=" + profile.getAbsolutePath(), "--no-sandbox", "http://localhost:9876/capture"));
+        assertEquals(BrowserPool.buildCommand(Arrays.asList("firefox"), profile, "http://localhost:9876/capture"),
+                Arrays.asList("firefox", "-headless", "-no-remote", "-profile", profile.getAbsolutePath(),
+                        "http://localhost:9876/capture"));
+        assertEquals(BrowserPool.buildCommand(Arrays.asList("phantomjs", "capture.js"), profile, "http://localhost:9876/capture"),
+                Arrays.asList("phantomjs", "capture.js", "http://localhost:9876/capture"));
+    }
+
+    public void shouldCountTheListedBrowsers()
+    {
+        assertEquals(BrowserPool.countBrowsers("[]"), 0);
+        assertEquals(BrowserPool.countBrowsers("[{\"id\":1,\"name\":\"Chrome {headless}\",\"os\":{\"a\":[1]}},"
+                + "{\"id\":2,\"name\":\"Fire\\\"fox\"}]"), 2);
+    }
+
+    public void shouldAskTheServerForCapturedBrowsers() throws Exception
+    {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/cmd", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                byte[] body = ("listBrowsers".equals(exchange.getRequestURI().getQuery())
+                        ? "[{\"id\":1},{\"id\":2}]" : "").getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        try
+        {
+            assertEquals(BrowserPool.capturedBrowsers("http://localhost:" + server.getAddress().getPort() + "/"), 2);
+        }
+        finally
+        {
+            server.stop(0);
+        }
+        assertEquals(BrowserPool.capturedBrowsers("http://localhost:" + server.getAddress().getPort()), -1);
+    }
+
+    public void shouldRelaunchADeadBrowserUntilGivingUp() throws Exception
+    {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        File profile = new File(profiles, "browser");
+        BrowserPool pool = new BrowserPool(Arrays.asList("sh", "-c", "exit 3"), "http://localhost:1",
+                profile, new PrintStream(log, true));
+        pool.start();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!log.toString().contains("not launching it again") && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(50);
+            pool.check();
+        }
+
+        assertTrue(log.toString().contains("Pooled browser exited with 3"), log.toString());
+        assertFalse(pool.check(), log.toString());
+        assertTrue(profile.isDirectory());
+    }
+}
@@ -0,0 +1,107 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ConsoleWriterTest
+{
+    private ByteArrayOutputStream console;
+    private File spillFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        console = new ByteArrayOutputStream();
+        spillFile = File.createTempFile("console", ".log");
+        spillFile.delete();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        spillFile.delete();
+    }
+
+    public void shouldPrintEveryLineInOrder() throws Exception
+    {
+        ConsoleWriter writer = new ConsoleWriter("test", new PrintStream(console), 0, new ConsoleSpill(spillFile));
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+        {
+            writer.println("line " + i);
+            expected.append("line ").append(i).append('\n');
+        }
+        writer.close();
+
+        assertEquals(console.toString(), expected.toString());
+        assertFalse(spillFile.exists());
+    }
+
+    public void shouldSpillLinesBeyondTheLimit() throws Exception
+    {
+        ConsoleWriter writer = new ConsoleWriter("test", new PrintStream(console), 10, new ConsoleSpill(spillFile));
+        writer.println("first");
+        writer.println("second");
+        writer.println("third");
+        writer.close();
+
+        assertEquals(console.toString(), "first\nLines of JsTestDriver output not shown: 2, see " + spillFile + "\n");
+        assertEquals(org.apache.commons.io.FileUtils.readFileToString(spillFile, "UTF-8"), "second\nthird\n");
+    }
+
+    public void shouldSpillBothStreamsToOneFileLineByLine() throws Exception
+    {
+        org.apache.commons.io.FileUtils.writeStringToFile(spillFile, "left by an earlier execution\n", "UTF-8");
+        ConsoleSpill spill = new ConsoleSpill(spillFile);
+        final ConsoleWriter out = new ConsoleWriter("out", new PrintStream(console), 1, spill);
+        final ConsoleWriter err = new ConsoleWriter("err", new PrintStream(console), 1, spill);
+        Thread other = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < 2000; i++)
+                {
+                    err.println("stderr line " + i);
+                }
+            }
+        };
+        other.start();
+        for (int i = 0; i < 2000; i++)
+        {
+            out.println("stdout line " + i);
+        }
+        other.join();
+        out.close();
+        err.close();
+        spill.close();
+
+        List<String> lines = org.apache.commons.io.FileUtils.readLines(spillFile, "UTF-8");
+        assertEquals(lines.size(), 4000);
+        for (String line : lines)
+        {
+            assertTrue(line.matches("std(out|err) line [0-9]+"), line);
+        }
+    }
+
+    public void shouldDropLinesBeyondTheLimitWithoutSpillFile() throws Exception
+    {
+        ConsoleWriter writer = new ConsoleWriter("test", new PrintStream(console), 10, null);
+        writer.println("first");
+        writer.println("second");
+        writer.close();
+
+        assertEquals(console.toString(), "first\nLines of JsTestDriver output not shown: 1\n");
+    }
+}
@@ -0,0 +1,182 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class FileManifestTest
+{
+    private static final String CONFIG = "server: http://localhost:9876\n"
+            + "load:\n"
+            + "  - http://example.com/remote.js\n"
+            + "  - src/main/js/lib/b.js\n"
+            + "  - src/main/**/*.js\n"
+            + "test:\n"
+            + "  - src/test/js/*.js  # tests\n"
+            + "exclude:\n"
+            + "  - src/main/js/lib/skip.js\n"
+            + "plugin:\n"
+            + "  - name: coverage\n"
+            + "    jar: lib/coverage.jar\n";
+
+    private File base;
+    private File manifestFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        base = File.createTempFile("jstd", "");
+        base.delete();
+        manifestFile = new File(base, "target/manifest.bin");
+        touch("src/main/js/a.js");
+        touch("src/main/js/lib/b.js");
+        touch("src/main/js/lib/skip.js");
+        touch("src/test/js/aTest.js");
+        touch("src/test/js/notes.txt");
+        touch("node_modules/big/index.js");
+        write("jsTestDriver.conf", CONFIG);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(base);
+    }
+
+    public void shouldExpandLikeEachPatternOnItsOwn() throws Exception
+    {
+        FileManifest manifest = FileManifest.build(parse());
+
+        assertEquals(manifest.getFiles(JstdConfiguration.LOAD),
+                Arrays.asList(file("src/main/js/lib/b.js"), file("src/main/js/a.js")));
+        assertEquals(manifest.getFiles(JstdConfiguration.TEST), Arrays.asList(file("src/test/js/aTest.js")));
+        assertEquals(manifest.getFiles(JstdConfiguration.EXCLUDE), Arrays.asList(file("src/main/js/lib/skip.js")));
+    }
+
+    public void shouldExpandPatternsClimbingOutOfTheBasePath() throws Exception
+    {
+        File project = file("project");
+        touch("lib/dep.js");
+        touch("project/t.js");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(project, "jsTestDriver.conf"),
+                "load:\n  - ../lib/*.js\n  - ./../lib/dep.js\ntest:\n  - t.js\n", "UTF-8");
+
+        FileManifest manifest = FileManifest.build(JstdConfiguration.parse(new File(project, "jsTestDriver.conf"), project));
+
+        assertEquals(manifest.getFiles(JstdConfiguration.LOAD), Arrays.asList(file("lib/dep.js")));
+        assertEquals(manifest.getFiles(JstdConfiguration.TEST), Arrays.asList(file("project/t.js")));
+    }
+
+    public void shouldListEachDirectoryOnce() throws Exception
+    {
+        FileManifest manifest = FileManifest.build(parse());
+
+        // src/main, src/main/js, src/main/js/lib and src/test/js, not node_modules
+        assertEquals(manifest.getDirectoryCount(), 4);
+    }
+
+    public void shouldReuseStoredManifestWhileDirectoriesAreUnchanged() throws Exception
+    {
+        ageTree();
+
+        FileManifest stored = FileManifest.load(manifestFile, parse());
+
+        assertNotNull(stored);
+        assertEquals(stored.getFiles(JstdConfiguration.TEST), Arrays.asList(file("src/test/js/aTest.js")));
+    }
+
+    public void shouldDiscardStoredManifestOnceAFileIsAdded() throws Exception
+    {
+        ageTree();
+        touch("src/test/js/bTest.js");
+
+        assertNull(FileManifest.load(manifestFile, parse()));
+    }
+
+    public void shouldDiscardStoredManifestOfRecentlyChangedDirectories() throws Exception
+    {
+        FileManifest.build(parse()).write(manifestFile);
+
+        assertNull(FileManifest.load(manifestFile, parse()));
+    }
+
+    public void shouldWriteConfigListingTheMatchedFiles() throws Exception
+    {
+        File expanded = new File(base, "target/jsTestDriver.conf");
+
+        FileManifest.build(parse()).writeConfig(expanded);
+
+        assertEquals(org.apache.commons.io.FileUtils.readFileToString(expanded, "UTF-8"),
+                "server: http://localhost:9876\n"
+                + "load:\n"
+                + "  - http://example.com/remote.js\n"
+                + "  - src/main/js/lib/b.js\n"
+                + "  - src/main/js/a.js\n"
+                + "test:\n"
+                + "  - src/test/js/aTest.js\n"
+                + "plugin:\n"
+                + "  - name: coverage\n"
+                + "    jar: lib/coverage.jar\n");
+    }
+
+    public void shouldListTheLoadedFilesAsUrlsOfTheStaticServer() throws Exception
+    {
+        File expanded = new File(base, "target/jsTestDriver.conf");
+
+        FileManifest.build(parse()).writeConfig(expanded, "http://localhost:4321/0/");
+
+        String config = org.apache.commons.io.FileUtils.readFileToString(expanded, "UTF-8");
+        assertTrue(config.contains("load:\n"
+                + "  - http://example.com/remote.js\n"
+                + "  - http://localhost:4321/0/src/main/js/lib/b.js\n"
+                + "  - http://localhost:4321/0/src/main/js/a.js\n"
+                + "test:\n"
+                + "  - src/test/js/aTest.js\n"), config);
+    }
+
+    private JstdConfiguration parse() throws Exception
+    {
+        return JstdConfiguration.parse(file("jsTestDriver.conf"), base);
+    }
+
+    /**
+     * Moves the tree back in time, past the timestamp resolution, and stores its manifest.
+     */
+    private void ageTree() throws Exception
+    {
+        long past = System.currentTimeMillis() - 60000;
+        for (File file : org.apache.commons.io.FileUtils.listFilesAndDirs(base,
+                org.apache.commons.io.filefilter.TrueFileFilter.TRUE, org.apache.commons.io.filefilter.TrueFileFilter.TRUE))
+        {
+            if (!file.equals(manifestFile))
+            {
+                file.setLastModified(past);
+            }
+        }
+        FileManifest.build(parse()).write(manifestFile);
+    }
+
+    private File file(String path)
+    {
+        return new File(base, path);
+    }
+
+    private void touch(String path) throws Exception
+    {
+        org.apache.commons.io.FileUtils.touch(file(path));
+    }
+
+    private void write(String path, String content) throws Exception
+    {
+        org.apache.commons.io.FileUtils.writeStringToFile(file(path), content, "UTF-8");
+    }
+}
@@ -0,0 +1,72 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class FileWatcherTest
+{
+    private File base;
+    private FileWatcher watcher;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        base = File.createTempFile("jstd", "");
+        base.delete();
+        write("src/greeter.js", "function greet() {}");
+        write("target/generated.js", "function generated() {}");
+        GlobPattern pattern = new GlobPattern(base, "src/**/*.js");
+        watcher = new FileWatcher(20, 50);
+        watcher.watch(pattern.getRoot(), pattern.toFileFilter());
+        watcher.start();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        watcher.stop();
+        org.apache.commons.io.FileUtils.deleteDirectory(base);
+    }
+
+    public void shouldReportCreatedFile() throws Exception
+    {
+        File created = write("src/nested/util.js", "function util() {}");
+
+        assertEquals(watcher.awaitChanges(5000), Collections.singleton(created));
+    }
+
+    public void shouldReportBurstOnce() throws Exception
+    {
+        File first = write("src/a.js", "a");
+        File second = write("src/b.js", "b");
+
+        Set<File> changes = watcher.awaitChanges(5000);
+
+        assertTrue(changes.contains(first) && changes.contains(second), changes.toString());
+        assertTrue(watcher.awaitChanges(200).isEmpty());
+    }
+
+    public void shouldIgnoreFilesOutsideThePattern() throws Exception
+    {
+        write("target/other.js", "other");
+        write("src/notes.txt", "notes");
+
+        assertTrue(watcher.awaitChanges(300).isEmpty());
+    }
+
+    private File write(String path, String content) throws Exception
+    {
+        File file = new File(base, path);
+        org.apache.commons.io.FileUtils.writeStringToFile(file, content, "UTF-8");
+        return file;
+    }
+}
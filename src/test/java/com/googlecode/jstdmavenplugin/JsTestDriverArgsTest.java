@@ -9,10 +9,12 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.net.ServerSocket;
 
 import static com.googlecode.jstdmavenplugin.matchers.ExecutorCalledWithMatcher.wasCalledWith;
 import static com.googlecode.jstdmavenplugin.matchers.ExecutorNotCalledWithMatcher.wasNotCalledWith;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -37,6 +39,7 @@ public class JsTestDriverArgsTest extends AbstractMojoTest {
 	@BeforeMethod
 	public void setUp() throws Exception {
 		ResultsProcessor processor = mock(ResultsProcessor.class);
+		when(processor.extractResults(any(ResultsParser.class))).thenReturn(new TestRunnerResults(1, 1, 0, 0));
 		executor = mock(StreamingProcessExecutor.class);
 		artifactResolver = mock(ArtifactResolver.class);
 		artifact = mock(Artifact.class);
@@ -93,6 +96,20 @@ public class JsTestDriverArgsTest extends AbstractMojoTest {
 		assertThat(executor, wasCalledWith(projessConfigArgCaptor, String.format("--config %s/%s", basedir.getAbsolutePath(), path)));
 	}
 
+	public void shouldPassAlongExpandedConfigIfRequested() throws Exception {
+		File manifestDirectory = File.createTempFile("jstd", "");
+		manifestDirectory.delete();
+		try {
+			setField(mojo, "expandConfig", true);
+			setField(mojo, "manifestFile", new File(manifestDirectory, "manifest.bin"));
+			mojo.execute();
+			assertThat(executor, wasCalledWith(projessConfigArgCaptor,
+					"--config " + new File(manifestDirectory, "jsTestDriver.conf").getPath()));
+		} finally {
+			org.apache.commons.io.FileUtils.deleteDirectory(manifestDirectory);
+		}
+	}
+
 //    public void shouldPassAlongAbsoluteConfig() throws Exception {
 //        String path = "/abs/path/to/config.txt";
 //        setField(mojo, "config", path);
@@ -160,6 +177,39 @@ public class JsTestDriverArgsTest extends AbstractMojoTest {
 		assertThat(executor, wasCalledWith(projessConfigArgCaptor, "--server http://localhost:9999"));
 	}
 
+	public void shouldUseLeasedServerInsteadOfStartingOne() throws Exception {
+		ServerSocket socket = new ServerSocket(0);
+		File leaseFile = File.createTempFile("jstd", ".lease");
+		try {
+			new ServerLease(leaseFile, socket.getLocalPort(), 60000).write();
+			setField(mojo, "leaseFile", leaseFile);
+			setField(mojo, "reuseServer", true);
+			setField(mojo, "port", "9876");
+			mojo.execute();
+			assertThat(executor, wasCalledWith(projessConfigArgCaptor, "--server http://localhost:" + socket.getLocalPort()));
+			assertThat(executor, wasNotCalledWith(projessConfigArgCaptor, "--port"));
+		} finally {
+			socket.close();
+			leaseFile.delete();
+		}
+	}
+
+	public void shouldIgnoreLeasedServerUnlessReuseIsOn() throws Exception {
+		ServerSocket socket = new ServerSocket(0);
+		File leaseFile = File.createTempFile("jstd", ".lease");
+		try {
+			new ServerLease(leaseFile, socket.getLocalPort(), 60000).write();
+			setField(mojo, "leaseFile", leaseFile);
+			setField(mojo, "port", "9876");
+			mojo.execute();
+			assertThat(executor, wasCalledWith(projessConfigArgCaptor, "--port 9876"));
+			assertThat(executor, wasNotCalledWith(projessConfigArgCaptor, "--server"));
+		} finally {
+			socket.close();
+			leaseFile.delete();
+		}
+	}
+
 	public void shouldPassAlongServerHandlerPrefixIfProvided() throws Exception {
 		setField(mojo, "serverHandlerPrefix", "/foo");
 		mojo.execute();
@@ -190,4 +240,12 @@ public class JsTestDriverArgsTest extends AbstractMojoTest {
 		assertThat(executor, wasNotCalledWith(projessConfigArgCaptor, "--verbose"));
 	}
 
+	public void shouldSetVerboseForSurefireReports() throws Exception {
+		setField(mojo, "verbose", false);
+		setField(mojo, "surefireReports", true);
+		setField(mojo, "reportsDirectory", new File("target/test-surefire-reports"));
+		mojo.execute();
+		assertThat(executor, wasCalledWith(projessConfigArgCaptor, "--verbose"));
+	}
+
 }
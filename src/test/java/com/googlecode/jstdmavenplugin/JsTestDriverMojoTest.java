@@ -4,18 +4,31 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.commons.lang.StringUtils;
 import org.apache.maven.project.MavenProject;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.SkipException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
 
 import static com.googlecode.jstdmavenplugin.matchers.ExecutorCalledWithMatcher.wasCalledWith;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -39,6 +52,7 @@ public class JsTestDriverMojoTest extends AbstractMojoTest {
     public void setUp() throws Exception {
         executor = mock(StreamingProcessExecutor.class);
         processor = mock(ResultsProcessor.class);
+        when(processor.extractResults(any(ResultsParser.class))).thenReturn(new TestRunnerResults(1, 1, 0, 0));
 		artifactResolver = mock(ArtifactResolver.class);
 		artifact = mock(Artifact.class);
 		when(artifact.getFile()).thenReturn(new File(MAVEN_REPO_PATH));
@@ -56,12 +70,24 @@ public class JsTestDriverMojoTest extends AbstractMojoTest {
         projessConfigArgCaptor = ArgumentCaptor.forClass(ProcessConfiguration.class);
     }
 
+    /**
+     * @return a mojo set up like the one of {@link #setUp()}, parsing results for real
+     */
+    private JsTestDriverMojo realProcessorMojo() throws Exception {
+        JsTestDriverMojo real = new JsTestDriverMojo(executor, new ResultsProcessor());
+        setField(real, "mavenProject", getMockMavenProject(real));
+        setField(real, "config", "src/test/resources/jsTestDriver.conf");
+        setField(real, "artifactFactory", artifactFactory);
+        setField(real, "artifactResolver", artifactResolver);
+        return real;
+    }
+
     public void shouldSkipTests() throws Exception {
         setField(mojo, "skipTests", true);
 
         mojo.execute();
 
-        verify(executor, never()).execute(any(ProcessConfiguration.class));
+        verify(executor, never()).execute(any(ProcessConfiguration.class), any(OutputListener.class));
         verify(processor, never()).processResults(anyString());
     }
 
@@ -102,6 +128,494 @@ public class JsTestDriverMojoTest extends AbstractMojoTest {
         assertThat(executor, wasCalledWith(projessConfigArgCaptor, "-jar " + jarFile));
     }
 
+    public void shouldRunInProcessWhenForkIsDisabled() throws Exception {
+        StreamingProcessExecutor inProcessExecutor = mock(StreamingProcessExecutor.class);
+        setField(mojo, "inProcessExecutor", inProcessExecutor);
+        setField(mojo, "fork", false);
+
+        mojo.execute();
+
+        verify(executor, never()).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        assertThat(inProcessExecutor, wasCalledWith(projessConfigArgCaptor, "--config"));
+    }
+
+    public void shouldRunOneShardPerServer() throws Exception {
+        setField(mojo, "tests", "ATest,BTest,CTest");
+        setField(mojo, "shardServers", "9001, http://remote:4224");
+        when(processor.extractResults(any(ResultsParser.class))).thenReturn(new TestRunnerResults(1, 1, 0, 0));
+
+        mojo.execute();
+
+        verify(executor, times(2)).execute(projessConfigArgCaptor.capture(), any(OutputListener.class));
+        List<String> commandLines = new ArrayList<String>();
+        for (ProcessConfiguration configuration : projessConfigArgCaptor.getAllValues()) {
+            commandLines.add(StringUtils.join(configuration.getArguments(), " "));
+        }
+        Collections.sort(commandLines);
+        assertTrue(commandLines.get(0).contains("--port 9001"));
+        assertTrue(commandLines.get(0).contains("--server http://localhost:9001"));
+        assertTrue(commandLines.get(0).contains("--tests ATest,CTest"));
+        assertFalse(commandLines.get(1).contains("--port"));
+        assertTrue(commandLines.get(1).contains("--server http://remote:4224"));
+        assertTrue(commandLines.get(1).contains("--tests BTest"));
+        ArgumentCaptor<TestRunnerResults> results = ArgumentCaptor.forClass(TestRunnerResults.class);
+        verify(processor).processResults(results.capture());
+        assertEquals(results.getValue().getTotalTestsRun(), 2);
+    }
+
+    public void shouldRunEveryMatchingConfigAndAddUpTheResults() throws Exception {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        File first = new File(directory, "a/jsTestDriver.conf");
+        File second = new File(directory, "b/jsTestDriver.conf");
+        org.apache.commons.io.FileUtils.writeStringToFile(first, "test:\n  - *.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(second, "test:\n  - *.js\n", "UTF-8");
+        setField(mojo, "config", directory.getPath() + "/*/jsTestDriver.conf");
+        setField(mojo, "server", "http://localhost:4224");
+        setField(mojo, "configParallelism", 2);
+        when(processor.extractResults(any(ResultsParser.class))).thenReturn(new TestRunnerResults(2, 2, 0, 0));
+        try {
+            mojo.execute();
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+
+        verify(executor, times(2)).execute(projessConfigArgCaptor.capture(), any(OutputListener.class));
+        List<String> commandLines = new ArrayList<String>();
+        for (ProcessConfiguration configuration : projessConfigArgCaptor.getAllValues()) {
+            commandLines.add(StringUtils.join(configuration.getArguments(), " "));
+        }
+        Collections.sort(commandLines);
+        assertTrue(commandLines.get(0).contains("--config " + first.getPath()));
+        assertTrue(commandLines.get(1).contains("--config " + second.getPath()));
+        assertTrue(commandLines.get(1).contains("--server http://localhost:4224"));
+        ArgumentCaptor<TestRunnerResults> results = ArgumentCaptor.forClass(TestRunnerResults.class);
+        verify(processor).processResults(results.capture());
+        assertEquals(results.getValue().getTotalTestsRun(), 4);
+    }
+
+    public void shouldLeaveTheParametersAsSetWhenRunningSeveralConfigs() throws Exception {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "a/jsTestDriver.conf"), "test:\n  - *.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "b/jsTestDriver.conf"), "test:\n  - *.js\n", "UTF-8");
+        String configs = directory.getPath() + "/*/jsTestDriver.conf";
+        File manifestFile = new File(directory, "manifest.bin");
+        setField(mojo, "config", configs);
+        setField(mojo, "server", "http://localhost:4224");
+        setField(mojo, "manifestFile", manifestFile);
+        setField(mojo, "expandConfig", true);
+        try {
+            mojo.execute();
+
+            assertEquals(getField(mojo, "config"), configs);
+            assertEquals(getField(mojo, "server"), "http://localhost:4224");
+            assertEquals(getField(mojo, "manifestFile"), manifestFile);
+            assertTrue(new File(directory, "configs/0/jsTestDriver.conf").isFile());
+            assertTrue(new File(directory, "configs/1/jsTestDriver.conf").isFile());
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldRefuseToRerunTheFailingTestsOfSeveralConfigs() throws Exception {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "a/jsTestDriver.conf"), "test:\n  - *.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "b/jsTestDriver.conf"), "test:\n  - *.js\n", "UTF-8");
+        setField(mojo, "config", directory.getPath() + "/*/jsTestDriver.conf");
+        setField(mojo, "rerunFailingTests", 2);
+        try {
+            mojo.execute();
+            fail("Expected reruns of several configs to be refused");
+        } catch (MojoExecutionException e) {
+            assertEquals(e.getMessage(), "rerunFailingTests needs a single config, not 2");
+            verify(executor, never()).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldWriteTheTimedPhases() throws Exception {
+        File metricsFile = File.createTempFile("jstd", ".json");
+        setField(mojo, "metricsFile", metricsFile);
+        setField(mojo, "jar", "test/resources/jstestdriver-1.X.jar");
+        try {
+            mojo.execute();
+
+            String metrics = org.apache.commons.io.FileUtils.readFileToString(metricsFile, "UTF-8");
+            assertTrue(metrics.contains("\"configure\":{\"count\":1,"), metrics);
+            assertTrue(metrics.contains("\"execution\":{\"count\":1,"), metrics);
+        } finally {
+            metricsFile.delete();
+        }
+    }
+
+    public void shouldSkipIncrementalRunWhenNothingChanged() throws Exception {
+        File indexFile = File.createTempFile("jstd", ".bin");
+        indexFile.delete();
+        setField(mojo, "incremental", true);
+        setField(mojo, "indexFile", indexFile);
+        when(processor.extractResults(any(ResultsParser.class))).thenReturn(new TestRunnerResults(1, 1, 0, 0));
+        try {
+            mojo.execute();
+            assertTrue(indexFile.isFile());
+
+            mojo.execute();
+
+            verify(executor, times(1)).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+            verify(processor, times(1)).processResults(any(TestRunnerResults.class));
+        } finally {
+            indexFile.delete();
+        }
+    }
+
+    public void shouldRunIncrementallyWhenATestFileWithoutTestCasesChanged() throws Exception {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        File configFile = new File(directory, "jsTestDriver.conf");
+        File spec = new File(directory, "test/greeterSpec.js");
+        org.apache.commons.io.FileUtils.writeStringToFile(configFile, "test:\n  - test/*.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(spec, "describe('greet', function() {});\n", "UTF-8");
+        setField(mojo, "config", configFile.getPath());
+        setField(mojo, "basePath", directory.getPath());
+        setField(mojo, "incremental", true);
+        setField(mojo, "indexFile", new File(directory, "target/index.bin"));
+        try {
+            mojo.execute();
+            org.apache.commons.io.FileUtils.writeStringToFile(spec,
+                    "describe('greet', function() { it('greets', function() {}); });\n", "UTF-8");
+
+            mojo.execute();
+
+            verify(executor, times(2)).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldReportPartialResultsWhenFailingFast() throws Exception {
+        setField(mojo, "failFast", true);
+        ResultsParser parser = new ResultsParser(true);
+        when(processor.createParser(true)).thenReturn(parser);
+        doThrow(new FailFastException("aborted")).when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        TestRunnerResults partial = new TestRunnerResults(1, 0, 1, 0);
+        when(processor.extractResults(parser)).thenReturn(partial);
+
+        mojo.execute();
+
+        assertThat(executor, wasCalledWith(projessConfigArgCaptor, "--verbose"));
+        verify(processor).processResults(partial);
+    }
+
+    public void shouldRetryWithResetAfterTimeout() throws Exception {
+        setField(mojo, "retryOnTimeout", true);
+        doThrow(new ProcessTimeoutException("hung")).doNothing()
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        mojo.execute();
+
+        verify(executor, times(2)).execute(projessConfigArgCaptor.capture(), any(OutputListener.class));
+        List<String> arguments = projessConfigArgCaptor.getValue().getArguments();
+        assertEquals(arguments.indexOf("--reset"), arguments.lastIndexOf("--reset"));
+        assertTrue(arguments.contains("--reset"));
+    }
+
+    @Test(expectedExceptions = ProcessTimeoutException.class)
+    public void shouldReportTimeoutWithoutRetry() throws Exception {
+        doThrow(new ProcessTimeoutException("hung")).when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        mojo.execute();
+    }
+
+    public void shouldRerunOnlyFailedTestsAndPassWhenTheyDo() throws Exception {
+        mojo = realProcessorMojo();
+        setField(mojo, "rerunFailingTests", 2);
+        doAnswer(printing("[PASSED] GreeterTest.testHello",
+                "    GreeterTest.testGreet failed (1.00 ms): expected true",
+                "Total 2 tests (Passed: 1; Fails: 1; Errors: 0) (2.00 ms)"))
+                .doAnswer(printing("[PASSED] GreeterTest.testGreet",
+                        "Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (1.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        mojo.execute();
+
+        verify(executor, times(2)).execute(projessConfigArgCaptor.capture(), any(OutputListener.class));
+        List<String> arguments = projessConfigArgCaptor.getValue().getArguments();
+        assertEquals(arguments.get(arguments.indexOf("--tests") + 1), "GreeterTest.testGreet");
+    }
+
+    public void shouldNotRerunWhenSomeFailuresNameNoTest() throws Exception {
+        mojo = realProcessorMojo();
+        setField(mojo, "rerunFailingTests", 2);
+        // the same test failing in two browsers is one named test but two failures
+        doAnswer(printing("[FAILED] GreeterTest.testGreet", "[FAILED] GreeterTest.testGreet",
+                "Total 2 tests (Passed: 0; Fails: 2; Errors: 0) (2.00 ms)"))
+                .doAnswer(printing("[PASSED] GreeterTest.testGreet",
+                        "Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (1.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+
+        try {
+            mojo.execute();
+            fail("Expected the failures to fail the build");
+        } catch (MojoExecutionException e) {
+            assertEquals(e.getMessage(), "Test failure: 2 failures.");
+            verify(executor, times(1)).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        }
+    }
+
+    public void shouldReplayCachedResultsInsteadOfRunning() throws Exception {
+        File cache = File.createTempFile("jstd", "");
+        cache.delete();
+        mojo = realProcessorMojo();
+        setField(mojo, "resultCache", cache.getPath());
+        doAnswer(printing("[PASSED] GreeterTest.testHello",
+                "Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (2.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        try {
+            mojo.execute();
+            mojo.execute();
+
+            verify(executor, times(1)).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+            assertEquals(cache.list().length, 1);
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(cache);
+        }
+    }
+
+    public void shouldMergeCoverageAndFailBelowTheThreshold() throws Exception {
+        final File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        File report = new File(directory, "lcov.info");
+        mojo = realProcessorMojo();
+        setField(mojo, "jar", "test/resources/jstestdriver-1.X.jar");
+        setField(mojo, "coverage", true);
+        setField(mojo, "coverageJar", "lib/coverage.jar");
+        setField(mojo, "coverageReport", report);
+        setField(mojo, "coverageLineThreshold", 80.0);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                List<String> command = ((ProcessConfiguration) invocation.getArguments()[0]).getFullCommand();
+                File testOutput = new File(command.get(command.indexOf("--testOutput") + 1));
+                org.apache.commons.io.FileUtils.writeStringToFile(new File(testOutput, "jsTestDriver.conf-coverage.dat"),
+                        "SF:src/greeter.js\nDA:1,3\nDA:2,0\nend_of_record\n", "UTF-8");
+                ((OutputListener) invocation.getArguments()[1]).onLine(
+                        "Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (2.00 ms)");
+                return null;
+            }
+        }).when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        try {
+            mojo.execute();
+            fail("Expected the coverage check to fail");
+        } catch (MojoExecutionException e) {
+            assertEquals(e.getMessage(), "Coverage check failed: line coverage 50.0% is below 80.0%");
+            verify(executor).execute(projessConfigArgCaptor.capture(), any(OutputListener.class));
+            assertTrue(StringUtils.join(projessConfigArgCaptor.getValue().getFullCommand(), " ")
+                    .contains("--plugins lib/coverage.jar"));
+            assertTrue(org.apache.commons.io.FileUtils.readFileToString(report, "UTF-8").contains("LH:1"));
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldRunMarkedTestFilesOnTheEngineAndTheOthersInBrowsers() throws Exception {
+        if (!ScriptEngineExecutor.isAvailable()) {
+            throw new SkipException("This JVM has no JavaScript engine");
+        }
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        File configFile = new File(directory, "jsTestDriver.conf");
+        org.apache.commons.io.FileUtils.writeStringToFile(configFile,
+                "load:\n  - src/*.js\ntest:\n  - test/*.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "src/greeter.js"),
+                "function greet(name) { return 'Hello ' + name; }\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/greeterTest.js"),
+                "// jstd:browserless\nTestCase('GreeterTest', { testGreet: function() { assertEquals('Hello Ann', greet('Ann')); } });\n",
+                "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/pageTest.js"),
+                "TestCase('PageTest', { testTitle: function() { assertEquals('Greeter', document.title); } });\n", "UTF-8");
+        mojo = realProcessorMojo();
+        setField(mojo, "config", configFile.getPath());
+        setField(mojo, "basePath", directory.getPath());
+        setField(mojo, "jar", "test/resources/jstestdriver-1.X.jar");
+        setField(mojo, "browserless", "marked");
+        doAnswer(printing("Total 1 tests (Passed: 0; Fails: 1; Errors: 0) (2.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        try {
+            mojo.execute();
+            fail("Expected the failure in the browser");
+        } catch (MojoExecutionException e) {
+            assertEquals(e.getMessage(), "Test failure: 1 failures.");
+            verify(executor).execute(projessConfigArgCaptor.capture(), any(OutputListener.class));
+            assertTrue(StringUtils.join(projessConfigArgCaptor.getValue().getFullCommand(), " ")
+                    .contains("--tests PageTest"));
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldRunBrowserlessTestsInBrowsersWithoutAJavaScriptEngine() throws Exception {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        File configFile = new File(directory, "jsTestDriver.conf");
+        org.apache.commons.io.FileUtils.writeStringToFile(configFile, "test:\n  - test/*.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/greeterTest.js"),
+                "// jstd:browserless\nTestCase('GreeterTest', { testGreet: function() {} });\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/pageTest.js"),
+                "TestCase('PageTest', { testTitle: function() {} });\n", "UTF-8");
+        mojo = realProcessorMojo();
+        setField(mojo, "config", configFile.getPath());
+        setField(mojo, "basePath", directory.getPath());
+        setField(mojo, "jar", "test/resources/jstestdriver-1.X.jar");
+        setField(mojo, "browserless", "marked");
+        doAnswer(printing("Total 2 tests (Passed: 2; Fails: 0; Errors: 0) (2.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        String lookupName = ScriptEngineExecutor.lookupName;
+        ScriptEngineExecutor.lookupName = "no-such-engine";
+        try {
+            mojo.execute();
+        } finally {
+            ScriptEngineExecutor.lookupName = lookupName;
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+
+        verify(executor).execute(projessConfigArgCaptor.capture(), any(OutputListener.class));
+        String command = StringUtils.join(projessConfigArgCaptor.getValue().getFullCommand(), " ");
+        assertFalse(command.contains("PageTest"));
+    }
+
+    public void shouldRunTheTestCasesThatFailedLastTimeFirst() throws Exception {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        File configFile = new File(directory, "jsTestDriver.conf");
+        org.apache.commons.io.FileUtils.writeStringToFile(configFile, "test:\n  - test/*.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/aTest.js"),
+                "TestCase('ATest', { testA: function() {} });\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/bTest.js"),
+                "TestCase('BTest', { testB: function() {} });\n", "UTF-8");
+        final List<String> runs = new ArrayList<String>();
+        Answer<Void> recordingTests = new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                List<String> arguments = ((ProcessConfiguration) invocation.getArguments()[0]).getArguments();
+                runs.add(arguments.get(arguments.indexOf("--tests") + 1));
+                ((OutputListener) invocation.getArguments()[1]).onLine(
+                        "Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (1.00 ms)");
+                return null;
+            }
+        };
+        try {
+            for (int run = 0; run < 2; run++) {
+                mojo = realProcessorMojo();
+                setField(mojo, "config", configFile.getPath());
+                setField(mojo, "basePath", directory.getPath());
+                setField(mojo, "jar", "test/resources/jstestdriver-1.X.jar");
+                setField(mojo, "testOrder", "failuresFirst");
+                setField(mojo, "historyFile", new File(directory, "target/history.tsv"));
+                if (run == 0) {
+                    doAnswer(printing("[PASSED] ATest.testA", "[FAILED] BTest.testB",
+                            "Total 2 tests (Passed: 1; Fails: 1; Errors: 0) (2.00 ms)"))
+                            .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+                    try {
+                        mojo.execute();
+                        fail("Expected the failure of BTest");
+                    } catch (MojoExecutionException expected) {
+                        // recorded in the history
+                    }
+                } else {
+                    doAnswer(recordingTests).when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+                    mojo.execute();
+                }
+            }
+            assertEquals(runs, Arrays.asList("BTest", "ATest"));
+            assertTrue(org.apache.commons.io.FileUtils.readFileToString(new File(directory, "target/history.tsv"), "UTF-8")
+                    .contains("BTest\t2\t1\t"));
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldOnlyRecordTheTestCasesFailFastRan() throws Exception {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        File configFile = new File(directory, "jsTestDriver.conf");
+        org.apache.commons.io.FileUtils.writeStringToFile(configFile, "test:\n  - test/*.js\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/aTest.js"),
+                "TestCase('ATest', { testA: function() {} });\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "test/bTest.js"),
+                "TestCase('BTest', { testB: function() {} });\n", "UTF-8");
+        mojo = realProcessorMojo();
+        setField(mojo, "config", configFile.getPath());
+        setField(mojo, "basePath", directory.getPath());
+        setField(mojo, "jar", "test/resources/jstestdriver-1.X.jar");
+        setField(mojo, "testOrder", "failuresFirst");
+        setField(mojo, "historyFile", new File(directory, "target/history.tsv"));
+        setField(mojo, "failFast", true);
+        doAnswer(printing("[FAILED] ATest.testA", "Total 1 tests (Passed: 0; Fails: 1; Errors: 0) (1.00 ms)"))
+                .when(executor).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+        try {
+            mojo.execute();
+            fail("Expected the failure of ATest");
+        } catch (MojoExecutionException expected) {
+            // BTest never ran
+        }
+        try {
+            String history = org.apache.commons.io.FileUtils.readFileToString(new File(directory, "target/history.tsv"), "UTF-8");
+            assertTrue(history.contains("ATest\t1\t1\t"), history);
+            assertFalse(history.contains("BTest"), history);
+        } finally {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldAllocateAFreePortAndPublishIt() throws Exception {
+        File lockDirectory = File.createTempFile("ports", "");
+        lockDirectory.delete();
+        ServerSocket taken = new ServerSocket(0);
+        int free = taken.getLocalPort() + 1;
+        Properties properties = new Properties();
+        when(getMockMavenProject(mojo).getProperties()).thenReturn(properties);
+        setField(mojo, "port", "auto");
+        setField(mojo, "portRange", taken.getLocalPort() + "-" + (free + 10));
+        setField(mojo, "portLockDirectory", lockDirectory);
+        try {
+            mojo.execute();
+        } finally {
+            taken.close();
+            org.apache.commons.io.FileUtils.deleteDirectory(lockDirectory);
+        }
+
+        assertThat(executor, wasCalledWith(projessConfigArgCaptor, "--port " + free));
+        assertTrue(StringUtils.join(projessConfigArgCaptor.getValue().getArguments(), " ")
+                .contains("--server http://localhost:" + free));
+        assertEquals(properties.getProperty("jstd.allocatedPort"), String.valueOf(free));
+        assertEquals(properties.getProperty("jstd.allocatedServer"), "http://localhost:" + free);
+    }
+
+    public void shouldReportTheResultsOfTheAggregateGoalInsteadOfRunning() throws Exception {
+        mojo = realProcessorMojo();
+        ReactorResults.getInstance().put(basedir, new TestRunnerResults(3, 2, 1, 0));
+        try {
+            mojo.execute();
+            fail("Expected the failure reported by the aggregate goal");
+        } catch (MojoExecutionException e) {
+            assertEquals(e.getMessage(), "Test failure: 1 failures.");
+            verify(executor, never()).execute(any(ProcessConfiguration.class), any(OutputListener.class));
+            assertEquals(ReactorResults.getInstance().take(basedir), null);
+        }
+    }
+
+    private Answer<Void> printing(final String... lines) {
+        return new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                OutputListener listener = (OutputListener) invocation.getArguments()[1];
+                for (String line : lines) {
+                    listener.onLine(line);
+                }
+                return null;
+            }
+        };
+    }
+
     private void removeDir(File testOutput) {
         if (testOutput.isDirectory()) {
             if (!testOutput.delete()) {
@@ -0,0 +1,93 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class JstdConfigurationTest
+{
+    private File base;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        base = File.createTempFile("jstd", "");
+        base.delete();
+        touch("src/main/js/a.js");
+        touch("src/main/js/lib/b.js");
+        touch("src/main/js/lib/skip.js");
+        touch("src/test/js/aTest.js");
+        touch("src/test/js/notes.txt");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(base);
+    }
+
+    public void shouldParseValuesAndLists() throws Exception
+    {
+        JstdConfiguration configuration = parse("server: http://localhost:9876\n"
+                + "\n"
+                + "load:\n"
+                + "  - src/main/js/*.js  # comment\n"
+                + "  - \"src/main/js/lib/b.js\"\n"
+                + "test:\n"
+                + "  - src/test/js/*.js\n");
+
+        assertEquals(configuration.getValue("server"), "http://localhost:9876");
+        assertEquals(configuration.getList("load"), Arrays.asList("src/main/js/*.js", "src/main/js/lib/b.js"));
+        assertEquals(configuration.getTestFiles(), Arrays.asList(file("src/test/js/aTest.js")));
+    }
+
+    public void shouldExpandRecursiveGlobsWithoutExcludedFiles() throws Exception
+    {
+        JstdConfiguration configuration = parse("load:\n"
+                + "  - http://example.com/remote.js\n"
+                + "  - src/main/js/lib/b.js\n"
+                + "  - src/main/**/*.js\n"
+                + "exclude:\n"
+                + "  - src/main/js/lib/skip.js\n");
+
+        assertEquals(configuration.getLoadFiles(),
+                Arrays.asList(file("src/main/js/lib/b.js"), file("src/main/js/a.js")));
+    }
+
+    public void shouldReadTheJarsOfPluginEntries() throws Exception
+    {
+        JstdConfiguration configuration = parse("plugin:\n"
+                + "  - name: \"coverage\"\n"
+                + "    jar: \"lib/coverage.jar\"\n"
+                + "    module: \"com.google.jstestdriver.coverage.CoverageModule\"\n"
+                + "  - jar: /opt/jstd/other.jar\n"
+                + "server: http://localhost:9876\n");
+
+        assertEquals(configuration.getPluginJars(), Arrays.asList(file("lib/coverage.jar"), new File("/opt/jstd/other.jar")));
+        assertEquals(configuration.getValue("server"), "http://localhost:9876");
+        assertEquals(configuration.getValue("jar"), null);
+    }
+
+    private JstdConfiguration parse(String content) throws Exception
+    {
+        File file = new File(base, "jsTestDriver.conf");
+        org.apache.commons.io.FileUtils.writeStringToFile(file, content, "UTF-8");
+        return JstdConfiguration.parse(file, base);
+    }
+
+    private File file(String path)
+    {
+        return new File(base, path);
+    }
+
+    private void touch(String path) throws Exception
+    {
+        org.apache.commons.io.FileUtils.touch(file(path));
+    }
+}
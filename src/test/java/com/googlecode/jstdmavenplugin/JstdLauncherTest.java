@@ -0,0 +1,85 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class JstdLauncherTest
+{
+    private String jarPath;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        jarPath = new File(Class.forName("com.google.jstestdriver.Main").getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    public void shouldReuseClassLoaderPerJar() throws Exception
+    {
+        assertSame(JstdLauncher.getClassLoader(jarPath), JstdLauncher.getClassLoader(jarPath));
+    }
+
+    public void shouldReportConfigurationErrorsInsteadOfExiting() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true);
+        PrintStream stdout = System.out;
+
+        int exitCode = new JstdLauncher(jarPath).run(Arrays.asList("--config", "does/not/exist.conf", "--tests", "all"), out);
+
+        assertEquals(exitCode, 1);
+        assertSame(System.out, stdout);
+        assertTrue(bytes.toString().contains("Configuration Error"), bytes.toString());
+    }
+
+    public void shouldPutTheLoggingConfigurationBackAfterARun() throws Exception
+    {
+        Logger logger = Logger.getLogger("com.googlecode.jstdmavenplugin.build");
+        final boolean[] closed = new boolean[1];
+        Handler handler = new Handler()
+        {
+            public void publish(LogRecord record)
+            {
+            }
+
+            public void flush()
+            {
+            }
+
+            public void close()
+            {
+                closed[0] = true;
+            }
+        };
+        logger.setLevel(Level.FINE);
+        logger.addHandler(handler);
+        try
+        {
+            new JstdLauncher(jarPath).run(Arrays.asList("--config", "does/not/exist.conf", "--tests", "all"),
+                    new PrintStream(new ByteArrayOutputStream(), true));
+
+            assertEquals(logger.getLevel(), Level.FINE);
+            assertEquals(Arrays.asList(logger.getHandlers()), Arrays.asList(handler));
+            assertFalse(closed[0]);
+        }
+        finally
+        {
+            logger.removeHandler(handler);
+            logger.setLevel(null);
+        }
+    }
+}
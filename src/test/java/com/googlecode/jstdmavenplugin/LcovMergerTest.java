@@ -0,0 +1,148 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class LcovMergerTest
+{
+    private File directory;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("lcov", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(directory);
+    }
+
+    public void shouldAddUpTheHitsOfEachSourceFile() throws Exception
+    {
+        File firefox = write("firefox-coverage.dat",
+                "SF:src/stack.js",
+                "DA:1,1",
+                "DA:2,0",
+                "end_of_record",
+                "SF:src/greeter.js",
+                "FN:1,greet",
+                "FNDA:0,greet",
+                "DA:1,2",
+                "DA:3,0",
+                "end_of_record");
+        File chrome = write("chrome-coverage.dat",
+                "SF:src/greeter.js\r",
+                "FN:1,greet\r",
+                "FNDA:1,greet\r",
+                "DA:3,1\r",
+                "DA:2,1\r",
+                "end_of_record\r");
+        File merged = new File(directory, "lcov.info");
+
+        LcovMerger.Summary summary = new LcovMerger().merge(Arrays.asList(firefox, chrome), merged);
+
+        assertEquals(read(merged),
+                "TN:\n"
+                + "SF:src/greeter.js\n"
+                + "FN:1,greet\n"
+                + "FNDA:1,greet\n"
+                + "FNF:1\n"
+                + "FNH:1\n"
+                + "DA:1,2\n"
+                + "DA:2,1\n"
+                + "DA:3,1\n"
+                + "LF:3\n"
+                + "LH:3\n"
+                + "end_of_record\n"
+                + "TN:\n"
+                + "SF:src/stack.js\n"
+                + "DA:1,1\n"
+                + "DA:2,0\n"
+                + "LF:2\n"
+                + "LH:1\n"
+                + "end_of_record\n");
+        assertEquals(summary.getFiles(), 2);
+        assertEquals(summary.getLinesFound(), 5);
+        assertEquals(summary.getLinesHit(), 4);
+        assertEquals(summary.getLineCoverage(), 80.0);
+    }
+
+    public void shouldCountBranchesTakenInAnyInput() throws Exception
+    {
+        File first = write("1/coverage.dat",
+                "SF:src/greeter.js",
+                "BRDA:2,0,0,-",
+                "BRDA:2,0,1,3",
+                "DA:2,3",
+                "end_of_record");
+        File second = write("2/coverage.dat",
+                "SF:src/greeter.js",
+                "BRDA:2,0,0,1",
+                "BRDA:2,0,1,0",
+                "BRDA:4,1,0,-",
+                "DA:2,1",
+                "end_of_record");
+        File merged = new File(directory, "lcov.info");
+
+        LcovMerger.Summary summary = new LcovMerger().merge(Arrays.asList(first, second), merged);
+
+        assertEquals(summary.getBranchesFound(), 3);
+        assertEquals(summary.getBranchesHit(), 2);
+        assertTrue(read(merged).contains("BRDA:2,0,0,1\nBRDA:2,0,1,3\nBRDA:4,1,0,-\nBRF:3\nBRH:2\n"));
+        assertEquals(summary.toString(), "1 files, lines 100.0% (1/1), branches 66.7% (2/3)");
+    }
+
+    public void shouldMergeFilesLargerThanTheReadBuffer() throws Exception
+    {
+        List<String> lines = new ArrayList<String>();
+        for (int file = 0; file < 200; file++)
+        {
+            lines.add("SF:src/file" + file + ".js");
+            for (int line = 1; line <= 50; line++)
+            {
+                lines.add("DA:" + line + "," + (line % 2));
+            }
+            lines.add("end_of_record");
+        }
+        File first = write("first.dat", lines.toArray(new String[lines.size()]));
+        File second = write("second.dat", lines.toArray(new String[lines.size()]));
+
+        LcovMerger.Summary summary = new LcovMerger().merge(Arrays.asList(first, second), new File(directory, "lcov.info"));
+
+        assertEquals(summary.getFiles(), 200);
+        assertEquals(summary.getLinesFound(), 10000);
+        assertEquals(summary.getLinesHit(), 5000);
+        assertEquals(summary.toString(), "200 files, lines 50.0% (5000/10000), branches not reported");
+    }
+
+    private File write(String name, String... lines) throws Exception
+    {
+        File file = new File(directory, name);
+        StringBuilder content = new StringBuilder();
+        for (String line : lines)
+        {
+            content.append(line).append('\n');
+        }
+        org.apache.commons.io.FileUtils.writeStringToFile(file, content.toString(), "UTF-8");
+        return file;
+    }
+
+    private String read(File file) throws Exception
+    {
+        return org.apache.commons.io.FileUtils.readFileToString(file, "UTF-8");
+    }
+}
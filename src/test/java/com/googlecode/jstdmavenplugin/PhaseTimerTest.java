@@ -0,0 +1,96 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class PhaseTimerTest
+{
+    private File directory;
+    private PhaseTimer timer;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("metrics", "");
+        directory.delete();
+        timer = new PhaseTimer();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(directory);
+    }
+
+    public void shouldSumSpansPerPhase() throws Exception
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            PhaseTimer.Span span = timer.start("resolve");
+            Thread.sleep(5);
+            span.end();
+            span.end();
+        }
+        timer.count("testsRun", 3);
+        timer.count("testsRun", 4);
+
+        String metrics = write();
+
+        assertTrue(metrics.matches("\\{\"started\":\\d+,\"durationMs\":[0-9.]+,\"phases\":\\{"
+                + "\"resolve\":\\{\"count\":2,\"totalMs\":[0-9.]+,\"maxMs\":[0-9.]+\\}\\},"
+                + "\"counters\":\\{\"testsRun\":7\\}\\}\n"), metrics);
+    }
+
+    public void shouldTimeTheOutputOfARun() throws Exception
+    {
+        final List<String> seen = new ArrayList<String>();
+        PhaseTimer.TimedListener listener = timer.time(new OutputListener()
+        {
+            public void onLine(String line)
+            {
+                seen.add(line);
+            }
+        });
+        listener.onLine("[PASSED] ATest.testA");
+        listener.onLine("Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (1.00 ms)");
+        listener.finish();
+
+        String metrics = write();
+
+        assertEquals(seen.size(), 2);
+        assertTrue(metrics.contains("\"startup\":{\"count\":1,"), metrics);
+        assertTrue(metrics.contains("\"tests\":{\"count\":1,"), metrics);
+        assertTrue(metrics.contains("\"parse\":{\"count\":2,"), metrics);
+        assertTrue(metrics.contains("\"outputLines\":2"), metrics);
+    }
+
+    public void shouldWriteSpansAsCompleteTraceEvents() throws Exception
+    {
+        timer.start("fork").end();
+        File trace = new File(directory, "trace.json");
+
+        timer.writeTrace(trace);
+
+        String events = org.apache.commons.io.FileUtils.readFileToString(trace, "UTF-8");
+        assertTrue(events.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n"), events);
+        assertTrue(events.matches("(?s).*\\{\"name\":\"fork\",\"cat\":\"jstd\",\"ph\":\"X\",\"ts\":\\d+,\"dur\":\\d+,"
+                + "\"pid\":1,\"tid\":" + Thread.currentThread().getId() + ",\"args\":\\{\"thread\":\"[^\"]*\"\\}\\}\n\\]\\}\n"),
+                events);
+    }
+
+    private String write() throws Exception
+    {
+        File metrics = new File(directory, "metrics.json");
+        timer.writeMetrics(metrics);
+        return org.apache.commons.io.FileUtils.readFileToString(metrics, "UTF-8");
+    }
+}
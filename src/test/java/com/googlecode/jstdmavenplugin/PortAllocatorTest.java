@@ -0,0 +1,98 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+@Test
+public class PortAllocatorTest
+{
+    private File lockDirectory;
+    private ServerSocket socket;
+    private int lowest;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        lockDirectory = File.createTempFile("ports", "");
+        lockDirectory.delete();
+        // a range starting right after a port known to be taken
+        socket = new ServerSocket(0);
+        lowest = socket.getLocalPort() + 1;
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        socket.close();
+        org.apache.commons.io.FileUtils.deleteDirectory(lockDirectory);
+    }
+
+    public void shouldNeverHandOutAPortThatIsHeld() throws Exception
+    {
+        PortAllocator allocator = new PortAllocator(lockDirectory, lowest, lowest + 20);
+
+        PortAllocator.Allocation first = allocator.allocate(2);
+        PortAllocator.Allocation second = allocator.allocate(1);
+
+        assertEquals(first.getPorts(), Arrays.asList(lowest, lowest + 1));
+        assertEquals(second.getFirstPort(), lowest + 2);
+        first.release();
+        assertEquals(allocator.allocate(1).getFirstPort(), lowest);
+        second.release();
+    }
+
+    public void shouldPassOverPortsInUse() throws Exception
+    {
+        PortAllocator allocator = new PortAllocator(lockDirectory, socket.getLocalPort(), socket.getLocalPort() + 20);
+
+        PortAllocator.Allocation allocation = allocator.allocate(1);
+
+        assertEquals(allocation.getFirstPort(), lowest);
+        allocation.release();
+    }
+
+    public void shouldReadTheRange() throws Exception
+    {
+        PortAllocator.Allocation allocation = PortAllocator.forRange(lockDirectory, lowest + " - " + (lowest + 5)).allocate(1);
+
+        assertEquals(allocation.getFirstPort(), lowest);
+        allocation.release();
+        try
+        {
+            PortAllocator.forRange(lockDirectory, "low-high");
+            fail("Expected the range to be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertEquals(e.getMessage(), "portRange must be \"lowest-highest\", not \"low-high\"");
+        }
+    }
+
+    public void shouldFailWhenTheRangeIsExhausted() throws Exception
+    {
+        PortAllocator allocator = new PortAllocator(lockDirectory, lowest, lowest + 1);
+        PortAllocator.Allocation allocation = allocator.allocate(2);
+        try
+        {
+            allocator.allocate(1);
+            fail("Expected no port to be left");
+        }
+        catch (IOException e)
+        {
+            assertEquals(e.getMessage(), String.format("No 1 consecutive free ports left in %d-%d", lowest, lowest + 1));
+        }
+        finally
+        {
+            allocation.release();
+        }
+    }
+}
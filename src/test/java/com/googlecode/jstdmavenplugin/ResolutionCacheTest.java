@@ -0,0 +1,70 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class ResolutionCacheTest
+{
+    private File jar;
+    private ArtifactLocator locator;
+    private MavenCoordinate coordinate;
+    private ResolutionCache cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        MojoLogger.bindLog(new SystemStreamLog());
+        jar = File.createTempFile("jstestdriver", ".jar");
+        coordinate = mock(MavenCoordinate.class);
+        when(coordinate.getGroupId()).thenReturn("com.google.jstestdriver");
+        when(coordinate.getArtifactId()).thenReturn("jstestdriver");
+        when(coordinate.getVersion()).thenReturn("1.3.5");
+        when(coordinate.getFileType()).thenReturn("jar");
+        locator = mock(ArtifactLocator.class);
+        when(locator.getAbsolutePathToArtifact(coordinate)).thenReturn(jar.getAbsolutePath());
+        cache = new ResolutionCache();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        jar.delete();
+    }
+
+    public void shouldResolveOnce() throws Exception
+    {
+        assertEquals(cache.getArtifactPath(locator, coordinate, "repo"), jar.getAbsolutePath());
+        assertEquals(cache.getArtifactPath(locator, coordinate, "repo"), jar.getAbsolutePath());
+
+        verify(locator, times(1)).getAbsolutePathToArtifact(coordinate);
+    }
+
+    public void shouldResolveAgainPerRepository() throws Exception
+    {
+        cache.getArtifactPath(locator, coordinate, "repo");
+        cache.getArtifactPath(locator, coordinate, "other");
+
+        verify(locator, times(2)).getAbsolutePathToArtifact(coordinate);
+    }
+
+    public void shouldResolveAgainWhenFileChanged() throws Exception
+    {
+        cache.getArtifactPath(locator, coordinate, "repo");
+        org.apache.commons.io.FileUtils.writeStringToFile(jar, "changed", "UTF-8");
+
+        cache.getArtifactPath(locator, coordinate, "repo");
+
+        verify(locator, times(2)).getAbsolutePathToArtifact(coordinate);
+    }
+}
@@ -0,0 +1,178 @@
+package com.googlecode.jstdmavenplugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+@Test
+public class ResultCacheTest
+{
+    private File directory;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("cache", "");
+        directory.delete();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(directory);
+    }
+
+    public void shouldShareKeysBetweenCheckoutsOfTheSameFiles() throws Exception
+    {
+        assertEquals(key(checkout("one", "var a = 1;"), "browser", "firefox"),
+                key(checkout("two", "var a = 1;"), "browser", "firefox"));
+    }
+
+    public void shouldChangeKeyWithContentOrParameters() throws Exception
+    {
+        String key = key(checkout("one", "var a = 1;"), "browser", "firefox");
+
+        assertFalse(key.equals(key(checkout("two", "var a = 2;"), "browser", "firefox")));
+        assertFalse(key.equals(key(checkout("three", "var a = 1;"), "browser", "chrome")));
+    }
+
+    public void shouldChangeKeyWithServedFiles() throws Exception
+    {
+        File base = checkout("one", "var a = 1;");
+        String key = key(base, "browser", "firefox");
+
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(base, "fixtures/a.html"), "<p>changed</p>", "UTF-8");
+
+        assertFalse(key.equals(key(base, "browser", "firefox")));
+    }
+
+    public void shouldChangeKeyWithPluginJars() throws Exception
+    {
+        File base = checkout("one", "var a = 1;");
+        File jar = new File(directory, "plugin.jar");
+        org.apache.commons.io.FileUtils.writeStringToFile(jar, "one", "UTF-8");
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        JstdConfiguration configuration = JstdConfiguration.parse(new File(base, "jsTestDriver.conf"), base);
+        String key = ResultCache.key(configuration, "1.3.5", parameters, Arrays.asList(jar));
+
+        org.apache.commons.io.FileUtils.writeStringToFile(jar, "two", "UTF-8");
+
+        assertFalse(key.equals(ResultCache.key(configuration, "1.3.5", parameters, Arrays.asList(jar))));
+    }
+
+    public void shouldReplayStoredOutputAndReports() throws Exception
+    {
+        ResultCache cache = new ResultCache(new DirectoryResultStore(new File(directory, "cache")));
+        File reports = new File(directory, "reports");
+        ResultCache.Recording recording = cache.record();
+        recording.onLine("[PASSED] ATest.testA");
+        recording.onLine("Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (1.00 ms)");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(reports, "TEST-Chrome.ATest.xml"), "<testsuite/>", "UTF-8");
+        recording.store("abc", new TestRunnerResults(1, 1, 0, 0), reports);
+        org.apache.commons.io.FileUtils.deleteDirectory(reports);
+
+        final List<String> lines = new ArrayList<String>();
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        TestRunnerResults results = cache.replay("abc", new OutputListener()
+        {
+            public void onLine(String line)
+            {
+                lines.add(line);
+            }
+        }, new PrintStream(console, true), reports);
+
+        assertEquals(results.getTotalTestsPassed(), 1);
+        assertEquals(lines, Arrays.asList("[PASSED] ATest.testA", "Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (1.00 ms)"));
+        assertEquals(console.toString().trim(), "[PASSED] ATest.testA\nTotal 1 tests (Passed: 1; Fails: 0; Errors: 0) (1.00 ms)");
+        assertEquals(org.apache.commons.io.FileUtils.readFileToString(new File(reports, "TEST-Chrome.ATest.xml"), "UTF-8"),
+                "<testsuite/>");
+        assertNull(cache.replay("def", null, new PrintStream(console), reports));
+    }
+
+    public void shouldStoreEntriesOnAnHttpServer() throws Exception
+    {
+        final Map<String, byte[]> entries = new HashMap<String, byte[]>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/cache", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                String path = exchange.getRequestURI().getPath();
+                if ("PUT".equals(exchange.getRequestMethod()))
+                {
+                    entries.put(path, org.apache.commons.io.IOUtils.toByteArray(exchange.getRequestBody()));
+                    exchange.sendResponseHeaders(201, -1);
+                }
+                else if (entries.containsKey(path))
+                {
+                    exchange.sendResponseHeaders(200, entries.get(path).length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(entries.get(path));
+                    out.close();
+                }
+                else
+                {
+                    exchange.sendResponseHeaders(404, 0);
+                    exchange.getResponseBody().close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        try
+        {
+            HttpResultStore store = new HttpResultStore("http://localhost:" + server.getAddress().getPort() + "/cache/");
+
+            assertNull(store.get("abc"));
+            store.put("abc", new byte[]{1, 2, 3});
+
+            assertNotNull(entries.get("/cache/abc"));
+            assertEquals(store.get("abc"), new byte[]{1, 2, 3});
+        }
+        finally
+        {
+            server.stop(0);
+        }
+    }
+
+    private File checkout(String name, String source) throws Exception
+    {
+        File base = new File(directory, name);
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(base, "jsTestDriver.conf"),
+                "load:\n  - src/*.js\ntest:\n  - test/*.js\nserve:\n  - fixtures/*.html\n", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(base, "src/a.js"), source, "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(base, "test/aTest.js"), "TestCase('ATest', {});", "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(base, "fixtures/a.html"), "<p>a</p>", "UTF-8");
+        return base;
+    }
+
+    private String key(File base, String parameter, String value) throws Exception
+    {
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        parameters.put(parameter, value);
+        return ResultCache.key(JstdConfiguration.parse(new File(base, "jsTestDriver.conf"), base), "1.3.5", parameters,
+                Collections.<File>emptyList());
+    }
+}
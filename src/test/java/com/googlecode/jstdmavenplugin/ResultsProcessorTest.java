@@ -2,6 +2,9 @@ package com.googlecode.jstdmavenplugin;
 
 import com.googlecode.jstdmavenplugin.ResultsProcessor;
 import org.apache.maven.plugin.MojoExecutionException;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 import org.testng.annotations.Test;
 
@@ -63,6 +66,80 @@ public class ResultsProcessorTest
         }
     }
 
+    public void testParserShouldKeepFirstTotals() throws MojoExecutionException
+    {
+        ResultsParser parser = new ResultsProcessor().createParser();
+        parser.onLine("Total 3 tests (Passed: 2; Fails: 1; Errors: 0) (10.00 ms)");
+        parser.onLine("Total 9 tests (Passed: 9; Fails: 0; Errors: 0) (10.00 ms)");
+
+        assertEquals(parser.getResults().getTotalTestsRun(), 3);
+        assertEquals(parser.getResults().getTotalTestsFailed(), 1);
+    }
+
+    public void testParserShouldAbortWhenNoBrowsersAvailable()
+    {
+        try
+        {
+            new ResultsParser().onLine("Unexpected Runner Condition: No browsers available, yet actions [RunTests] requested."
+                    + "If running against a persistent server please capture browsers. Otherwise, ensure that browsers are defined.");
+            fail("Should have thrown an exception");
+        }
+        catch (MojoExecutionException ignored)
+        {
+        }
+    }
+
+    public void testParserShouldIgnoreTestsLoggingTheNoBrowsersMessage() throws MojoExecutionException
+    {
+        ResultsParser parser = new ResultsParser();
+        parser.onLine("  [LOG] No browsers available, yet actions requested.");
+        parser.onLine("Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (10.00 ms)");
+
+        assertEquals(parser.getResults().getTotalTestsPassed(), 1);
+    }
+
+    public void testShouldThrowErrorWhenNoResults()
+    {
+        try
+        {
+            new ResultsProcessor().extractResults(new ResultsParser());
+            fail("Should have thrown an exception");
+        }
+        catch (MojoExecutionException ignored)
+        {
+        }
+    }
+
+    public void testFailFastParserShouldAbortOnFirstFailure() throws MojoExecutionException
+    {
+        ResultsParser parser = new ResultsProcessor().createParser(true);
+        parser.onLine("[PASSED] GreeterTest.testGreet");
+        parser.onLine("  [LOG] some console output");
+        try
+        {
+            parser.onLine("[FAILED] GreeterTest.testFarewell");
+            fail("Should have thrown an exception");
+        }
+        catch (FailFastException ignored)
+        {
+        }
+        parser.onLine("[ERROR] GreeterTest.testLater");
+
+        assertTrue(parser.isAborted());
+        assertEquals(parser.getResults().getTotalTestsRun(), 2);
+        assertEquals(parser.getResults().getTotalTestsPassed(), 1);
+        assertEquals(parser.getResults().getTotalTestsFailed(), 1);
+        assertEquals(parser.getResults().getTotalTestsErrored(), 0);
+    }
+
+    public void testParserShouldIgnoreFailuresWithoutFailFast() throws MojoExecutionException
+    {
+        ResultsParser parser = new ResultsParser();
+        parser.onLine("[FAILED] GreeterTest.testFarewell");
+
+        assertNull(parser.getResults());
+    }
+
     private String buildOutputString(int passed, int failed, int error)
     {
         return String.format("......\\\n......\\\nTotal %s tests (Passed: %s; Fails: %s; Errors: %s) (100.00 ms)\n  Firefox",
@@ -0,0 +1,160 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class ScriptEngineExecutorTest
+{
+    private File directory;
+    private File person;
+    private File personTest;
+    private final List<String> lines = new ArrayList<String>();
+    private final OutputListener listener = new OutputListener()
+    {
+        public void onLine(String line)
+        {
+            lines.add(line);
+        }
+    };
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        if (!ScriptEngineExecutor.isAvailable())
+        {
+            throw new SkipException("This JVM has no JavaScript engine");
+        }
+        directory = File.createTempFile("browserless", "");
+        directory.delete();
+        person = write("src/main/js/person.js",
+                "function Person(name) { this.name = name; }\n"
+                + "Person.prototype.greet = function() { return 'Hello ' + this.name; };\n");
+        personTest = write("src/test/js/personTest.js",
+                "// jstd:browserless\n"
+                + "TestCase('PersonTest', {\n"
+                + "  setUp: function() { this.person = new Person('Ann'); },\n"
+                + "  testGreet: function() { assertEquals('Hello Ann', this.person.greet()); },\n"
+                + "  testDeepEquals: function() { assertEquals({a: [1, 2]}, {a: [1, 2]}); },\n"
+                + "  testWrongGreeting: function() { assertEquals('greeting', 'Hi Ann', this.person.greet()); },\n"
+                + "  testMissingMethod: function() { this.person.wave(); },\n"
+                + "  testLogs: function() { jstestdriver.console.log('logged', 1); assertException(function() { throw new TypeError('x'); }, 'TypeError'); }\n"
+                + "});\n"
+                + "AsyncTestCase('TimerTest', { testLater: function(queue) {} });\n");
+        lines.clear();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        if (directory != null)
+        {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    public void shouldRunTheTestsAndPrintTheResultsAsJsTestDriverDoes() throws Exception
+    {
+        run(configuration("all", true));
+
+        assertTrue(lines.contains("[PASSED] PersonTest.testGreet"), lines.toString());
+        assertTrue(lines.contains("[PASSED] PersonTest.testDeepEquals"), lines.toString());
+        assertTrue(lines.contains("[FAILED] PersonTest.testWrongGreeting"), lines.toString());
+        assertTrue(lines.contains("[ERROR] PersonTest.testMissingMethod"), lines.toString());
+        assertTrue(lines.contains("[ERROR] TimerTest.testLater"), lines.toString());
+        assertTrue(lines.contains("  [LOG] logged 1"), lines.toString());
+        assertTrue(find("    PersonTest.testWrongGreeting failed (").endsWith(
+                "ms): AssertError: greeting expected \"Hi Ann\" but was \"Hello Ann\""), lines.toString());
+
+        ResultsParser parser = new ResultsParser();
+        TestResultCollector collector = new TestResultCollector();
+        for (String line : lines)
+        {
+            parser.onLine(line);
+            collector.onLine(line);
+        }
+        TestRunnerResults results = parser.getResults();
+        assertEquals(results.getTotalTestsRun(), 6);
+        assertEquals(results.getTotalTestsPassed(), 3);
+        assertEquals(results.getTotalTestsFailed(), 1);
+        assertEquals(results.getTotalTestsErrored(), 2);
+        assertEquals(collector.getResults().size(), 6);
+    }
+
+    public void shouldRunOnlyTheSelectedTests() throws Exception
+    {
+        run(configuration("PersonTest.testGreet,TimerTest", false));
+
+        assertTrue(find("Total 2 tests (Passed: 1; Fails: 0; Errors: 1)").length() > 0, lines.toString());
+        assertTrue(find("    TimerTest.testLater error (").endsWith("ms): AsyncTestCase needs a browser"), lines.toString());
+        assertFalse(lines.contains("  [LOG] logged 1"), lines.toString());
+    }
+
+    public void shouldFailWhenALoadedFileCannotRun() throws Exception
+    {
+        write("src/main/js/person.js", "document.getElementById('name').value = 'Ann';\n");
+        try
+        {
+            run(configuration("all", false));
+            fail("Expected the missing DOM to fail the run");
+        }
+        catch (MojoExecutionException e)
+        {
+            assertTrue(e.getMessage().startsWith("Unable to load " + person), e.getMessage());
+        }
+    }
+
+    public void shouldFindTheMarkerInTheFirstLines() throws Exception
+    {
+        assertTrue(ScriptEngineExecutor.isMarked(personTest));
+        assertFalse(ScriptEngineExecutor.isMarked(person));
+    }
+
+    private JarProcessConfiguration configuration(String tests, boolean verbose)
+    {
+        JarProcessConfiguration configuration = new JarProcessConfiguration("jstestdriver.jar");
+        configuration.addArgument("--captureConsole", "--tests", tests);
+        if (verbose)
+        {
+            configuration.addArgument("--verbose");
+        }
+        return configuration;
+    }
+
+    private void run(JarProcessConfiguration configuration) throws MojoExecutionException
+    {
+        new ScriptEngineExecutor(Arrays.asList(person), Arrays.asList(personTest)).execute(configuration, listener);
+    }
+
+    private String find(String prefix)
+    {
+        for (String line : lines)
+        {
+            if (line.startsWith(prefix))
+            {
+                return line;
+            }
+        }
+        return "";
+    }
+
+    private File write(String path, String content) throws Exception
+    {
+        File file = new File(directory, path);
+        org.apache.commons.io.FileUtils.writeStringToFile(file, content, "UTF-8");
+        return file;
+    }
+}
@@ -0,0 +1,95 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.ServerSocket;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class ServerLeaseTest
+{
+    private File leaseFile;
+    private ServerSocket socket;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        leaseFile = File.createTempFile("jstd", ".lease");
+        leaseFile.delete();
+        socket = new ServerSocket(0);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        socket.close();
+        leaseFile.delete();
+    }
+
+    public void shouldReadBackWrittenLease() throws Exception
+    {
+        new ServerLease(leaseFile, socket.getLocalPort(), 60000).write();
+
+        ServerLease lease = ServerLease.read(leaseFile);
+
+        assertEquals(lease.getPort(), socket.getLocalPort());
+        assertEquals(lease.getServerUrl(), "http://localhost:" + socket.getLocalPort());
+        assertEquals(lease.getIdleTimeout(), 60000);
+        assertFalse(lease.hasPooledBrowser());
+    }
+
+    public void shouldReadBackThePooledBrowser() throws Exception
+    {
+        new ServerLease(leaseFile, socket.getLocalPort(), 60000, true).write();
+
+        assertTrue(ServerLease.read(leaseFile).hasPooledBrowser());
+    }
+
+    public void shouldHaveNoLeaseWithoutFile()
+    {
+        assertNull(ServerLease.read(leaseFile));
+        assertNull(ServerLease.read(null));
+    }
+
+    public void shouldBeAliveWhileServerListens() throws Exception
+    {
+        ServerLease lease = new ServerLease(leaseFile, socket.getLocalPort(), 60000);
+        lease.write();
+
+        assertTrue(lease.isAlive());
+
+        socket.close();
+        assertFalse(lease.isAlive());
+    }
+
+    public void shouldExpireWhenNotTouched() throws Exception
+    {
+        ServerLease lease = new ServerLease(leaseFile, socket.getLocalPort(), 60000);
+        lease.write();
+        leaseFile.setLastModified(System.currentTimeMillis() - 120000);
+
+        assertTrue(lease.isExpired());
+        assertFalse(lease.isAlive());
+
+        lease.touch();
+        assertFalse(lease.isExpired());
+    }
+
+    public void shouldNotBeAliveOnceReleased() throws Exception
+    {
+        ServerLease lease = new ServerLease(leaseFile, socket.getLocalPort(), 60000);
+        lease.write();
+
+        lease.release();
+
+        assertTrue(lease.isReleased());
+        assertFalse(lease.isAlive());
+    }
+}
@@ -0,0 +1,140 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class StaticFileServerTest
+{
+    private File directory;
+    private File source;
+    private StaticFileServer server;
+    private int port;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("static", "");
+        directory.delete();
+        source = new File(directory, "src/main/js/greeter.js");
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+        {
+            script.append("function greet").append(i).append("(name) { return 'Hello ' + name; }\n");
+        }
+        org.apache.commons.io.FileUtils.writeStringToFile(source, script.toString(), "UTF-8");
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "secret.txt"), "secret", "UTF-8");
+        server = new StaticFileServer(new File(directory, "cache"));
+        port = server.start(0);
+        server.register("0", directory, Arrays.asList(source));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        server.stop();
+        org.apache.commons.io.FileUtils.deleteDirectory(directory);
+    }
+
+    public void shouldServeRegisteredFilesOnly() throws Exception
+    {
+        HttpURLConnection connection = open("/0/src/main/js/greeter.js");
+
+        assertEquals(connection.getResponseCode(), 200);
+        assertEquals(connection.getContentType(), "application/javascript; charset=utf-8");
+        assertEquals(read(connection.getInputStream()), org.apache.commons.io.FileUtils.readFileToString(source, "UTF-8"));
+        assertEquals(open("/0/secret.txt").getResponseCode(), 404);
+        assertEquals(open("/0/src/main/js/../../../secret.txt").getResponseCode(), 404);
+    }
+
+    public void shouldListenOnTheLoopbackInterfaceOnly() throws Exception
+    {
+        assertTrue(server.getAddress().isLoopbackAddress(), server.getAddress().toString());
+    }
+
+    public void shouldServeACompressedCopyWhenAccepted() throws Exception
+    {
+        HttpURLConnection connection = open("/0/src/main/js/greeter.js");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+
+        assertEquals(connection.getHeaderField("Content-Encoding"), "gzip");
+        assertTrue(connection.getContentLength() < source.length());
+        assertEquals(read(new GZIPInputStream(connection.getInputStream())),
+                org.apache.commons.io.FileUtils.readFileToString(source, "UTF-8"));
+        assertTrue(connection.getHeaderField("ETag").endsWith("-gz\""));
+        assertEquals(new File(directory, "cache").list().length, 1);
+    }
+
+    public void shouldAnswerNotModifiedUntilTheContentChanges() throws Exception
+    {
+        String etag = open("/0/src/main/js/greeter.js").getHeaderField("ETag");
+
+        HttpURLConnection revalidation = open("/0/src/main/js/greeter.js");
+        revalidation.setRequestProperty("If-None-Match", etag);
+        assertEquals(revalidation.getResponseCode(), 304);
+
+        org.apache.commons.io.FileUtils.writeStringToFile(source, "function greet() {}\n", "UTF-8");
+        source.setLastModified(source.lastModified() + 2000);
+        HttpURLConnection changed = open("/0/src/main/js/greeter.js");
+        changed.setRequestProperty("If-None-Match", etag);
+        assertEquals(changed.getResponseCode(), 200);
+        assertFalse(etag.equals(changed.getHeaderField("ETag")));
+    }
+
+    public void shouldAnswerSeveralRequestsOnOneConnection() throws Exception
+    {
+        Socket socket = new Socket("localhost", port);
+        try
+        {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("HEAD /0/src/main/js/greeter.js HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /0/missing.js HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1"));
+            out.flush();
+
+            String responses = read(socket.getInputStream());
+            assertTrue(responses.startsWith("HTTP/1.1 200 OK\r\n"), responses);
+            assertTrue(responses.contains("Connection: keep-alive\r\n"), responses);
+            assertTrue(responses.contains("\r\n\r\nHTTP/1.1 404 Not Found\r\n"), responses);
+            assertTrue(responses.endsWith("Connection: close\r\n\r\n"), responses);
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    private HttpURLConnection open(String path) throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+    private static String read(InputStream in) throws Exception
+    {
+        try
+        {
+            return org.apache.commons.io.IOUtils.toString(in, "UTF-8");
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test
+public class StreamingProcessExecutorTest
+{
+    public void shouldPushEveryLine() throws Exception
+    {
+        final List<String> lines = new ArrayList<String>();
+
+        new StreamingProcessExecutor().execute(shell("echo one; echo two"), new OutputListener()
+        {
+            public void onLine(String line)
+            {
+                lines.add(line);
+            }
+        });
+
+        assertEquals(lines, Arrays.asList("one", "two"));
+    }
+
+    public void shouldOnlyPushStdoutLines() throws Exception
+    {
+        final List<String> lines = new ArrayList<String>();
+
+        new StreamingProcessExecutor().execute(shell("echo out; echo err >&2; echo more"), new OutputListener()
+        {
+            public void onLine(String line)
+            {
+                lines.add(line);
+            }
+        });
+
+        assertEquals(lines, Arrays.asList("out", "more"));
+    }
+
+    public void shouldAbortAsSoonAsListenerThrows()
+    {
+        long start = System.currentTimeMillis();
+        try
+        {
+            new StreamingProcessExecutor().execute(shell("echo No browsers were captured; sleep 30"), new ResultsParser());
+            fail("Should have thrown an exception");
+        }
+        catch (MojoExecutionException ignored)
+        {
+        }
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    public void shouldKillSilentProcessTree()
+    {
+        StreamingProcessExecutor executor = new StreamingProcessExecutor();
+        executor.setTimeouts(0, 1000, null);
+        long start = System.currentTimeMillis();
+        try
+        {
+            executor.execute(shell("echo started; sleep 30 & wait"), new ResultsParser());
+            fail("Should have timed out");
+        }
+        catch (ProcessTimeoutException e)
+        {
+            assertEquals(e.getMessage(), "JsTestDriver printed nothing for 1 s");
+        }
+        catch (MojoExecutionException e)
+        {
+            fail("Should have timed out", e);
+        }
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    public void shouldKillProcessRunningTooLong()
+    {
+        StreamingProcessExecutor executor = new StreamingProcessExecutor();
+        executor.setTimeouts(1000, 0, null);
+        long start = System.currentTimeMillis();
+        try
+        {
+            executor.execute(shell("while true; do echo tick; sleep 0.1; done"), new ResultsParser());
+            fail("Should have timed out");
+        }
+        catch (ProcessTimeoutException e)
+        {
+            assertEquals(e.getMessage(), "JsTestDriver did not finish within 1 s");
+        }
+        catch (MojoExecutionException e)
+        {
+            fail("Should have timed out", e);
+        }
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    private ProcessConfiguration shell(final String script)
+    {
+        return new ProcessConfiguration()
+        {
+            public String getExecutable()
+            {
+                return "sh";
+            }
+
+            public List<String> getArguments()
+            {
+                return Arrays.asList("-c", script);
+            }
+
+            public List<String> getExecutableOptions()
+            {
+                return Collections.emptyList();
+            }
+
+            public List<String> getFullCommand()
+            {
+                return Arrays.asList("sh", "-c", script);
+            }
+        };
+    }
+}
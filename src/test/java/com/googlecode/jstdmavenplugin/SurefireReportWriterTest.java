@@ -0,0 +1,118 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class SurefireReportWriterTest
+{
+    private File directory;
+    private SurefireReportWriter writer;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("reports", "");
+        directory.delete();
+        writer = new SurefireReportWriter(directory);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(directory);
+    }
+
+    public void shouldWriteAReportPerTestCase() throws Exception
+    {
+        feed(writer.session(),
+                "[PASSED] GreeterTest.testGreet",
+                "[FAILED] GreeterTest.testShout",
+                "  AssertError: expected \"HI\" but was \"hi\"",
+                "      at GreeterTest.js:12",
+                "[PASSED] StackTest.testPush",
+                "Total 3 tests (Passed: 2; Fails: 1; Errors: 0) (15.00 ms)",
+                "  Firefox 3.6: Run 3 tests (Passed: 2; Fails: 1; Errors 0) (15.00 ms)",
+                "    GreeterTest.testShout failed (12.50 ms): AssertError: expected \"HI\" but was \"hi\"");
+
+        writer.finish();
+
+        assertEquals(read("TEST-GreeterTest.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<testsuite name=\"GreeterTest\" tests=\"2\" failures=\"1\" errors=\"0\" skipped=\"0\" time=\"0.013\">\n"
+                + "  <testcase name=\"testGreet\" classname=\"GreeterTest\" time=\"0.000\"/>\n"
+                + "  <testcase name=\"testShout\" classname=\"GreeterTest\" time=\"0.013\">\n"
+                + "    <failure message=\"AssertError: expected &quot;HI&quot; but was &quot;hi&quot;\" type=\"failed\">"
+                + "AssertError: expected &quot;HI&quot; but was &quot;hi&quot;\nat GreeterTest.js:12\n</failure>\n"
+                + "  </testcase>\n"
+                + "</testsuite>\n");
+        assertEquals(read("TEST-StackTest.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<testsuite name=\"StackTest\" tests=\"1\" failures=\"0\" errors=\"0\" skipped=\"0\" time=\"0.000\">\n"
+                + "  <testcase name=\"testPush\" classname=\"StackTest\" time=\"0.000\"/>\n"
+                + "</testsuite>\n");
+        assertFalse(new File(directory, ".TEST-GreeterTest.xml.part").exists());
+    }
+
+    public void shouldSummarizeTheRunAsJson() throws Exception
+    {
+        feed(writer.session(),
+                "[PASSED] GreeterTest.testGreet",
+                "[ERROR] StackTest.testPop",
+                "Total 2 tests (Passed: 1; Fails: 0; Errors: 1) (3.00 ms)",
+                "    StackTest.testPop error (2.00 ms): TypeError: stack is undefined");
+
+        writer.finish();
+
+        assertEquals(read("jstd-summary.json"),
+                "{\"tests\":2,\"passed\":1,\"failures\":0,\"errors\":1,\"flaky\":0,\"time\":0.002,\"suites\":["
+                + "{\"name\":\"GreeterTest\",\"tests\":1,\"failures\":0,\"errors\":0,\"flaky\":0,\"time\":0.000},"
+                + "{\"name\":\"StackTest\",\"tests\":1,\"failures\":0,\"errors\":1,\"flaky\":0,\"time\":0.002}]}\n");
+        assertTrue(read("TEST-StackTest.xml").contains(
+                "<error message=\"TypeError: stack is undefined\" type=\"error\">"));
+    }
+
+    public void shouldReportATestPassingOnARerunAsFlaky() throws Exception
+    {
+        feed(writer.session(),
+                "[FAILED] GreeterTest.testShout",
+                "Total 1 tests (Passed: 0; Fails: 1; Errors: 0) (5.00 ms)",
+                "    GreeterTest.testShout failed (5.00 ms): timing out");
+        feed(writer.session(),
+                "[PASSED] GreeterTest.testShout",
+                "Total 1 tests (Passed: 1; Fails: 0; Errors: 0) (4.00 ms)");
+
+        writer.finish();
+
+        String report = read("TEST-GreeterTest.xml");
+        assertTrue(report.contains("tests=\"1\" failures=\"0\" errors=\"0\""), report);
+        assertTrue(report.contains("<flakyFailure message=\"timing out\" type=\"failed\">timing out\n</flakyFailure>"),
+                report);
+        assertTrue(read("jstd-summary.json").contains("\"flaky\":1"));
+    }
+
+    public void shouldEscapeWhatXmlDoesNotAllow()
+    {
+        assertEquals(SurefireReportWriter.escape("a < b && \"c\" \u0007>"), "a &lt; b &amp;&amp; &quot;c&quot; &gt;");
+    }
+
+    private void feed(OutputListener listener, String... lines) throws Exception
+    {
+        for (String line : lines)
+        {
+            listener.onLine(line);
+        }
+    }
+
+    private String read(String name) throws Exception
+    {
+        return org.apache.commons.io.FileUtils.readFileToString(new File(directory, name), "UTF-8");
+    }
+}
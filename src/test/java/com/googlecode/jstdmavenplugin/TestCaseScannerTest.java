@@ -0,0 +1,21 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class TestCaseScannerTest
+{
+    public void shouldFindAllKindsOfTestCases()
+    {
+        String source = "var GreeterTest = TestCase('GreeterTest');\n"
+                + "AsyncTestCase(\"AjaxTest\", {});\n"
+                + "ConditionalTestCase( 'IeTest', isIe );\n"
+                + "// not a test: MyTestCase\n";
+
+        assertEquals(new TestCaseScanner().scan(source), Arrays.asList("GreeterTest", "AjaxTest", "IeTest"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class TestHistoryTest
+{
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        file = File.createTempFile("history", ".tsv");
+        file.delete();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    public void shouldPutTheLastFailuresFirstThenTheChangedAndNewTestCases() throws Exception
+    {
+        TestHistory history = new TestHistory();
+        history.record("StableTest", false, 10);
+        history.record("ChangedTest", false, 10);
+        history.record("FlakyTest", true, 10);
+        history.record("FlakyTest", true, 10);
+        history.record("BrokenTest", true, 10);
+
+        assertEquals(history.prioritize(Arrays.asList("StableTest", "NewTest", "ChangedTest", "BrokenTest", "FlakyTest"),
+                Arrays.asList("ChangedTest")), Arrays.asList("FlakyTest", "BrokenTest", "NewTest", "ChangedTest"));
+    }
+
+    public void shouldRankByFailureRatePerSecond() throws Exception
+    {
+        TestHistory history = new TestHistory();
+        history.record("SlowTest", true, 5000);
+        history.record("SlowTest", false, 5000);
+        history.record("QuickTest", true, 10);
+        history.record("QuickTest", false, TestResult.UNKNOWN);
+        history.record("OldFailureTest", true, 10);
+        for (int i = 0; i < 10; i++)
+        {
+            history.record("OldFailureTest", false, 10);
+        }
+        history.record("PassingTest", false, 1);
+
+        assertEquals(history.rank(Arrays.asList("PassingTest", "SlowTest", "OldFailureTest", "QuickTest", "UnknownTest")),
+                Arrays.asList("QuickTest", "OldFailureTest", "SlowTest", "PassingTest", "UnknownTest"));
+    }
+
+    public void shouldKeepTheHistoryAcrossRuns() throws Exception
+    {
+        TestHistory history = new TestHistory();
+        history.record("GreeterTest", true, 12.5);
+        history.record("StackTest", false, 3);
+        history.write(file);
+
+        TestHistory loaded = TestHistory.load(file);
+        loaded.record("StackTest", false, TestResult.UNKNOWN);
+
+        assertEquals(loaded.prioritize(Arrays.asList("StackTest", "GreeterTest"), Collections.<String>emptyList()),
+                Arrays.asList("GreeterTest"));
+        loaded.write(file);
+        assertEquals(org.apache.commons.io.FileUtils.readLines(file, "UTF-8").get(2), "StackTest\t2\t0\t0.0000\t3.00\tpassed");
+    }
+}
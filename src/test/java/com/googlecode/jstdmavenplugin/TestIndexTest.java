@@ -0,0 +1,123 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class TestIndexTest
+{
+    private File base;
+    private File config;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        base = File.createTempFile("jstd", "");
+        base.delete();
+        config = new File(base, "jsTestDriver.conf");
+        write("jsTestDriver.conf", "load:\n  - src/*.js\ntest:\n  - test/*.js\n");
+        write("src/greeter.js", "function greet() {}");
+        write("src/util.js", "function util() {}");
+        write("test/greeterTest.js", "TestCase('GreeterTest', { testGreet: function() { greet(); } }); // greeter");
+        write("test/otherTest.js", "TestCase('OtherTest', {});");
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception
+    {
+        org.apache.commons.io.FileUtils.deleteDirectory(base);
+    }
+
+    public void shouldAffectAllTestsWithoutPreviousRun() throws Exception
+    {
+        assertEquals(index().getAffectedTestCases(null), Arrays.asList("GreeterTest", "OtherTest"));
+    }
+
+    public void shouldAffectNothingWhenUnchanged() throws Exception
+    {
+        TestIndex previous = index();
+
+        assertTrue(index().getAffectedTestCases(previous).isEmpty());
+    }
+
+    public void shouldAffectTestCasesOfChangedTestFile() throws Exception
+    {
+        TestIndex previous = index();
+        write("test/otherTest.js", "TestCase('OtherTest', { testMore: function() {} });");
+
+        assertEquals(index().getAffectedTestCases(previous), Arrays.asList("OtherTest"));
+    }
+
+    public void shouldAffectAllTestsWhenAChangedTestFileHasNoScannableTestCase() throws Exception
+    {
+        TestIndex previous = index();
+        write("test/specTest.js", "describe('greet', function() { it('greets', function() { greet(); }); });");
+
+        TestIndex added = index();
+        assertEquals(added.getAffectedTestCases(previous), Arrays.asList("GreeterTest", "OtherTest"));
+        assertFalse(added.isUnchanged(previous));
+        assertTrue(added.isUnchanged(index()));
+    }
+
+    public void shouldSeeARemovedTestFileAsAChange() throws Exception
+    {
+        TestIndex previous = index();
+        new File(base, "test/otherTest.js").delete();
+
+        assertFalse(index().isUnchanged(previous));
+    }
+
+    public void shouldAffectAllTestsWhenALoadFileChanges() throws Exception
+    {
+        TestIndex previous = index();
+        // GreeterTest runs util.js through greeter.js without mentioning it
+        write("src/util.js", "function util() { return 1; }");
+
+        assertEquals(index().getAffectedTestCases(previous), Arrays.asList("GreeterTest", "OtherTest"));
+    }
+
+    public void shouldAffectAllTestsWhenALoadFileIsAddedOrRemoved() throws Exception
+    {
+        TestIndex previous = index();
+        write("src/extra.js", "function extra() {}");
+        TestIndex added = index();
+
+        assertEquals(added.getAffectedTestCases(previous), Arrays.asList("GreeterTest", "OtherTest"));
+        new File(base, "src/util.js").delete();
+        assertEquals(index().getAffectedTestCases(added), Arrays.asList("GreeterTest", "OtherTest"));
+    }
+
+    public void shouldReadBackWrittenIndex() throws Exception
+    {
+        File file = new File(base, "target/index.bin");
+        TestIndex index = index();
+        index.setResults(new TestRunnerResults(2, 2, 0, 0));
+        index.write(file);
+
+        TestIndex read = TestIndex.load(file);
+
+        assertEquals(read.getTestCases(), index.getTestCases());
+        assertEquals(read.getResults().getTotalTestsPassed(), 2);
+        assertTrue(index.getAffectedTestCases(read).isEmpty());
+        assertNull(TestIndex.load(new File(base, "missing.bin")));
+    }
+
+    private TestIndex index() throws Exception
+    {
+        return TestIndex.build(JstdConfiguration.parse(config, base));
+    }
+
+    private void write(String path, String content) throws Exception
+    {
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(base, path), content, "UTF-8");
+    }
+}
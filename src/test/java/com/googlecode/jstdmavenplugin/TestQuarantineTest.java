@@ -0,0 +1,58 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class TestQuarantineTest
+{
+    private File file;
+
+    @BeforeMethod
+    public void setUp() throws Exception
+    {
+        file = File.createTempFile("quarantine", ".tsv");
+        file.delete();
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    public void shouldQuarantineTestOnceItFlippedOftenEnough() throws Exception
+    {
+        TestQuarantine quarantine = new TestQuarantine(2);
+
+        quarantine.recordFlip("GreeterTest.testGreet");
+        assertFalse(quarantine.isQuarantined("GreeterTest.testGreet"));
+        quarantine.recordFlip("GreeterTest.testGreet");
+
+        assertTrue(quarantine.isQuarantined("GreeterTest.testGreet"));
+        assertFalse(quarantine.isQuarantined("GreeterTest.testOther"));
+    }
+
+    public void shouldKeepFlipsAcrossRuns() throws Exception
+    {
+        TestQuarantine quarantine = new TestQuarantine(2);
+        quarantine.recordFlip("GreeterTest.testGreet");
+        quarantine.write(file);
+
+        TestQuarantine loaded = TestQuarantine.load(file, 2);
+        loaded.recordFlip("GreeterTest.testGreet");
+
+        assertTrue(loaded.isQuarantined("GreeterTest.testGreet"));
+    }
+
+    public void shouldStartEmptyWithoutFile() throws Exception
+    {
+        assertFalse(TestQuarantine.load(file, 1).isQuarantined("GreeterTest.testGreet"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+@Test
+public class TestResultCollectorTest
+{
+    public void shouldCollectConsoleResults()
+    {
+        TestResultCollector collector = new TestResultCollector();
+        collector.onLine("[PASSED] GreeterTest.testGreet");
+        collector.onLine("[FAILED] GreeterTest.testFarewell");
+        collector.onLine("  [LOG] unrelated");
+        collector.onLine("    GreeterTest.testFarewell failed (12.50 ms): expected \"bye\" but was \"hi\"");
+
+        List<TestResult> results = collector.getResults();
+
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(0).toString(), "GreeterTest.testGreet");
+        assertEquals(results.get(0).getStatus(), TestResult.PASSED);
+        assertFalse(results.get(0).hasDuration());
+        assertEquals(results.get(1).getStatus(), TestResult.FAILED);
+        assertEquals(results.get(1).getMillis(), 12.5, 0.001);
+    }
+
+    public void shouldPreferXmlReports() throws Exception
+    {
+        File directory = File.createTempFile("jstd", "");
+        directory.delete();
+        org.apache.commons.io.FileUtils.writeStringToFile(new File(directory, "TEST-Firefox_36.GreeterTest.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<testsuite name=\"Firefox_36.GreeterTest\" errors=\"0\" failures=\"1\" tests=\"2\" time=\"0.3\">\n"
+                        + "<testcase classname=\"Firefox_36.GreeterTest\" name=\"testGreet\" time=\"0.25\"/>\n"
+                        + "<testcase classname=\"Firefox_36.GreeterTest\" name=\"testFarewell\" time=\"0.05\">"
+                        + "<failure type=\"failed\" message=\"nope\"/></testcase>\n"
+                        + "</testsuite>\n", "UTF-8");
+        try
+        {
+            TestResultCollector collector = new TestResultCollector();
+            collector.onLine("[PASSED] GreeterTest.testGreet");
+            collector.addXmlReports(directory, 0);
+
+            List<TestResult> results = collector.getResults();
+
+            assertEquals(results.size(), 2);
+            assertEquals(results.get(0).getBrowser(), "Firefox_36");
+            assertEquals(results.get(0).getMillis(), 250, 0.001);
+            assertEquals(results.get(1).getStatus(), TestResult.FAILED);
+        }
+        finally
+        {
+            org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        }
+    }
+}
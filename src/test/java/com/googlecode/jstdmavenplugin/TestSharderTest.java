@@ -0,0 +1,45 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+@Test
+public class TestSharderTest
+{
+    private final TestSharder sharder = new TestSharder();
+
+    public void shouldSplitEvenlyWithoutTimings()
+    {
+        List<List<String>> shards = sharder.shard(Arrays.asList("A", "B", "C", "D"), 2, new TestTimings());
+
+        assertEquals(shards.get(0), Arrays.asList("A", "C"));
+        assertEquals(shards.get(1), Arrays.asList("B", "D"));
+    }
+
+    public void shouldBalanceByRecordedDuration()
+    {
+        TestTimings timings = new TestTimings();
+        timings.add("Slow", 900);
+        timings.add("A", 300);
+        timings.add("B", 300);
+        timings.add("C", 300);
+
+        List<List<String>> shards = sharder.shard(Arrays.asList("A", "B", "Slow", "C"), 2, timings);
+
+        assertEquals(shards.get(0), Arrays.asList("Slow"));
+        assertEquals(shards.get(1), Arrays.asList("A", "B", "C"));
+    }
+
+    public void shouldLeaveSurplusShardsEmpty()
+    {
+        List<List<String>> shards = sharder.shard(Arrays.asList("A"), 3, new TestTimings());
+
+        assertEquals(shards.get(0), Arrays.asList("A"));
+        assertEquals(shards.get(1).size(), 0);
+        assertEquals(shards.get(2).size(), 0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.googlecode.jstdmavenplugin;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@Test
+public class TimingReportTest
+{
+    private final TimingReport report = new TimingReport(Arrays.asList(
+            new TestResult("Chrome", "ATest", "testFast", TestResult.PASSED, 5),
+            new TestResult("Chrome", "ATest", "testUntimed", TestResult.PASSED, TestResult.UNKNOWN),
+            new TestResult("Chrome", "BTest", "testSlow", TestResult.FAILED, 500),
+            new TestResult("Chrome", "CTest", "testMedium", TestResult.PASSED, 50)));
+
+    public void shouldListSlowestTimedTests()
+    {
+        List<TestResult> slowest = report.getSlowest(2);
+
+        assertEquals(slowest.size(), 2);
+        assertEquals(slowest.get(0).toString(), "BTest.testSlow");
+        assertEquals(slowest.get(1).toString(), "CTest.testMedium");
+    }
+
+    public void shouldWriteTimingsReadableAsTestTimings() throws Exception
+    {
+        File file = File.createTempFile("jstd", ".tsv");
+        try
+        {
+            report.writeTimings(file);
+
+            TestTimings timings = TestTimings.load(file);
+
+            assertEquals(timings.getTestCaseDuration("ATest"), 5.0);
+            assertEquals(timings.getTestCaseDuration("BTest"), 500.0);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void shouldReportTestCasesThatGotMarkedlySlower()
+    {
+        TestTimings previous = new TestTimings();
+        previous.add("ATest", 1);
+        previous.add("BTest", 100);
+        previous.add("CTest", 40);
+
+        List<String> regressions = report.findRegressions(previous);
+
+        assertEquals(regressions.size(), 1);
+        assertTrue(regressions.get(0).startsWith("BTest"));
+    }
+}
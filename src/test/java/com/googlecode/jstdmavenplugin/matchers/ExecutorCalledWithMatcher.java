@@ -1,12 +1,15 @@
 package com.googlecode.jstdmavenplugin.matchers;
 
+import com.googlecode.jstdmavenplugin.OutputListener;
 import com.googlecode.jstdmavenplugin.ProcessConfiguration;
 import com.googlecode.jstdmavenplugin.ProcessExecutor;
 import org.apache.commons.lang.StringUtils;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeMatcher;
 import org.mockito.ArgumentCaptor;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertTrue;
 
@@ -29,7 +32,11 @@ public class ExecutorCalledWithMatcher extends TypeSafeMatcher<ProcessExecutor>
 
     @Override
     public boolean matchesSafely(ProcessExecutor executor) {
-        verify(executor).execute(processConfigurationArgumentCaptor.capture());
+        try {
+            verify(executor).execute(processConfigurationArgumentCaptor.capture(), any(OutputListener.class));
+        } catch (MojoExecutionException e) {
+            throw new IllegalStateException(e);
+        }
         String commandLine = StringUtils.join(processConfigurationArgumentCaptor.getValue().getArguments(), " ");
         return commandLine.contains(commandLineArg);
     }